@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.model.impl;
+
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.Plan;
+import org.jesterj.ingest.model.Scanner;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+/**
+ * Documents for use in benchmarks. The plan and scanner are minimal stand ins that answer only the calls made
+ * while constructing a document, so no plan needs to be built or activated.
+ */
+public class BenchmarkDocuments {
+
+  public static final Plan PLAN = (Plan) Proxy.newProxyInstance(BenchmarkDocuments.class.getClassLoader(),
+      new Class[]{Plan.class}, (proxy, method, args) -> "getDocIdField".equals(method.getName()) ? "id" : null);
+
+  public static final Scanner SCANNER = (Scanner) Proxy.newProxyInstance(BenchmarkDocuments.class.getClassLoader(),
+      new Class[]{Scanner.class}, (proxy, method, args) -> "getName".equals(method.getName()) ? "benchmark" : null);
+
+  /**
+   * Create a document with random raw data and simple text fields.
+   *
+   * @param id        the id of the document
+   * @param rawBytes  the size of the raw data
+   * @param fields    the number of fields to add in addition to the id
+   * @return a new document
+   */
+  public static DocumentImpl create(String id, int rawBytes, int fields) {
+    byte[] raw = new byte[rawBytes];
+    new Random(id.hashCode()).nextBytes(raw);
+    DocumentImpl doc = new DocumentImpl(raw, id, PLAN, Document.Operation.NEW, SCANNER);
+    for (int i = 0; i < fields; i++) {
+      doc.put("field_" + i, "value of field " + i);
+    }
+    return doc;
+  }
+}
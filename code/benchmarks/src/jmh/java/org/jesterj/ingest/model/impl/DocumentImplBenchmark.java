@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.model.impl;
+
+import org.jesterj.ingest.model.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction and hashing of documents, both happen once for every document a scanner finds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DocumentImplBenchmark {
+
+  @Param({"1024", "1048576"})
+  int rawBytes;
+
+  @Param({"10", "100"})
+  int fields;
+
+  private byte[] raw;
+  private DocumentImpl doc;
+
+  @Setup
+  public void setUp() {
+    doc = BenchmarkDocuments.create("doc", rawBytes, fields);
+    raw = doc.getRawData();
+  }
+
+  @Benchmark
+  public DocumentImpl construct() {
+    return new DocumentImpl(raw, "doc", BenchmarkDocuments.PLAN, Document.Operation.NEW, BenchmarkDocuments.SCANNER);
+  }
+
+  @Benchmark
+  public String getHash() {
+    return doc.getHash();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.model.impl;
+
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.utils.Cloner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per branch cost of sending a document to several next steps, by serialization cloning (still used for
+ * documents that are not a {@link DocumentImpl}) vs copy on write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanOutBenchmark {
+
+  @Param({"1024", "20971520"})
+  int rawBytes;
+
+  @Param({"50"})
+  int fields;
+
+  private DocumentImpl doc;
+  private final Cloner<Document> cloner = new Cloner<>();
+
+  @Setup
+  public void setUp() {
+    doc = BenchmarkDocuments.create("doc", rawBytes, fields);
+  }
+
+  @Benchmark
+  public Document cloneObj() throws IOException, ClassNotFoundException {
+    return cloner.cloneObj(doc);
+  }
+
+  @Benchmark
+  public Document copyOnWrite() {
+    return doc.copyOnWrite();
+  }
+
+  @Benchmark
+  public Document copyOnWriteThenModify() {
+    // includes the copy made when a branch modifies the document
+    DocumentImpl copy = doc.copyOnWrite();
+    copy.put("x", "y");
+    return copy;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.model.impl;
+
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.DocumentProcessor;
+import org.jesterj.ingest.queue.MpscRingBufferQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of handing documents to a step whose worker does nothing with them, so the cost measured is the
+ * queue, the worker wake up and the step's bookkeeping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StepHandoffBenchmark {
+
+  @Param({"linked", "ring"})
+  String inbox;
+
+  @Param({"1", "4"})
+  int workers;
+
+  private StepImpl step;
+  private DocumentImpl doc;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    StepImpl.Builder builder = new StepImpl.Builder()
+        .named("handoff")
+        .withThreads(workers)
+        .withProcessor(new Discard.Builder().named("discard"));
+    if ("ring".equals(inbox)) {
+      // a ring buffer can only have one consumer, so several workers must take documents in order.
+      builder.withInbox(MpscRingBufferQueue::new).orderedById(workers > 1);
+    }
+    // the inbox is created when the size is set
+    builder.batchSize(1024);
+    step = builder.build();
+    step.activate();
+    doc = BenchmarkDocuments.create("doc", 0, 0);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    step.deactivate();
+  }
+
+  @Benchmark
+  public void put() throws InterruptedException {
+    step.put(doc);
+  }
+
+  public static class Discard implements DocumentProcessor {
+    private static final Document[] NONE = new Document[0];
+    private String name;
+
+    @Override
+    public Document[] processDocument(Document document) {
+      return NONE;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    public static class Builder extends NamedBuilder<Discard> {
+      private Discard obj = new Discard();
+
+      @Override
+      public Builder named(String name) {
+        getObj().name = name;
+        return this;
+      }
+
+      @Override
+      protected Discard getObj() {
+        return obj;
+      }
+
+      @Override
+      public Discard build() {
+        Discard tmp = obj;
+        obj = new Discard();
+        return tmp;
+      }
+    }
+  }
+}
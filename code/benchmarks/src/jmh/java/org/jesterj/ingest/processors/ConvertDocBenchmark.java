@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.jesterj.ingest.model.impl.BenchmarkDocuments;
+import org.jesterj.ingest.model.impl.DocumentImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a document to a SolrInputDocument, done for every document sent to solr. Nothing is sent, the
+ * client is never connected.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvertDocBenchmark {
+
+  @Param({"0", "65536"})
+  int rawBytes;
+
+  @Param({"10", "100"})
+  int fields;
+
+  private SendToSolrCloudProcessor processor;
+  private DocumentImpl doc;
+
+  @Setup
+  public void setUp() {
+    processor = new SendToSolrCloudProcessor.Builder()
+        .named("solr")
+        .withZookeeper("localhost:9983")
+        .usingCollection("benchmark")
+        .placingTextContentIn("content")
+        .withDocFieldsIn("doc_fields")
+        .build();
+    doc = BenchmarkDocuments.create("doc", rawBytes, fields);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    processor.getSolrClient().close();
+  }
+
+  @Benchmark
+  public SolrInputDocument convertDoc() {
+    return processor.convertDoc(doc);
+  }
+}
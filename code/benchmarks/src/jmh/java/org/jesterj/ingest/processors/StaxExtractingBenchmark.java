@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.impl.BenchmarkDocuments;
+import org.jesterj.ingest.model.impl.DocumentImpl;
+import org.jesterj.ingest.processors.StaxExtractingProcessor.ElementSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction from a generated xml document. Every start and end element looks up the current path in the
+ * processor's trie, so the number of elements and mapped paths dominates rather than the size of the text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StaxExtractingBenchmark {
+
+  @Param({"100", "10000"})
+  int sections;
+
+  @Param({"1", "20"})
+  int mappedPaths;
+
+  private StaxExtractingProcessor processor;
+  private byte[] xml;
+
+  @Setup
+  public void setUp() {
+    StringBuilder sb = new StringBuilder("<article><front><title-group><article-title>Benchmark</article-title>")
+        .append("</title-group></front><body>");
+    for (int i = 0; i < sections; i++) {
+      sb.append("<sec id=\"s").append(i).append("\"><title>Section ").append(i).append("</title>")
+          .append("<p>Some text in paragraph <italic>").append(i).append("</italic> of the body.</p></sec>");
+    }
+    sb.append("</body></article>");
+    xml = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    StaxExtractingProcessor.Builder builder = new StaxExtractingProcessor.Builder()
+        .named("stax")
+        .withPathBuffer(2048)
+        .extracting("/article/front/title-group/article-title", new ElementSpec("title"));
+    for (int i = 1; i < mappedPaths; i++) {
+      // paths sharing long prefixes with the elements in the document, most of which never match
+      builder.extracting(i % 2 == 0 ? "/article/body/sec/title" + i : "/article/body/sec/p/bold" + i,
+          new ElementSpec("field_" + i));
+    }
+    processor = builder.build();
+  }
+
+  @Benchmark
+  public Document[] processDocument() {
+    DocumentImpl doc = new DocumentImpl(xml, "doc", BenchmarkDocuments.PLAN, Document.Operation.NEW,
+        BenchmarkDocuments.SCANNER);
+    return processor.processDocument(doc);
+  }
+}
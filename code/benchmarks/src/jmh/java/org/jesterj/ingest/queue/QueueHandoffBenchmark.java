@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per element cost of the step inbox implementations without any contention, best run with the gc profiler
+ * to see the per element allocation of the linked queue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(QueueHandoffBenchmark.BATCH)
+public class QueueHandoffBenchmark {
+  static final int BATCH = 64;
+
+  @Param({"linked", "ring"})
+  String inbox;
+
+  private BlockingQueue<Object> queue;
+  private final Object element = new Object();
+  private final ArrayList<Object> sink = new ArrayList<>(BATCH);
+
+  @Setup
+  public void setUp() {
+    queue = "ring".equals(inbox) ? new MpscRingBufferQueue<>(1024) : new LinkedBlockingQueue<>(1024);
+  }
+
+  @Benchmark
+  public void offerThenPoll(Blackhole bh) {
+    for (int i = 0; i < BATCH; i++) {
+      queue.offer(element);
+    }
+    for (int i = 0; i < BATCH; i++) {
+      bh.consume(queue.poll());
+    }
+  }
+
+  @Benchmark
+  public void offerThenDrain(Blackhole bh) {
+    for (int i = 0; i < BATCH; i++) {
+      queue.offer(element);
+    }
+    queue.drainTo(sink);
+    bh.consume(sink);
+    sink.clear();
+  }
+}
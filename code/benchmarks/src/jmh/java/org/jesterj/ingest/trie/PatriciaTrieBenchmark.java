@@ -0,0 +1,79 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.trie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of xml element paths, as done by {@link org.jesterj.ingest.processors.StaxExtractingProcessor} for
+ * every element it reads. Keys are looked up both as Strings and as the CharBuffer the processor really uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatriciaTrieBenchmark {
+
+  @Param({"10", "1000"})
+  int entries;
+
+  private PatriciaTrie<String> trie;
+  private String hitKey;
+  private String missKey;
+  private CharBuffer hitBuffer;
+  private CharBuffer missBuffer;
+
+  @Setup
+  public void setUp() {
+    trie = new PatriciaTrie<>();
+    for (int i = 0; i < entries; i++) {
+      trie.put("/article/body/sec/p/field" + i, "field" + i);
+    }
+    hitKey = "/article/body/sec/p/field" + (entries / 2);
+    missKey = "/article/body/sec/p/italic";
+    hitBuffer = CharBuffer.wrap(hitKey.toCharArray());
+    missBuffer = CharBuffer.wrap(missKey.toCharArray());
+  }
+
+  @Benchmark
+  public String getHit() {
+    return trie.get(hitKey);
+  }
+
+  @Benchmark
+  public String getMiss() {
+    return trie.get(missKey);
+  }
+
+  @Benchmark
+  public String getHitCharBuffer() {
+    return trie.get(hitBuffer);
+  }
+
+  @Benchmark
+  public String getMissCharBuffer() {
+    return trie.get(missBuffer);
+  }
+}
@@ -23,6 +23,10 @@ import org.docopt.Docopt;
 import org.jesterj.ingest.forkjoin.JesterJForkJoinThreadFactory;
 import org.jesterj.ingest.model.Plan;
 import org.jesterj.ingest.persistence.Cassandra;
+import org.jesterj.ingest.persistence.EphemeralStatusStore;
+import org.jesterj.ingest.persistence.LocalStatusStore;
+import org.jesterj.ingest.persistence.StatusStore;
+import org.jesterj.ingest.persistence.StatusStores;
 import org.jesterj.ingest.utils.JesterjPolicy;
 import org.reflections.Reflections;
 import org.reflections.util.ClasspathHelper;
@@ -39,6 +43,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.Policy;
 import java.util.ArrayList;
 import java.util.Map;
@@ -138,7 +143,7 @@ public class Main {
                 ImageIO.write(img, "PNG", new File(outfile));
                 System.exit(0);
               }
-              startCassandra(parsedArgs);
+              startStatusStore(parsedArgs);
 
 
               // this should reload the config with cassandra available.
@@ -171,7 +176,12 @@ public class Main {
                   // graceful shutdown... also keeps IDE from complaining stop() isn't used.
 
                   e.printStackTrace();
-                  Cassandra.stop();
+                  StatusStore store = StatusStores.get();
+                  if (store != null) {
+                    store.close();
+                  } else {
+                    Cassandra.stop();
+                  }
                   System.exit(0);
                 }
               }
@@ -200,6 +210,27 @@ public class Main {
     }
   }
 
+  private static void startStatusStore(Map<String, Object> parsedArgs) throws IOException {
+    String type = (String) parsedArgs.get("--status-store");
+    if (type == null || "cassandra".equals(type)) {
+      startCassandra(parsedArgs);
+    } else if ("local".equals(type)) {
+      String statusHome = (String) parsedArgs.get("--status-home");
+      if (statusHome == null) {
+        statusHome = JJ_DIR + "/status";
+      }
+      statusHome = statusHome.replaceFirst("^~", System.getProperty("user.home"));
+      System.out.println("Keeping document status in " + statusHome);
+      StatusStores.use(new LocalStatusStore(Paths.get(statusHome)));
+    } else if ("memory".equals(type)) {
+      System.out.println("Keeping document status in memory only, all documents will be processed on restart");
+      StatusStores.use(new EphemeralStatusStore());
+    } else {
+      System.err.println("\nERROR: --status-store must be one of cassandra, local or memory\n");
+      System.exit(1);
+    }
+  }
+
   private static void startCassandra(Map<String, Object> parsedArgs) {
     String cassandraHome = (String) parsedArgs.get("--cassandra-home");
     File cassandraDir = null;
@@ -16,13 +16,20 @@
 
 package org.jesterj.ingest.logging;
 
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.appender.AbstractManager;
+import org.jesterj.ingest.model.Status;
 import org.jesterj.ingest.persistence.Cassandra;
 import org.jesterj.ingest.persistence.CassandraSupport;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
@@ -36,16 +43,6 @@ public class CassandraLog4JManager extends AbstractManager {
       "CREATE KEYSPACE IF NOT EXISTS jj_logging " +
           "WITH REPLICATION = { 'class' : 'SimpleStrategy', 'replication_factor' : 3 };";
 
-  // Possibly move these to wide rows with time values?
-  public static final String CREATE_LOG_TABLE =
-      "CREATE TABLE IF NOT EXISTS jj_logging.regular(" +
-          "id uuid PRIMARY KEY, " +
-          "logger text, " +
-          "tstamp timestamp, " +
-          "level text, " +
-          "thread text, " +
-          "message text" +
-          ");";
   public static final String CREATE_FT_TABLE =
       "CREATE TABLE IF NOT EXISTS jj_logging.fault_tolerant(" +
           "docid text , " +
@@ -61,7 +58,45 @@ public class CassandraLog4JManager extends AbstractManager {
 
   public static final String FTI_STATUS_INDEX = "CREATE INDEX IF NOT EXISTS fti_statuses ON jj_logging.fault_tolerant( status );";
   public static final String FTI_SCANNER_INDEX = "CREATE INDEX IF NOT EXISTS fti_scanners ON jj_logging.fault_tolerant( scanner );";
+
+  /**
+   * The statuses of documents that were in flight and need to be reset if the system stops unexpectedly.
+   * Documents with these statuses are also recorded in {@code jj_logging.fti_by_status} so that they can be
+   * found without scanning the whole fault tolerance table.
+   */
+  public static final List<String> IN_FLIGHT_STATUSES = Collections.unmodifiableList(Arrays.asList(
+      Status.PROCESSING.name(), Status.ERROR.name(), Status.BATCHED.name()));
+
+  // Documents normally pass through these statuses quickly, so rows are deleted about as fast as they are
+  // added. A short gc grace keeps the tombstones from piling up in front of the few live rows. A deletion
+  // resurrected by the short grace only causes a stale entry, which is checked against the fault tolerant
+  // table before it is acted on.
+  public static final String CREATE_FTI_STATUS_TABLE =
+      "CREATE TABLE IF NOT EXISTS jj_logging.fti_by_status(" +
+          "scanner text, " +
+          "status text, " +
+          "docid text, " +
+          "PRIMARY KEY ((scanner, status), docid)) " +
+          "WITH gc_grace_seconds = 3600 " +
+          "AND compaction = { 'class' : 'LeveledCompactionStrategy' };";
+  public static final String INSERT_FTI_STATUS =
+      "INSERT INTO jj_logging.fti_by_status (scanner, status, docid) VALUES (?,?,?)";
+  public static final String DELETE_FTI_STATUS =
+      "DELETE FROM jj_logging.fti_by_status WHERE scanner = ? AND status = ? AND docid = ?";
+
+  public static final String CREATE_MIGRATIONS_TABLE =
+      "CREATE TABLE IF NOT EXISTS jj_logging.migrations(" +
+          "name text PRIMARY KEY, " +
+          "applied timestamp" +
+          ");";
+  static final String FIND_MIGRATION = "SELECT name FROM jj_logging.migrations WHERE name = ?";
+  static final String RECORD_MIGRATION =
+      "INSERT INTO jj_logging.migrations (name, applied) VALUES (?, toTimestamp(now()))";
+  static final String FTI_STATUS_MIGRATION = "fti_by_status";
+  private static final int MIGRATION_FETCH_SIZE = 1000;
+
   private final Future cassandraReady;
+  private final RegularLogTable regularLog;
 
   Executor executor = new ThreadPoolExecutor(1, 1, 100, TimeUnit.SECONDS, new SynchronousQueue<>());
 
@@ -71,8 +106,9 @@ public class CassandraLog4JManager extends AbstractManager {
   // (such as starting cassandra) Doing so causes that thread and this one to deadlock and hangs
   // everything. This includes calling System.exit() since that gets checked in another JVM thread and
   // the JVM thread tries to start a JUL logger!
-  protected CassandraLog4JManager(String name) {
+  protected CassandraLog4JManager(String name, RegularLogTable regularLog) {
     super(LoggerContext.getContext(), name);
+    this.regularLog = regularLog;
 
     Callable<Object> makeTables = new Callable<Object>() {
 
@@ -87,10 +123,13 @@ public class CassandraLog4JManager extends AbstractManager {
           try {
             Session session = cassandra.getSession();
             session.execute(CREATE_LOG_KEYSPACE);
-            session.execute(CREATE_LOG_TABLE);
+            regularLog.createOrUpdate(session);
             session.execute(CREATE_FT_TABLE);
             session.execute(FTI_STATUS_INDEX);
             session.execute(FTI_SCANNER_INDEX);
+            session.execute(CREATE_FTI_STATUS_TABLE);
+            session.execute(CREATE_MIGRATIONS_TABLE);
+            populateFtiStatusIndex(session);
             tryAgain = false;
           } catch (Exception e) {
             tryCount++;
@@ -106,7 +145,29 @@ public class CassandraLog4JManager extends AbstractManager {
         return null;
       }
     };
-    this.cassandraReady = Cassandra.whenBooted(makeTables);
+    this.cassandraReady = Cassandra.whenBootedUpdateSchema(makeTables);
+  }
+
+  /**
+   * Fill the status index from the fault tolerant table the first time we run with a table that predates it.
+   * This reads the entire table once; it is safe to repeat if interrupted.
+   *
+   * @param session the session to use
+   */
+  static void populateFtiStatusIndex(Session session) {
+    if (session.execute(FIND_MIGRATION, FTI_STATUS_MIGRATION).one() != null) {
+      return;
+    }
+    PreparedStatement insert = session.prepare(INSERT_FTI_STATUS);
+    SimpleStatement all = new SimpleStatement("SELECT docid, scanner, status FROM jj_logging.fault_tolerant");
+    all.setFetchSize(MIGRATION_FETCH_SIZE);
+    for (Row row : session.execute(all)) {
+      String status = row.getString(2);
+      if (IN_FLIGHT_STATUSES.contains(status)) {
+        session.execute(insert.bind(row.getString(1), status, row.getString(0)));
+      }
+    }
+    session.execute(RECORD_MIGRATION, FTI_STATUS_MIGRATION);
   }
 
   void die(Exception e) {
@@ -124,6 +185,15 @@ public class CassandraLog4JManager extends AbstractManager {
   }
 
 
+  /**
+   * The layout of the regular log table that events are written to.
+   *
+   * @return the table description
+   */
+  public RegularLogTable getRegularLog() {
+    return regularLog;
+  }
+
   public boolean isReady() {
     return cassandraReady.isDone();
   }
@@ -23,16 +23,16 @@ import org.apache.logging.log4j.core.appender.ManagerFactory;
  * User: gus
  * Date: 11/15/14
  */
-public class CassandraLog4JManagerFactory implements ManagerFactory<CassandraLog4JManager, Object> {
+public class CassandraLog4JManagerFactory implements ManagerFactory<CassandraLog4JManager, RegularLogTable> {
 
   // N.B. this probably can't be standard singleton because new CassandraLog4JManager() does complicated stuff and
   // can cause deadlocks if not coordinated properly... So I don't want it firing on class load.
   private static CassandraLog4JManager manager;
 
   @Override
-  public synchronized CassandraLog4JManager createManager(String name, Object data) {
+  public synchronized CassandraLog4JManager createManager(String name, RegularLogTable data) {
     if (manager == null) {
-      manager = new CassandraLog4JManager("name");
+      manager = new CassandraLog4JManager("name", data);
     }
     return manager;
   }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the statistics exposed by {@link CassandraLogMetricsMBean} for an asynchronous log writer.
+ */
+public class CassandraLogMetrics implements CassandraLogMetricsMBean {
+
+  private final CassandraLogWriter writer;
+
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder blocked = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  CassandraLogMetrics(CassandraLogWriter writer) {
+    this.writer = writer;
+  }
+
+  void queued() {
+    queued.increment();
+  }
+
+  void written(int events) {
+    written.add(events);
+  }
+
+  void coalesced() {
+    coalesced.increment();
+  }
+
+  void dropped() {
+    dropped.increment();
+  }
+
+  void blocked() {
+    blocked.increment();
+  }
+
+  void failed(int events) {
+    failed.add(events);
+  }
+
+  @Override
+  public long getEventsQueued() {
+    return queued.sum();
+  }
+
+  @Override
+  public long getEventsWritten() {
+    return written.sum();
+  }
+
+  @Override
+  public long getEventsCoalesced() {
+    return coalesced.sum();
+  }
+
+  @Override
+  public long getEventsDropped() {
+    return dropped.sum();
+  }
+
+  @Override
+  public long getAppendsBlocked() {
+    return blocked.sum();
+  }
+
+  @Override
+  public long getEventsFailed() {
+    return failed.sum();
+  }
+
+  @Override
+  public int getBufferedEvents() {
+    return writer.getBufferedEvents();
+  }
+
+  @Override
+  public int getBufferCapacity() {
+    return writer.getBufferCapacity();
+  }
+
+  @Override
+  public int getOutstandingWrites() {
+    return writer.getOutstandingWrites();
+  }
+}
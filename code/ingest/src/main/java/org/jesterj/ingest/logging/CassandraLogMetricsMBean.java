@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+/**
+ * Statistics for a {@link JesterJAppender} writing asynchronously, registered with the platform MBean server
+ * while the appender is running. Counts are totals since the appender started.
+ */
+public interface CassandraLogMetricsMBean {
+
+  long getEventsQueued();
+
+  long getEventsWritten();
+
+  /**
+   * @return the number of fault tolerance events not written because a later event for the same document
+   * replaced them before they were sent.
+   */
+  long getEventsCoalesced();
+
+  /**
+   * @return the number of events discarded because the buffer was full.
+   */
+  long getEventsDropped();
+
+  /**
+   * @return the number of times a logging thread had to wait for space in the buffer.
+   */
+  long getAppendsBlocked();
+
+  long getEventsFailed();
+
+  int getBufferedEvents();
+
+  int getBufferCapacity();
+
+  int getOutstandingWrites();
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.logging.log4j.status.StatusLogger;
+import org.jesterj.ingest.queue.MpscRingBufferQueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Writes log events to cassandra from a single background thread, so that logging threads only pay for
+ * placing the event in a bounded buffer. The writer drains the buffer in groups, writes regular events logged
+ * in the same hour as one unlogged batch (a single partition, so this costs cassandra nothing extra), writes
+ * fault tolerance events for the same document as one unlogged batch, and sends all writes with executeAsync,
+ * keeping a limited number of them outstanding.
+ * <p>
+ * A fault tolerance batch is not a single partition. The statement bound for each event also updates the
+ * fti_by_status index, which is partitioned by scanner and status, so the coordinator must write to the
+ * replicas of several partitions. The batch still saves a round trip per statement, and is unlogged because
+ * entries in the index are verified against fault_tolerant before they are acted on.
+ * <p>
+ * Only the last of several fault tolerance events for the same document and scanner in a group is written,
+ * since each overwrites the whole row. Because events are held briefly, a status read back from cassandra may
+ * lag the status logged by up to the contents of the buffer.
+ */
+class CassandraLogWriter {
+
+  /**
+   * What to do with an event when the buffer is full.
+   */
+  enum OverflowPolicy {
+    /**
+     * Wait for space, never losing events but slowing logging threads to the rate cassandra accepts writes.
+     */
+    BLOCK,
+    /**
+     * Discard regular log events, but wait for space for fault tolerance events, which must not be lost.
+     */
+    DROP_REGULAR,
+    /**
+     * Discard any event that doesn't fit. Lost fault tolerance events may cause documents to be reprocessed.
+     */
+    DROP_ALL
+  }
+
+  private static final long POLL_MS = 100;
+
+  private final MpscRingBufferQueue<LoggedEvent> buffer;
+  private final int maxGroup;
+  private final Semaphore outstanding;
+  private final int maxOutstanding;
+  private final OverflowPolicy overflowPolicy;
+  private final Function<LoggedEvent, Statement> binder;
+  private final Function<Statement, ListenableFuture<?>> executor;
+  private final CassandraLogMetrics metrics;
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  /**
+   * Create and start a writer.
+   *
+   * @param name           used to name the writer thread
+   * @param bufferSize     the number of events that may wait to be written
+   * @param maxGroup       the most events to take from the buffer at once
+   * @param maxOutstanding the most writes that may await a response from cassandra
+   * @param overflowPolicy what to do when the buffer is full
+   * @param binder         creates the statement that writes an event
+   * @param executor       executes a statement asynchronously
+   */
+  CassandraLogWriter(String name, int bufferSize, int maxGroup, int maxOutstanding, OverflowPolicy overflowPolicy,
+                     Function<LoggedEvent, Statement> binder, Function<Statement, ListenableFuture<?>> executor) {
+    this.buffer = new MpscRingBufferQueue<>(bufferSize);
+    this.maxGroup = maxGroup;
+    this.maxOutstanding = maxOutstanding;
+    this.outstanding = new Semaphore(maxOutstanding);
+    this.overflowPolicy = overflowPolicy;
+    this.binder = binder;
+    this.executor = executor;
+    this.metrics = new CassandraLogMetrics(this);
+    this.writer = new Thread(this::run, name + "-cassandra-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Place an event in the buffer, applying the overflow policy if it is full.
+   *
+   * @param event the event to write
+   * @return false if the event was discarded
+   */
+  boolean enqueue(LoggedEvent event) {
+    if (buffer.offer(event)) {
+      metrics.queued();
+      return true;
+    }
+    if (overflowPolicy == OverflowPolicy.DROP_ALL ||
+        (overflowPolicy == OverflowPolicy.DROP_REGULAR && !event.faultTolerant)) {
+      metrics.dropped();
+      return false;
+    }
+    metrics.blocked();
+    try {
+      buffer.put(event);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      metrics.dropped();
+      return false;
+    }
+    metrics.queued();
+    return true;
+  }
+
+  private void run() {
+    List<LoggedEvent> group = new ArrayList<>(maxGroup);
+    while (running || !buffer.isEmpty()) {
+      try {
+        LoggedEvent first = buffer.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        group.add(first);
+        buffer.drainTo(group, maxGroup - 1);
+        write(group);
+      } catch (InterruptedException e) {
+        // only stop() interrupts us, and it has cleared running
+      } catch (RuntimeException e) {
+        // never let the writer die, or logging threads will eventually block forever
+        metrics.failed(group.size());
+        StatusLogger.getLogger().error("Could not write log events to cassandra", e);
+      } finally {
+        group.clear();
+      }
+    }
+  }
+
+  private void write(List<LoggedEvent> group) {
+    // hour -> events, the regular log is partitioned by node and hour, and all events written here share a node
+    Map<Long, List<LoggedEvent>> byHour = new LinkedHashMap<>();
+    // docid -> scanner -> latest event, the fault tolerance table is partitioned by docid
+    Map<String, Map<String, LoggedEvent>> byDocument = new LinkedHashMap<>();
+    for (LoggedEvent event : group) {
+      if (event.faultTolerant) {
+        LoggedEvent earlier = byDocument.computeIfAbsent(event.docId, (id) -> new LinkedHashMap<>())
+            .put(event.scanner, event);
+        if (earlier != null) {
+          metrics.coalesced();
+        }
+      } else {
+        byHour.computeIfAbsent(RegularLogTable.hourOf(event.timeStamp.getTime()), (hour) -> new ArrayList<>())
+            .add(event);
+      }
+    }
+    for (List<LoggedEvent> partition : byHour.values()) {
+      submit(partition);
+    }
+    for (Map<String, LoggedEvent> partition : byDocument.values()) {
+      submit(partition.values());
+    }
+  }
+
+  private void submit(Collection<LoggedEvent> partition) {
+    if (partition.size() == 1) {
+      submit(binder.apply(partition.iterator().next()), 1);
+    } else {
+      BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+      for (LoggedEvent event : partition) {
+        batch.add(binder.apply(event));
+      }
+      submit(batch, partition.size());
+    }
+  }
+
+  private void submit(Statement statement, int events) {
+    outstanding.acquireUninterruptibly();
+    ListenableFuture<?> result;
+    try {
+      result = executor.apply(statement);
+    } catch (RuntimeException e) {
+      outstanding.release();
+      throw e;
+    }
+    Futures.addCallback(result, new FutureCallback<Object>() {
+      @Override
+      public void onSuccess(Object ignored) {
+        outstanding.release();
+        metrics.written(events);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        outstanding.release();
+        metrics.failed(events);
+        StatusLogger.getLogger().error("Could not write log events to cassandra", t);
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Write everything in the buffer and wait for the writes to complete.
+   *
+   * @param timeout the longest to wait
+   * @param unit    the unit of the timeout
+   * @return true if everything was written in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    running = false;
+    writer.join(Math.max(1, unit.toMillis(timeout)));
+    if (writer.isAlive()) {
+      writer.interrupt();
+      return false;
+    }
+    long remaining = deadline - System.nanoTime();
+    if (outstanding.tryAcquire(maxOutstanding, Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+      outstanding.release(maxOutstanding);
+      return true;
+    }
+    return false;
+  }
+
+  CassandraLogMetrics getMetrics() {
+    return metrics;
+  }
+
+  int getBufferedEvents() {
+    return buffer.size();
+  }
+
+  int getBufferCapacity() {
+    return buffer.capacity();
+  }
+
+  int getOutstandingWrites() {
+    return maxOutstanding - outstanding.availablePermits();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.logging;
+
+import com.datastax.driver.core.Statement;
+import org.jesterj.ingest.model.Status;
+import org.jesterj.ingest.persistence.CassandraSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@code jj_logging.fti_by_status} in step with the status of each document. Only the partition a
+ * document is leaving is deleted from, so the in flight status last logged for each document is remembered.
+ * Documents are forgotten as soon as they leave the in flight statuses. Entries left by an earlier run are not
+ * known here, they are checked and removed when scanners reset stranded documents on activation.
+ * <p>
+ * {@link Status#ERROR} is indexed but not remembered. Unlike processing and batched documents, a document in
+ * error may never be seen again during this run, and remembering it would hold it in memory until the process
+ * stops. If it is seen again, its error entry is left behind like those of an earlier run, and removed by the
+ * same check against the fault tolerance table.
+ */
+class FtiStatusIndex {
+
+  private final CassandraSupport cassandra;
+  // keyed by scanner and document id
+  private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+
+  FtiStatusIndex(CassandraSupport cassandra) {
+    this.cassandra = cassandra;
+  }
+
+  /**
+   * The changes to the index required by a status event.
+   *
+   * @param e a fault tolerance event
+   * @return the statements to write along with the event, empty if the index is already correct
+   */
+  List<Statement> statementsFor(LoggedEvent e) {
+    String key = e.scanner + '\u0000' + e.docId;
+    boolean entering = CassandraLog4JManager.IN_FLIGHT_STATUSES.contains(e.status);
+    boolean remembered = entering && !Status.ERROR.name().equals(e.status);
+    String leaving = remembered ? inFlight.put(key, e.status) : inFlight.remove(key);
+    if (e.status.equals(leaving)) {
+      return Collections.emptyList();
+    }
+    List<Statement> statements = new ArrayList<>(2);
+    if (leaving != null) {
+      statements.add(cassandra.getPreparedQuery(JesterJAppender.FTI_STATUS_DELETE_Q)
+          .bind(e.scanner, leaving, e.docId));
+    }
+    if (entering) {
+      statements.add(cassandra.getPreparedQuery(JesterJAppender.FTI_STATUS_INSERT_Q)
+          .bind(e.scanner, e.status, e.docId));
+    }
+    return statements;
+  }
+}
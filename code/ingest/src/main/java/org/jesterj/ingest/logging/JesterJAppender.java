@@ -16,9 +16,8 @@
 
 package org.jesterj.ingest.logging;
 
-import com.datastax.driver.core.BoundStatement;
-import com.datastax.driver.core.Session;
-import org.apache.logging.log4j.Marker;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Statement;
 import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
@@ -29,23 +28,36 @@ import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.PatternLayout;
 import org.jesterj.ingest.persistence.CassandraSupport;
+import org.jesterj.ingest.persistence.StatusStore;
+import org.jesterj.ingest.persistence.StatusStores;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.lang.management.ManagementFactory;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Writes regular log events and fault tolerance (FTI) status events to cassandra. By default each event is
+ * written synchronously by the logging thread. With <code>async="true"</code> events are instead handed to a
+ * background writer through a bounded buffer, see {@link CassandraLogWriter}. The asynchronous mode is
+ * configured with the attributes <code>bufferSize</code> (events, default 65536), <code>batchSize</code>
+ * (events taken from the buffer at once, default 256), <code>maxOutstanding</code> (writes awaiting
+ * cassandra, default 64) and <code>overflowPolicy</code> (BLOCK, DROP_REGULAR or DROP_ALL, default BLOCK).
+ * Regular events are written to {@link RegularLogTable}, which is configured with the attributes
+ * <code>node</code> (default the host name), <code>regularTtlSeconds</code> (default 7 days, 0 for no expiry)
+ * and <code>regularWindowHours</code> (the compaction window, default 6).
+ */
 @Plugin(name = "JesterJAppender", category = "Core", elementType = "appender")
 public class JesterJAppender extends AbstractAppender {
 
-  private static final String INSERT_REG =
-      "INSERT INTO jj_logging.regular " +
-          "(id, logger, tstamp, level, thread, message) " +
-          "VALUES(?,?,?,?,?,?)";
-
   @SuppressWarnings("SpellCheckingInspection") 
   private static final String INSERT_FTI =
       "INSERT INTO jj_logging.fault_tolerant " +
@@ -53,8 +65,11 @@ public class JesterJAppender extends AbstractAppender {
           "VALUES(?,?,?,?,?,?,?,?)";
   public static final String REG_INSERT_Q = "REG_INSERT_Q";
   public static final String FTI_INSERT_Q = "FTI_INSERT_Q";
+  public static final String FTI_STATUS_INSERT_Q = "FTI_STATUS_INSERT_Q";
+  public static final String FTI_STATUS_DELETE_Q = "FTI_STATUS_DELETE_Q";
 
   private static CassandraSupport cassandra = new CassandraSupport();
+  private static final FtiStatusIndex statusIndex = new FtiStatusIndex(cassandra);
 
   @SuppressWarnings("SpellCheckingInspection") 
   public static final String JJ_INGEST_DOCID = "jj_ingest.docid";
@@ -66,8 +81,12 @@ public class JesterJAppender extends AbstractAppender {
   // tries to log messages we get a deadlock. Therefore the manager does not create cassandra until after the first
   // logging event, and then queues the events until cassandra is ready to accept them. This variable is then
   // nullified and the queue should eventually be garbage collected.
-  private static volatile Queue<LogEvent> startupQueue = new ConcurrentLinkedQueue<>();
-  private static volatile Iterator<LogEvent> drainIterator;
+  private static volatile Queue<LoggedEvent> startupQueue = new ConcurrentLinkedQueue<>();
+  private static volatile Iterator<LoggedEvent> drainIterator;
+
+  // null when writing synchronously
+  private CassandraLogWriter asyncWriter;
+  private ObjectName metricsName;
 
   @SuppressWarnings("UnusedDeclaration")
   protected JesterJAppender(String name, Filter filter, Layout<? extends Serializable> layout) {
@@ -89,6 +108,14 @@ public class JesterJAppender extends AbstractAppender {
   @PluginFactory
   public static JesterJAppender createAppender(@PluginAttribute("name") String name,
                                                @PluginAttribute("ignoreExceptions") boolean ignoreExceptions,
+                                               @PluginAttribute("async") boolean async,
+                                               @PluginAttribute(value = "bufferSize", defaultInt = 65536) int bufferSize,
+                                               @PluginAttribute(value = "batchSize", defaultInt = 256) int batchSize,
+                                               @PluginAttribute(value = "maxOutstanding", defaultInt = 64) int maxOutstanding,
+                                               @PluginAttribute(value = "overflowPolicy", defaultString = "BLOCK") String overflowPolicy,
+                                               @PluginAttribute("node") String node,
+                                               @PluginAttribute(value = "regularTtlSeconds", defaultInt = RegularLogTable.DEFAULT_TTL_SECONDS) int regularTtlSeconds,
+                                               @PluginAttribute(value = "regularWindowHours", defaultInt = RegularLogTable.DEFAULT_WINDOW_HOURS) int regularWindowHours,
                                                @PluginElement("Layout") Layout layout,
                                                @PluginElement("Filters") Filter filter) {
 
@@ -97,7 +124,15 @@ public class JesterJAppender extends AbstractAppender {
       return null;
     }
 
-    manager = createManager();
+    RegularLogTable regularLog;
+    try {
+      regularLog = new RegularLogTable(node == null ? RegularLogTable.localNode() : node,
+          regularTtlSeconds, regularWindowHours);
+    } catch (IllegalArgumentException e) {
+      LOGGER.error("Invalid regular log configuration for JesterJAppender: " + e.getMessage());
+      return null;
+    }
+    manager = createManager(regularLog);
     if (manager == null) {
       return null;
     }
@@ -105,25 +140,44 @@ public class JesterJAppender extends AbstractAppender {
       layout = PatternLayout.createDefaultLayout();
     }
     cassandra.addStatement(FTI_INSERT_Q, INSERT_FTI);
-    cassandra.addStatement(REG_INSERT_Q, INSERT_REG);
-    return new JesterJAppender(name, layout, filter, manager, ignoreExceptions);
+    cassandra.addStatement(REG_INSERT_Q, RegularLogTable.INSERT);
+    cassandra.addStatement(FTI_STATUS_INSERT_Q, CassandraLog4JManager.INSERT_FTI_STATUS);
+    cassandra.addStatement(FTI_STATUS_DELETE_Q, CassandraLog4JManager.DELETE_FTI_STATUS);
+    JesterJAppender appender = new JesterJAppender(name, layout, filter, manager, ignoreExceptions);
+    if (async) {
+      CassandraLogWriter.OverflowPolicy policy;
+      try {
+        policy = CassandraLogWriter.OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        LOGGER.error("Unknown overflowPolicy {} for JesterJAppender, use BLOCK, DROP_REGULAR or DROP_ALL", overflowPolicy);
+        return null;
+      }
+      appender.asyncWriter = new CassandraLogWriter(name, bufferSize, batchSize, maxOutstanding, policy,
+          JesterJAppender::bind, (statement) -> cassandra.getSession().executeAsync(statement));
+    }
+    return appender;
   }
 
-  private static CassandraLog4JManager createManager() {
-    return new CassandraLog4JManagerFactory().createManager("jjCassandraManager", null);
+  private static CassandraLog4JManager createManager(RegularLogTable regularLog) {
+    return new CassandraLog4JManagerFactory().createManager("jjCassandraManager", regularLog);
   }
 
   /**
    * Write events to cassandra. If cassandra is booting log events are cached. Once cassandra has booted
    * the first subsequent event will synchronize on the queue and begin draining the queue. During this
    * drain all logging events will need to acquire this lock. At the end of the drain the queue will be
-   * nullified. Subsequent writes will then be processed immediately.
+   * nullified. Subsequent writes will then be processed immediately. If a {@link StatusStore} has been installed
+   * in place of cassandra, document status events are written to it instead.
    *
    * @param event the event to write to the log.
    */
   @Override
-  public void append(LogEvent event) {
-    if (!manager.isReady()) {
+  public void append(LogEvent logEvent) {
+    if (!LoggedEvent.isWritten(logEvent)) {
+      return;
+    }
+    LoggedEvent event = new LoggedEvent(logEvent);
+    if (!manager.isReady() && StatusStores.get() == null) {
       startupQueue.add(event);
     } else {
       if (startupQueue != null && startupQueue.peek() != null) {
@@ -151,39 +205,87 @@ public class JesterJAppender extends AbstractAppender {
   }
 
 
-  private void writeEvent(LogEvent e) {
-    Marker m = e.getMarker();
-    new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss,'Z'").format(e.getTimeMillis());
-    // everything wrapped in String.valueOf to avoid any issues with null.
-    String logger  = String.valueOf(e.getLoggerName());
-    Date timeStamp = new Date(e.getTimeMillis());
-    String level = String.valueOf(e.getLevel());
-    String thread = String.valueOf(Thread.currentThread().getName());
-    String message = String.valueOf(e.getMessage());
-
-    if (m == null || m.isInstanceOf(Markers.LOG_MARKER)) {
-      Session s = cassandra.getSession();
-      BoundStatement bs = new BoundStatement(cassandra.getPreparedQuery(REG_INSERT_Q));
-
-      UUID id = UUID.randomUUID();  // maybe we can skip this for regular logs?
-
-      s.execute(bs.bind(id, logger, timeStamp, level, thread, message));
-
-      return; // never want non FTI logging to write to the FTI table.
+  private void writeEvent(LoggedEvent e) {
+    StatusStore store = StatusStores.get();
+    if (store != null) {
+      // a local store only keeps document status, regular events are left to the other appenders
+      if (e.faultTolerant) {
+        store.setStatus(e.scanner, e.docId, e.status);
+      }
+    } else if (asyncWriter != null) {
+      asyncWriter.enqueue(e);
+    } else {
+      cassandra.getSession().execute(bind(e));
     }
+  }
 
-    if (m.isInstanceOf(Markers.FTI_MARKER)) {
-      Session s = cassandra.getSession();
-      BoundStatement bs = new BoundStatement(cassandra.getPreparedQuery(FTI_INSERT_Q));
-      
-      // everything wrapped in String.valueOf to avoid any issues with null.
-      String status = String.valueOf(e.getMarker().getName());
-      String docId = String.valueOf(e.getContextMap().get(JJ_INGEST_DOCID));
-      String scanner = String.valueOf(e.getContextMap().get(JJ_INGEST_SOURCE_SCANNER));
-
-      s.execute(bs.bind(docId, scanner, logger, timeStamp, level, thread, status, message));
+  private static Statement bind(LoggedEvent e) {
+    if (e.faultTolerant) {
+      Statement fti = cassandra.getPreparedQuery(FTI_INSERT_Q)
+          .bind(e.docId, e.scanner, e.logger, e.timeStamp, e.level, e.thread, e.status, e.message);
+      List<Statement> index = statusIndex.statementsFor(e);
+      if (index.isEmpty()) {
+        return fti;
+      }
+      // These are different partitions, but there is little to gain from a logged batch since entries in the
+      // index are verified before use.
+      BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+      batch.add(fti);
+      batch.addAll(index);
+      return batch;
+    }
+    // never want non FTI logging to write to the FTI table.
+    UUID id = UUID.randomUUID();  // maybe we can skip this for regular logs?
+    RegularLogTable regularLog = manager.getRegularLog();
+    Date hour = new Date(RegularLogTable.hourOf(e.timeStamp.getTime()));
+    return cassandra.getPreparedQuery(REG_INSERT_Q)
+        .bind(regularLog.getNode(), hour, e.timeStamp, id, e.logger, e.level, e.thread, e.message);
+  }
 
+  @Override
+  public void start() {
+    super.start();
+    if (asyncWriter != null) {
+      try {
+        ObjectName name = new ObjectName("org.jesterj:type=Logging,name=" + ObjectName.quote(getName()));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (!server.isRegistered(name)) {
+          server.registerMBean(asyncWriter.getMetrics(), name);
+          metricsName = name;
+        }
+      } catch (JMException e) {
+        LOGGER.warn("Could not register metrics for JesterJAppender " + getName(), e);
+      }
     }
+  }
 
+  /**
+   * When writing asynchronously, write the events still in the buffer before stopping.
+   */
+  @Override
+  public boolean stop(long timeout, TimeUnit timeUnit) {
+    setStopping();
+    boolean stopped = super.stop(timeout, timeUnit, false);
+    if (asyncWriter != null) {
+      try {
+        if (!asyncWriter.stop(timeout > 0 ? timeout : 30, timeout > 0 ? timeUnit : TimeUnit.SECONDS)) {
+          LOGGER.warn("JesterJAppender {} stopped before all log events were written to cassandra", getName());
+          stopped = false;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stopped = false;
+      }
+      if (metricsName != null) {
+        try {
+          ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+          LOGGER.warn("Could not unregister metrics for JesterJAppender " + getName(), e);
+        }
+        metricsName = null;
+      }
+    }
+    setStopped();
+    return stopped;
   }
 }
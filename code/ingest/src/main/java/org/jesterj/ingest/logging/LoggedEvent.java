@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.LogEvent;
+
+import java.util.Date;
+
+/**
+ * The values written to cassandra for a log event, captured when the event is appended. Log4j may reuse
+ * event and message objects once the append returns, so events must be captured before being held for
+ * later writing.
+ */
+class LoggedEvent {
+  // everything wrapped in String.valueOf to avoid any issues with null.
+  final boolean faultTolerant;
+  final String logger;
+  final Date timeStamp;
+  final String level;
+  final String thread;
+  final String message;
+  final String status;
+  final String docId;
+  final String scanner;
+
+  LoggedEvent(LogEvent e) {
+    Marker m = e.getMarker();
+    this.faultTolerant = m != null && !m.isInstanceOf(Markers.LOG_MARKER) && m.isInstanceOf(Markers.FTI_MARKER);
+    this.logger = String.valueOf(e.getLoggerName());
+    this.timeStamp = new Date(e.getTimeMillis());
+    this.level = String.valueOf(e.getLevel());
+    this.thread = String.valueOf(e.getThreadName());
+    this.message = e.getMessage() == null ? "null" : String.valueOf(e.getMessage().getFormattedMessage());
+    if (faultTolerant) {
+      this.status = String.valueOf(m.getName());
+      this.docId = String.valueOf((Object) e.getContextData().getValue(JesterJAppender.JJ_INGEST_DOCID));
+      this.scanner = String.valueOf((Object) e.getContextData().getValue(JesterJAppender.JJ_INGEST_SOURCE_SCANNER));
+    } else {
+      this.status = null;
+      this.docId = null;
+      this.scanner = null;
+    }
+  }
+
+  /**
+   * Whether this event should be written at all. Events with markers that are neither regular logging nor
+   * fault tolerance markers are not written.
+   *
+   * @param e the event
+   * @return true if the event belongs in one of the logging tables
+   */
+  static boolean isWritten(LogEvent e) {
+    Marker m = e.getMarker();
+    return m == null || m.isInstanceOf(Markers.LOG_MARKER) || m.isInstanceOf(Markers.FTI_MARKER);
+  }
+}
@@ -27,6 +27,7 @@ import static org.jesterj.ingest.model.Status.ERROR;
 import static org.jesterj.ingest.model.Status.INDEXED;
 import static org.jesterj.ingest.model.Status.PROCESSING;
 import static org.jesterj.ingest.model.Status.SEARCHABLE;
+import static org.jesterj.ingest.model.Status.SUPERSEDED;
 
 
 /*
@@ -46,4 +47,5 @@ public class Markers {
   public static final Marker SET_READY = MarkerManager.getMarker(BATCHED.toString()).setParents(FTI_MARKER);
   public static final Marker SET_SEARCHABLE = MarkerManager.getMarker(SEARCHABLE.toString()).setParents(FTI_MARKER);
   public static final Marker SET_DEAD = MarkerManager.getMarker(DEAD.toString()).setParents(FTI_MARKER);
+  public static final Marker SET_SUPERSEDED = MarkerManager.getMarker(SUPERSEDED.toString()).setParents(FTI_MARKER);
 }
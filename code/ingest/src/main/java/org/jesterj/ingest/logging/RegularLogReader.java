@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.logging;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import org.jesterj.ingest.persistence.CassandraSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the regular log for one node over a range of time, a page at a time. Each hour in the range is a
+ * separate partition in {@link RegularLogTable}, and these are read in order, so entries are returned oldest
+ * first. A page holds at most the requested number of entries and a token for reading the next page.
+ */
+public class RegularLogReader {
+
+  private static final String RANGE_Q = "REGULAR_LOG_RANGE_Q";
+
+  private final CassandraSupport cassandra;
+
+  public RegularLogReader() {
+    this(new CassandraSupport());
+  }
+
+  RegularLogReader(CassandraSupport cassandra) {
+    this.cassandra = cassandra;
+    cassandra.addStatement(RANGE_Q, RegularLogTable.SELECT_RANGE);
+  }
+
+  /**
+   * Read a page of the log.
+   *
+   * @param node      the node whose log is read
+   * @param from      the start of the range (inclusive)
+   * @param to        the end of the range (exclusive)
+   * @param pageSize  the maximum number of entries to return
+   * @param pageToken the token from the previous page, or null for the first page.
+   * @return the page of entries
+   */
+  public Page read(String node, Date from, Date to, int pageSize, String pageToken) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("page size must be positive:" + pageSize);
+    }
+    long hour = RegularLogTable.hourOf(from.getTime());
+    long lastHour = RegularLogTable.hourOf(to.getTime() - 1);
+    PagingState state = null;
+    if (pageToken != null) {
+      int split = pageToken.indexOf(':');
+      try {
+        hour = Long.parseLong(pageToken.substring(0, split));
+        if (split < pageToken.length() - 1) {
+          state = PagingState.fromString(pageToken.substring(split + 1));
+        }
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Invalid page token:" + pageToken, e);
+      }
+    }
+    List<Entry> entries = new ArrayList<>();
+    for (; hour <= lastHour; hour += RegularLogTable.HOUR_MILLIS) {
+      if (entries.size() == pageSize) {
+        return new Page(entries, hour + ":");
+      }
+      BoundStatement select = cassandra.getPreparedQuery(RANGE_Q).bind(node, new Date(hour), from, to);
+      select.setFetchSize(pageSize - entries.size());
+      if (state != null) {
+        select.setPagingState(state);
+        state = null;
+      }
+      ResultSet rs = cassandra.getSession().execute(select);
+      // only take what has been fetched, the rest of the partition belongs to later pages
+      for (int available = rs.getAvailableWithoutFetching(); available > 0; available--) {
+        Row row = rs.one();
+        entries.add(new Entry(node, row.getTimestamp(0), row.getString(1), row.getString(2), row.getString(3),
+            row.getString(4)));
+      }
+      PagingState next = rs.getExecutionInfo().getPagingState();
+      if (next != null) {
+        return new Page(entries, hour + ":" + next);
+      }
+    }
+    return new Page(entries, null);
+  }
+
+  public static class Page {
+    private final List<Entry> entries;
+    private final String nextPageToken;
+
+    Page(List<Entry> entries, String nextPageToken) {
+      this.entries = Collections.unmodifiableList(entries);
+      this.nextPageToken = nextPageToken;
+    }
+
+    public List<Entry> getEntries() {
+      return entries;
+    }
+
+    /**
+     * The token with which to read the next page.
+     *
+     * @return the token or null if this is the last page.
+     */
+    public String getNextPageToken() {
+      return nextPageToken;
+    }
+  }
+
+  public static class Entry {
+    private final String node;
+    private final Date timestamp;
+    private final String logger;
+    private final String level;
+    private final String thread;
+    private final String message;
+
+    Entry(String node, Date timestamp, String logger, String level, String thread, String message) {
+      this.node = node;
+      this.timestamp = timestamp;
+      this.logger = logger;
+      this.level = level;
+      this.thread = thread;
+      this.message = message;
+    }
+
+    public String getNode() {
+      return node;
+    }
+
+    public Date getTimestamp() {
+      return timestamp;
+    }
+
+    public String getLogger() {
+      return logger;
+    }
+
+    public String getLevel() {
+      return level;
+    }
+
+    public String getThread() {
+      return thread;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.logging;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The layout of the regular (non fault tolerance) log in cassandra. Events are partitioned by the node that
+ * logged them and the hour in which they were logged and ordered by time within the partition, so that a time
+ * range can be read one partition at a time (see {@link RegularLogReader}) instead of by scanning the table.
+ * Events expire after a time to live and the table uses time window compaction, so sstables that hold only
+ * expired events are dropped whole rather than compacted. Changes to the time to live only apply to events
+ * written after the change.
+ */
+public class RegularLogTable {
+
+  public static final int DEFAULT_TTL_SECONDS = 7 * 24 * 60 * 60;
+  public static final int DEFAULT_WINDOW_HOURS = 6;
+
+  static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  static final String INSERT =
+      "INSERT INTO jj_logging.regular_by_hour " +
+          "(node, hour, tstamp, id, logger, level, thread, message) " +
+          "VALUES(?,?,?,?,?,?,?,?)";
+  static final String SELECT_RANGE =
+      "SELECT tstamp, logger, level, thread, message FROM jj_logging.regular_by_hour " +
+          "WHERE node = ? AND hour = ? AND tstamp >= ? AND tstamp < ?";
+  private static final String FIND_OPTIONS =
+      "SELECT default_time_to_live, compaction FROM system_schema.tables " +
+          "WHERE keyspace_name = 'jj_logging' AND table_name = 'regular_by_hour'";
+  private static final String TWCS = "TimeWindowCompactionStrategy";
+
+  private final String node;
+  private final int ttlSeconds;
+  private final int windowHours;
+
+  /**
+   * Describe the regular log table.
+   *
+   * @param node        the name recorded with events logged by this node
+   * @param ttlSeconds  how long events are kept, 0 to keep them forever
+   * @param windowHours the size of the compaction windows in hours. A time to live of 20 to 30 windows is
+   *                    a reasonable choice.
+   */
+  public RegularLogTable(String node, int ttlSeconds, int windowHours) {
+    if (node == null) {
+      throw new IllegalArgumentException("node must not be null");
+    }
+    if (ttlSeconds < 0) {
+      throw new IllegalArgumentException("ttl must not be negative:" + ttlSeconds);
+    }
+    if (windowHours < 1) {
+      throw new IllegalArgumentException("compaction window must be at least one hour:" + windowHours);
+    }
+    this.node = node;
+    this.ttlSeconds = ttlSeconds;
+    this.windowHours = windowHours;
+  }
+
+  /**
+   * The default node name, the name of this host.
+   *
+   * @return the host name, or "localhost" if it cannot be determined.
+   */
+  public static String localNode() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "localhost";
+    }
+  }
+
+  /**
+   * The start of the hour containing a time, which identifies the partition holding events logged at that time.
+   *
+   * @param millis a time in milliseconds since the epoch
+   * @return the start of the hour in milliseconds since the epoch
+   */
+  public static long hourOf(long millis) {
+    return millis - Math.floorMod(millis, HOUR_MILLIS);
+  }
+
+  public String getNode() {
+    return node;
+  }
+
+  public int getTtlSeconds() {
+    return ttlSeconds;
+  }
+
+  public int getWindowHours() {
+    return windowHours;
+  }
+
+  String createCql() {
+    return "CREATE TABLE IF NOT EXISTS jj_logging.regular_by_hour(" +
+        "node text, " +
+        "hour timestamp, " +
+        "tstamp timestamp, " +
+        "id uuid, " +
+        "logger text, " +
+        "level text, " +
+        "thread text, " +
+        "message text, " +
+        "PRIMARY KEY ((node, hour), tstamp, id)) " +
+        "WITH " + options() + ";";
+  }
+
+  String alterCql() {
+    return "ALTER TABLE jj_logging.regular_by_hour WITH " + options() + ";";
+  }
+
+  // rows are never deleted, only expired, so there are no tombstones that need a long grace period
+  private String options() {
+    return "default_time_to_live = " + ttlSeconds + " " +
+        "AND gc_grace_seconds = 3600 " +
+        "AND compaction = { 'class' : '" + TWCS + "', " +
+        "'compaction_window_unit' : 'HOURS', " +
+        "'compaction_window_size' : " + windowHours + " }";
+  }
+
+  /**
+   * Whether the table's current options are the ones configured.
+   *
+   * @param ttl        the table's default_time_to_live
+   * @param compaction the table's compaction options, as found in system_schema.tables
+   * @return true if no change is needed
+   */
+  boolean matches(int ttl, Map<String, String> compaction) {
+    String strategy = compaction.get("class");
+    return ttl == ttlSeconds
+        && strategy != null && strategy.endsWith(TWCS)
+        && "HOURS".equals(compaction.get("compaction_window_unit"))
+        && String.valueOf(windowHours).equals(compaction.get("compaction_window_size"));
+  }
+
+  /**
+   * Create the table if it does not exist, and bring its time to live and compaction options in line with
+   * this configuration if they have changed.
+   *
+   * @param session the session to use
+   */
+  void createOrUpdate(Session session) {
+    session.execute(createCql());
+    Row row = session.execute(FIND_OPTIONS).one();
+    if (row != null && !matches(row.getInt(0), row.getMap(1, String.class, String.class))) {
+      session.execute(alterCql());
+    }
+  }
+}
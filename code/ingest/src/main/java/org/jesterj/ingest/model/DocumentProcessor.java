@@ -23,6 +23,9 @@ package org.jesterj.ingest.model;
  */
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public interface DocumentProcessor extends Configurable, Closeable {
 
@@ -38,9 +41,45 @@ public interface DocumentProcessor extends Configurable, Closeable {
    */
   Document[] processDocument(Document document);
 
+  /**
+   * Process several documents at once. Steps configured to process batches hand their processor up to the
+   * configured number of documents at a time via this method, allowing processors to amortize per call costs
+   * such as network round trips or prepared statements across the batch. The same rules apply as for
+   * {@link #processDocument(Document)}, problems with individual documents should be reported by setting the
+   * status of that document. If an exception is thrown anyway every document in the batch is marked as an error.
+   * The default implementation processes each document in turn, and marks only a document whose processing
+   * throws as an error, so that one bad document does not fail the rest of the batch.
+   *
+   * @param documents the items to process, in the order they were received
+   * @return the documents resulting from processing, which should be sent on to the next step.
+   */
+  default Document[] processBatch(List<Document> documents) {
+    List<Document> results = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      try {
+        Collections.addAll(results, processDocument(document));
+      } catch (RuntimeException e) {
+        document.setStatus(Status.ERROR, "Exception processing " + document.getId() + " in " + getName() + ": " + e);
+        results.add(document);
+      }
+    }
+    return results.toArray(new Document[results.size()]);
+  }
+
   default boolean hasExternalSideEffects() {
     return false;
   }
 
+  /**
+   * Indicates that this processor does only a little in memory work per document, such as copying or
+   * reformatting fields, and never waits on I/O. Steps with cheap processors may be fused into their predecessor
+   * (see {@link org.jesterj.ingest.model.impl.PlanImpl.Builder#fusingLinearSteps(boolean)}) and run on its thread.
+   *
+   * @return true if processing a document is cheap, false by default
+   */
+  default boolean isCheap() {
+    return false;
+  }
+
   default void close(){}
 }
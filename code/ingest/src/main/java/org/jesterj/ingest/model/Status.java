@@ -32,6 +32,7 @@ import static org.jesterj.ingest.logging.Markers.SET_INDEXED;
 import static org.jesterj.ingest.logging.Markers.SET_PROCESSING;
 import static org.jesterj.ingest.logging.Markers.SET_READY;
 import static org.jesterj.ingest.logging.Markers.SET_SEARCHABLE;
+import static org.jesterj.ingest.logging.Markers.SET_SUPERSEDED;
 
 /**
  * The conceptual states available for indexed resources.
@@ -111,6 +112,17 @@ public enum Status implements Serializable {
     }
   },
 
+  /**
+   * A later version of the document was received before this one was sent, and will be sent in its place. The
+   * status of the later version follows, so this is only seen if the later version is lost.
+   */
+  SUPERSEDED {
+    @Override
+    public Marker getMarker() {
+      return SET_SUPERSEDED;
+    }
+  },
+
   /**
    * Terminal state for resources that generate documents that will never succeed and cannot be processed.
    */
@@ -86,4 +86,14 @@ public interface Step extends Active, JiniServiceProvider, BlockingQueue<Documen
 
   Step[] getPossibleSideEffects();
 
+  /**
+   * The number of documents that can currently be accepted by this step without any step downstream of it
+   * having to block. Scanners use this to avoid reading documents that the plan has no room for.
+   *
+   * @return the remaining capacity of this step and the steps that follow it, whichever is smallest.
+   */
+  default int getRemainingCredit() {
+    return remainingCapacity();
+  }
+
 }
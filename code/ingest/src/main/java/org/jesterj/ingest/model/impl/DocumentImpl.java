@@ -18,6 +18,7 @@ package org.jesterj.ingest.model.impl;
 
 import com.coremedia.iso.Hex;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ForwardingList;
 import com.google.common.collect.ForwardingListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
@@ -39,9 +40,15 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /*
  * Created with IntelliJ IDEA.
@@ -72,6 +79,12 @@ public class DocumentImpl implements Document {
   private Operation operation;
   private String sourceScannerName;
 
+  // when this document was last placed in a step's queue, used to measure step to step handoff latency.
+  private transient long queuedNanos;
+
+  // true while the delegate may be referenced by another document, see copyOnWrite()
+  private transient boolean delegateShared;
+
   public DocumentImpl(byte[] rawData, String id, Plan plan, Operation operation, Scanner source) {
     this.rawData = rawData;
     this.operation = operation;
@@ -120,13 +133,55 @@ public class DocumentImpl implements Document {
     this.statusMessage = doc.getStatusMessage();
   }
 
+  private DocumentImpl(DocumentImpl doc) {
+    this.rawData = doc.rawData;
+    this.delegate = doc.delegate;
+    this.operation = doc.operation;
+    this.sourceScannerName = doc.sourceScannerName;
+    this.idField = doc.idField;
+    this.status = doc.status;
+    this.statusMessage = doc.statusMessage;
+    this.delegateShared = true;
+    doc.delegateShared = true;
+  }
+
+  /**
+   * Create a copy of this document that initially shares its raw data and fields with this document. The first
+   * change to the fields of either document gives that document a private copy of the fields, so neither can
+   * ever see changes made to the other. This is much cheaper than a deep copy when a document is sent down
+   * several paths in a plan, especially for documents with large raw data. Raw data arrays are never copied, so
+   * processors must replace raw data with {@link #setRawData(byte[])} rather than modifying the array.
+   *
+   * @return a copy of this document
+   */
+  public DocumentImpl copyOnWrite() {
+    return new DocumentImpl(this);
+  }
+
+  /**
+   * Ensure that the fields of this document are not shared with another document before they are modified
+   * or exposed in a form that could be modified.
+   */
+  private void ensureOwnDelegate() {
+    if (delegateShared) {
+      delegate = ArrayListMultimap.create(delegate);
+      delegateShared = false;
+    }
+  }
+
+  boolean isDelegateShared() {
+    return delegateShared;
+  }
+
   @Override
   public Multiset<String> keys() {
+    ensureOwnDelegate();
     return delegate.keys();
   }
 
   @Override
   public boolean putAll(@Nullable java.lang.String key, Iterable<? extends String> values) {
+    ensureOwnDelegate();
     return delegate.putAll(key, values);
   }
 
@@ -138,17 +193,20 @@ public class DocumentImpl implements Document {
       List<String> prev = replaceValues(this.idField, values);
       return prev == null || prev.size() != 1 || !prev.get(0).equals(value);
     } else {
+      ensureOwnDelegate();
       return delegate.put(key, value);
     }
   }
 
   @Override
   public boolean putAll(Multimap<? extends String, ? extends String> multimap) {
+    ensureOwnDelegate();
     return delegate.putAll(multimap);
   }
 
   @Override
   public Set<String> keySet() {
+    ensureOwnDelegate();
     return delegate.keySet();
   }
 
@@ -159,6 +217,7 @@ public class DocumentImpl implements Document {
 
   @Override
   public boolean remove(@Nullable java.lang.Object key, @Nullable java.lang.Object value) {
+    ensureOwnDelegate();
     return delegate.remove(key, value);
   }
 
@@ -169,6 +228,7 @@ public class DocumentImpl implements Document {
 
   @Override
   public Collection<Map.Entry<String, String>> entries() {
+    ensureOwnDelegate();
     return delegate.entries();
   }
 
@@ -179,21 +239,25 @@ public class DocumentImpl implements Document {
 
   @Override
   public void clear() {
+    ensureOwnDelegate();
     delegate.clear();
   }
 
   @Override
   public Map<String, Collection<String>> asMap() {
+    ensureOwnDelegate();
     return delegate.asMap();
   }
 
   @Override
   public List<String> replaceValues(@Nullable java.lang.String key, Iterable<? extends String> values) {
+    ensureOwnDelegate();
     return delegate.replaceValues(key, values);
   }
 
   @Override
   public Collection<String> values() {
+    ensureOwnDelegate();
     return delegate.values();
   }
 
@@ -204,7 +268,7 @@ public class DocumentImpl implements Document {
 
   @Override
   public List<String> get(@Nullable java.lang.String key) {
-    return delegate.get(key);
+    return delegateShared ? new CopyOnWriteValues(key) : delegate.get(key);
   }
 
   @Override
@@ -214,6 +278,7 @@ public class DocumentImpl implements Document {
 
   @Override
   public List<String> removeAll(@Nullable java.lang.Object key) {
+    ensureOwnDelegate();
     return delegate.removeAll(key);
   }
 
@@ -267,6 +332,7 @@ public class DocumentImpl implements Document {
 
   @Override
   public ArrayListMultimap<String, String> getDelegate() {
+    ensureOwnDelegate();
     return delegate;
   }
 
@@ -294,6 +360,14 @@ public class DocumentImpl implements Document {
     }
   }
 
+  long getQueuedNanos() {
+    return queuedNanos;
+  }
+
+  void setQueuedNanos(long queuedNanos) {
+    this.queuedNanos = queuedNanos;
+  }
+
   String getDelegateString() {
     return delegate.toString();
   }
@@ -320,6 +394,122 @@ public class DocumentImpl implements Document {
   }
 
 
+  /**
+   * The values for a key in a document whose fields are shared with another document. Reads see the shared
+   * values, and any modification first gives the document its own copy of the fields. Iterators obtained while
+   * the fields are shared are read only.
+   */
+  private class CopyOnWriteValues extends ForwardingList<String> {
+    private final String key;
+
+    CopyOnWriteValues(String key) {
+      this.key = key;
+    }
+
+    @Override
+    protected List<String> delegate() {
+      // always look up the current delegate, it changes when the document copies its fields
+      return delegate.get(key);
+    }
+
+    private List<String> writable() {
+      ensureOwnDelegate();
+      return delegate();
+    }
+
+    @Override
+    public boolean add(String element) {
+      return writable().add(element);
+    }
+
+    @Override
+    public void add(int index, String element) {
+      writable().add(index, element);
+    }
+
+    @Override
+    public boolean addAll(@Nonnull Collection<? extends String> collection) {
+      return writable().addAll(collection);
+    }
+
+    @Override
+    public boolean addAll(int index, @Nonnull Collection<? extends String> elements) {
+      return writable().addAll(index, elements);
+    }
+
+    @Override
+    public String set(int index, String element) {
+      return writable().set(index, element);
+    }
+
+    @Override
+    public String remove(int index) {
+      return writable().remove(index);
+    }
+
+    @Override
+    public boolean remove(Object object) {
+      return writable().remove(object);
+    }
+
+    @Override
+    public boolean removeAll(@Nonnull Collection<?> collection) {
+      return writable().removeAll(collection);
+    }
+
+    @Override
+    public boolean retainAll(@Nonnull Collection<?> collection) {
+      return writable().retainAll(collection);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super String> filter) {
+      return writable().removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<String> operator) {
+      writable().replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super String> c) {
+      writable().sort(c);
+    }
+
+    @Override
+    public void clear() {
+      writable().clear();
+    }
+
+    @Override
+    @Nonnull
+    public Iterator<String> iterator() {
+      return listIterator();
+    }
+
+    @Override
+    @Nonnull
+    public ListIterator<String> listIterator() {
+      return listIterator(0);
+    }
+
+    @Override
+    @Nonnull
+    public ListIterator<String> listIterator(int index) {
+      List<String> values = delegate();
+      return delegateShared ? Collections.unmodifiableList(values).listIterator(index) : values.listIterator(index);
+    }
+
+    @Override
+    @Nonnull
+    public List<String> subList(int fromIndex, int toIndex) {
+      List<String> values = delegate();
+      return delegateShared ? Collections.unmodifiableList(values).subList(fromIndex, toIndex) :
+          values.subList(fromIndex, toIndex);
+    }
+  }
+
   /**
    * A serializable form of an item that can be placed in a JavaSpace. The nextStepName is the property on which
    * steps query JavaSpaces to retrieve entries.
@@ -24,13 +24,22 @@ import guru.nidi.graphviz.engine.Graphviz;
 import guru.nidi.graphviz.model.Factory;
 import guru.nidi.graphviz.model.Graph;
 import guru.nidi.graphviz.model.Node;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jesterj.ingest.config.Transient;
+import org.jesterj.ingest.forkjoin.JesterJForkJoinThreadFactory;
 import org.jesterj.ingest.model.Plan;
 import org.jesterj.ingest.model.Scanner;
 import org.jesterj.ingest.model.Step;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static guru.nidi.graphviz.model.Factory.graph;
@@ -42,10 +51,15 @@ import static guru.nidi.graphviz.model.Factory.graph;
  */
 public class PlanImpl implements Plan {
 
+  private static final Logger log = LogManager.getLogger();
+
   private LinkedHashMap<String, Step> stepsMap;
   private String idField;
   private boolean active = false;
   private String name;
+  private int sharedPoolParallelism;
+  private boolean fusingSteps = true;
+  private ForkJoinPool sharedPool;
 
   protected PlanImpl() {
   }
@@ -129,16 +143,87 @@ public class PlanImpl implements Plan {
 
   @Override
   public synchronized void activate() {
-    getStepsMap().values().forEach(Step::activate);
+    Collection<Step> steps = getStepsMap().values();
+    if (sharedPoolParallelism > 0 && sharedPool == null) {
+      // asyncMode because step tasks are never joined, FIFO scheduling keeps documents moving in order of arrival
+      sharedPool = new ForkJoinPool(sharedPoolParallelism, new JesterJForkJoinThreadFactory(), null, true);
+      for (Step step : steps) {
+        ((StepImpl) step).setSharedPool(sharedPool);
+      }
+    }
+    steps.forEach(Step::activate);
+    registerMetrics(steps);
     this.setActive(true);
   }
 
   @Override
   public synchronized void deactivate() {
-    getStepsMap().values().forEach(Step::deactivate);
+    Collection<Step> steps = getStepsMap().values();
+    if (sharedPool != null) {
+      // let tasks already on the pool finish before deactivating the steps closes their processors
+      for (Step step : steps) {
+        ((StepImpl) step).stopScheduling();
+      }
+      sharedPool.shutdown();
+      try {
+        sharedPool.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (Step step : steps) {
+        ((StepImpl) step).setSharedPool(null);
+      }
+      sharedPool = null;
+    }
+    steps.forEach(Step::deactivate);
+    unregisterMetrics(steps);
     this.setActive(false);
   }
 
+  private void registerMetrics(Collection<Step> steps) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (Step step : steps) {
+      if (step instanceof StepImpl) {
+        try {
+          ObjectName objectName = metricsName(step);
+          if (!server.isRegistered(objectName)) {
+            server.registerMBean(((StepImpl) step).getMetrics(), objectName);
+          }
+        } catch (JMException e) {
+          log.warn("Could not register metrics for step " + step.getName(), e);
+        }
+      }
+    }
+  }
+
+  private void unregisterMetrics(Collection<Step> steps) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (Step step : steps) {
+      if (step instanceof StepImpl) {
+        try {
+          ObjectName objectName = metricsName(step);
+          if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+          }
+        } catch (JMException e) {
+          log.warn("Could not unregister metrics for step " + step.getName(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * The JMX name under which a step's metrics are registered while this plan is active.
+   *
+   * @param step the step
+   * @return the name, of the form org.jesterj:type=Step,plan=[plan name],step=[step name]
+   * @throws JMException if the name is not valid
+   */
+  ObjectName metricsName(Step step) throws JMException {
+    return new ObjectName("org.jesterj:type=Step,plan=" + ObjectName.quote(String.valueOf(getName())) +
+        ",step=" + ObjectName.quote(String.valueOf(step.getName())));
+  }
+
   @Transient
   @Override
   public synchronized boolean isActive() {
@@ -199,6 +284,22 @@ public class PlanImpl implements Plan {
     this.name = name;
   }
 
+  int getSharedPoolParallelism() {
+    return sharedPoolParallelism;
+  }
+
+  void setSharedPoolParallelism(int sharedPoolParallelism) {
+    this.sharedPoolParallelism = sharedPoolParallelism;
+  }
+
+  boolean isFusingSteps() {
+    return fusingSteps;
+  }
+
+  void setFusingSteps(boolean fusingSteps) {
+    this.fusingSteps = fusingSteps;
+  }
+
 
   public static class Builder extends NamedBuilder<Plan> {
 
@@ -275,6 +376,9 @@ public class PlanImpl implements Plan {
       List<StepImpl.Builder> scanners = findScanners();
       scanners.forEach(this::buildStep);
       PlanImpl obj = getObj();
+      if (obj.isFusingSteps()) {
+        fuseLinearSteps();
+      }
       this.obj = new PlanImpl();
       obj.setStepsMap(this.steps);
       for (Step step : steps.values()) {
@@ -308,6 +412,25 @@ public class PlanImpl implements Plan {
       steps.put(stepName, step);
     }
 
+    /**
+     * Fuse each step that has a single predecessor into that predecessor where it is safe to do so (see
+     * {@link StepImpl#canFuseInto(StepImpl)}), so chains of cheap processors run on one thread without a queue
+     * between each pair of steps.
+     */
+    private void fuseLinearSteps() {
+      for (Step step : steps.values()) {
+        List<String> preds = predecessors.get(step.getName());
+        if (preds.size() != 1) {
+          continue;
+        }
+        StepImpl predecessor = (StepImpl) steps.get(preds.get(0));
+        StepImpl candidate = (StepImpl) step;
+        if (candidate.canFuseInto(predecessor)) {
+          candidate.fuse();
+        }
+      }
+    }
+
     public Builder named(String name) {
       getObj().setName(name);
       return this;
@@ -321,6 +444,41 @@ public class PlanImpl implements Plan {
       getObj().setIdField(id);
       return this;
     }
+
+    /**
+     * Run the work of all steps in this plan as tasks on a single work stealing pool rather than giving every
+     * step thread(s) of its own. The total number of threads is then bounded by the pool regardless of how many
+     * steps the plan has, and idle threads steal work from whichever steps are busy. Each step still processes at
+     * most as many documents concurrently as it has been configured to have threads. Scanners keep their own
+     * thread for scheduling scans, but the scans themselves also run on the shared pool.
+     *
+     * @param parallelism the maximum number of threads actively running step tasks, values less than 1 mean
+     *                    use the number of available processors.
+     * @return this builder for further configuration.
+     */
+    public Builder usingSharedPool(int parallelism) {
+      if (parallelism < 1) {
+        parallelism = Runtime.getRuntime().availableProcessors();
+      }
+      getObj().setSharedPoolParallelism(parallelism);
+      return this;
+    }
+
+    /**
+     * Control whether linear chains of steps are fused at build time so that they run on one thread without
+     * queueing documents between them. A step is fused into its predecessor only if it is that predecessor's
+     * only next step, it has no other predecessors, neither step is configured with more than one thread and
+     * the step's processor is cheap (see {@link org.jesterj.ingest.model.DocumentProcessor#isCheap()}) and has no external side effects.
+     * Fused steps still report status under their own names. Enabled by default, processors that are not marked
+     * cheap always keep their own thread.
+     *
+     * @param fuse true to fuse eligible steps
+     * @return this builder for further configuration.
+     */
+    public Builder fusingLinearSteps(boolean fuse) {
+      getObj().setFusingSteps(fuse);
+      return this;
+    }
   }
 
 }
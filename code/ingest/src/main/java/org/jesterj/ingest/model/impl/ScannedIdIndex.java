@@ -0,0 +1,264 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+import com.datastax.driver.core.Statement;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.jesterj.ingest.model.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A compact in memory copy of the fault tolerance state of the documents a scanner has seen, loaded in one
+ * pass at the start of a scan so that each document found can be checked without a round trip to cassandra.
+ * Document ids are stored as 128 bit hashes and md5 hashes as two longs, so an entry costs about 17 bytes
+ * (34 with hashes) plus free slots, rather than the hundreds needed for a map of strings. A false match
+ * between two ids has a probability around 2^-128 per pair and may be ignored.
+ * <p>
+ * Also holds the hash updates for documents sent during the scan, so that they can be written back in groups.
+ */
+class ScannedIdIndex {
+  private static final HashFunction ID_HASH = Hashing.murmur3_128();
+  private static final Status[] STATUSES = Status.values();
+  private static final byte NO_STATUS = -1;
+  private static final float MAX_LOAD = 0.7f;
+  private static final byte NO_MD5 = 0;
+  private static final byte LOWER_MD5 = 1;
+  private static final byte UPPER_MD5 = 2;
+
+  private final boolean withHashes;
+  private final int writeBatchSize;
+  private final List<Statement> pendingWrites = new ArrayList<>();
+
+  // two longs per slot, both zero for an empty slot
+  private long[] keys;
+  private byte[] statuses;
+  // two longs per slot, only when hashing
+  private long[] md5s;
+  // whether there is an md5 and the case of its hex digits, so that it compares equal to the original string
+  private byte[] md5Forms;
+  private int mask;
+  private int size;
+
+  /**
+   * Create an index.
+   *
+   * @param withHashes     whether md5 hashes should be kept
+   * @param writeBatchSize the number of queued writes that should be written together
+   */
+  ScannedIdIndex(boolean withHashes, int writeBatchSize) {
+    this.withHashes = withHashes;
+    this.writeBatchSize = writeBatchSize;
+    allocate(1024);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity * 2];
+    statuses = new byte[capacity];
+    if (withHashes) {
+      md5s = new long[capacity * 2];
+      md5Forms = new byte[capacity];
+    }
+    mask = capacity - 1;
+    size = 0;
+  }
+
+  /**
+   * Record the state of a document, replacing any state already recorded.
+   *
+   * @param docId  the id of the document
+   * @param status the name of the document's status, may be null
+   * @param md5    the hex md5 hash of the document, may be null, ignored unless keeping hashes
+   */
+  synchronized void put(String docId, String status, String md5) {
+    if (size + 1 > (mask + 1) * MAX_LOAD) {
+      grow();
+    }
+    HashCode hash = ID_HASH.hashString(docId, StandardCharsets.UTF_8);
+    long hi = hash.asLong();
+    long lo = loBits(hash);
+    int slot = find(hi, lo);
+    if (keys[slot * 2] == 0 && keys[slot * 2 + 1] == 0) {
+      size++;
+    }
+    keys[slot * 2] = hi;
+    keys[slot * 2 + 1] = lo;
+    statuses[slot] = statusByte(status);
+    if (withHashes) {
+      md5Forms[slot] = md5Form(md5);
+      if (md5Forms[slot] != NO_MD5) {
+        md5s[slot * 2] = Long.parseUnsignedLong(md5.substring(0, 16), 16);
+        md5s[slot * 2 + 1] = Long.parseUnsignedLong(md5.substring(16), 16);
+      }
+    }
+  }
+
+  /**
+   * The state recorded for a document.
+   *
+   * @param docId the id of the document
+   * @return the status and hash recorded, or null if the document is not known
+   */
+  synchronized Known get(String docId) {
+    HashCode hash = ID_HASH.hashString(docId, StandardCharsets.UTF_8);
+    int slot = find(hash.asLong(), loBits(hash));
+    if (keys[slot * 2] == 0 && keys[slot * 2 + 1] == 0) {
+      return null;
+    }
+    String status = statuses[slot] == NO_STATUS ? null : STATUSES[statuses[slot]].name();
+    String md5 = null;
+    if (withHashes && md5Forms[slot] != NO_MD5) {
+      md5 = toHex(md5s[slot * 2]) + toHex(md5s[slot * 2 + 1]);
+      if (md5Forms[slot] == UPPER_MD5) {
+        md5 = md5.toUpperCase(Locale.ROOT);
+      }
+    }
+    return new Known(status, md5);
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Queue a write to be performed with others.
+   *
+   * @param write the statement to execute
+   * @return the writes to perform now if enough have been queued, otherwise null
+   */
+  synchronized List<Statement> queueWrite(Statement write) {
+    pendingWrites.add(write);
+    return pendingWrites.size() >= writeBatchSize ? drainWrites() : null;
+  }
+
+  /**
+   * Take all of the queued writes.
+   *
+   * @return the writes queued since the last drain
+   */
+  synchronized List<Statement> drainWrites() {
+    List<Statement> writes = new ArrayList<>(pendingWrites);
+    pendingWrites.clear();
+    return writes;
+  }
+
+  // linear probing, the slot holding the key or the empty slot where it belongs
+  private int find(long hi, long lo) {
+    int slot = (int) (hi ^ (hi >>> 32)) & mask;
+    while (true) {
+      long slotHi = keys[slot * 2];
+      long slotLo = keys[slot * 2 + 1];
+      if ((slotHi == hi && slotLo == lo) || (slotHi == 0 && slotLo == 0)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    byte[] oldStatuses = statuses;
+    long[] oldMd5s = md5s;
+    byte[] oldMd5Forms = md5Forms;
+    allocate((mask + 1) * 2);
+    for (int i = 0; i < oldStatuses.length; i++) {
+      long hi = oldKeys[i * 2];
+      long lo = oldKeys[i * 2 + 1];
+      if (hi == 0 && lo == 0) {
+        continue;
+      }
+      int slot = find(hi, lo);
+      keys[slot * 2] = hi;
+      keys[slot * 2 + 1] = lo;
+      statuses[slot] = oldStatuses[i];
+      if (withHashes) {
+        md5s[slot * 2] = oldMd5s[i * 2];
+        md5s[slot * 2 + 1] = oldMd5s[i * 2 + 1];
+        md5Forms[slot] = oldMd5Forms[i];
+      }
+      size++;
+    }
+  }
+
+  private static long loBits(HashCode hash) {
+    byte[] bytes = hash.asBytes();
+    long lo = 0;
+    for (int i = 15; i >= 8; i--) {
+      lo = (lo << 8) | (bytes[i] & 0xff);
+    }
+    // reserve zero for empty slots, at the cost of one bit of a 128 bit hash
+    return lo == 0 ? 1 : lo;
+  }
+
+  private static byte statusByte(String status) {
+    if (status == null) {
+      return NO_STATUS;
+    }
+    try {
+      return (byte) Status.valueOf(status).ordinal();
+    } catch (IllegalArgumentException e) {
+      // not a status we know, so no reason to believe the document was processed
+      return NO_STATUS;
+    }
+  }
+
+  // anything other than 32 hex digits of one case can't be stored as two longs, and is treated as no hash.
+  private static byte md5Form(String md5) {
+    if (md5 == null || md5.length() != 32) {
+      return NO_MD5;
+    }
+    boolean lower = false;
+    boolean upper = false;
+    for (int i = 0; i < md5.length(); i++) {
+      char c = md5.charAt(i);
+      if (c >= 'a' && c <= 'f') {
+        lower = true;
+      } else if (c >= 'A' && c <= 'F') {
+        upper = true;
+      } else if (c < '0' || c > '9') {
+        return NO_MD5;
+      }
+    }
+    if (lower && upper) {
+      return NO_MD5;
+    }
+    return upper ? UPPER_MD5 : LOWER_MD5;
+  }
+
+  private static String toHex(long bits) {
+    String hex = Long.toHexString(bits);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+
+  /**
+   * The state of a document found in the index.
+   */
+  static class Known {
+    final String status;
+    final String md5;
+
+    Known(String status, String md5) {
+      this.status = status;
+      this.md5 = md5;
+    }
+  }
+}
@@ -16,16 +16,26 @@
 
 package org.jesterj.ingest.model.impl;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import net.jini.space.JavaSpace;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jesterj.ingest.Main;
+import org.jesterj.ingest.logging.CassandraLog4JManager;
 import org.jesterj.ingest.model.ConfiguredBuildable;
 import org.jesterj.ingest.model.Document;
 import org.jesterj.ingest.model.Router;
@@ -33,7 +43,13 @@ import org.jesterj.ingest.model.Scanner;
 import org.jesterj.ingest.model.Status;
 import org.jesterj.ingest.model.Step;
 import org.jesterj.ingest.persistence.CassandraSupport;
+import org.jesterj.ingest.persistence.DocumentState;
+import org.jesterj.ingest.persistence.StatusStore;
+import org.jesterj.ingest.persistence.StatusStores;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -41,10 +57,11 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * A base implementation of a scanner that doesn't do anything. {@link #getScanOperation()} and
@@ -57,6 +74,20 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
   private boolean hashing;
   private long interval;
   public boolean remembering;
+  private boolean preloading;
+
+  // the state of previously scanned documents, loaded when a scan starts if preloading. Null when no scan is
+  // active, in which case documents are checked individually.
+  volatile ScannedIdIndex scannedIds;
+
+  // where document state is kept when not in cassandra, set on activation
+  StatusStore statusStore;
+
+  private boolean bloomFiltering;
+  private int bloomCapacity = DEFAULT_BLOOM_CAPACITY;
+
+  // the ids this scanner has sent, when bloom filtering. Null if not filtering or the filter could not be loaded.
+  volatile SeenIdFilter seenIds;
 
   // can be used to avoid starting a scan while one is still running. This is not required however
   // and can be ignored if desired.
@@ -66,20 +97,22 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
   private final ExecutorService exec =
       Executors.newCachedThreadPool();
 
+  private static final long MAX_CREDIT_WAIT_MS = 50;
+  private final LongAdder creditWaitNanos = new LongAdder();
+
   private long nanoInterval;
 
   private CassandraSupport cassandra = new CassandraSupport();
 
-  static final String RESET_PROCESSING_Q = "reset_inflight";
-  static final String RESET_ERROR_Q = "reset_inflight";
-  static final String RESET_BATCHED_Q = "reset_inflight";
+  static final String FIND_STRANDED_Q = "FIND_STRANDED_Q";
+  static final String FIND_STRANDED =
+      "SELECT docid FROM jj_logging.fti_by_status WHERE scanner = ? AND status = ?";
 
-  static final String FIND_PROCESSING =
-      "SELECT docid, scanner FROM jj_logging.fault_tolerant WHERE status = 'PROCESSING' and scanner = ? ALLOW FILTERING";
-  static final String FIND_ERROR =
-      "SELECT docid, scanner FROM jj_logging.fault_tolerant WHERE status = 'ERROR' and scanner = ? ALLOW FILTERING";
-  static final String FIND_BATCHED =
-      "SELECT docid, scanner FROM jj_logging.fault_tolerant WHERE status = 'BATCHED' and scanner = ? ALLOW FILTERING";
+  static final String UNINDEX_STATUS_U = "UNINDEX_STATUS_U";
+
+  private static final int RESET_FETCH_SIZE = 1000;
+  private static final int RESET_PREFETCH = 200;
+  private static final int MAX_RESETS_OUTSTANDING = 64;
 
   public static final String RESET_DOCS_U = "RESET_DOCS_U";
   static final String RESET_DOCS = "UPDATE jj_logging.fault_tolerant SET status = 'DIRTY'  " +
@@ -92,54 +125,166 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
   static String FTI_CHECK_Q = "FTI_CHECK_Q";
   static String FTI_CHECK_DOC = "SELECT status, md5hash from jj_logging.fault_tolerant where docid = ? and scanner = ? ALLOW FILTERING";
 
+  static final String FTI_SCANNER_Q = "FTI_SCANNER_Q";
+  static final String FTI_SCANNER_DOCS = "SELECT docid, status, md5hash FROM jj_logging.fault_tolerant WHERE scanner = ? ALLOW FILTERING";
+
+  private static final int PRELOAD_FETCH_SIZE = 5000;
+  private static final int HASH_WRITE_BATCH = 256;
+
+  private static final int DEFAULT_BLOOM_CAPACITY = 1_000_000;
+  private static final double BLOOM_FPP = 0.01;
+
   protected ScannerImpl() {
     getCassandra().addStatement(FTI_CHECK_Q, FTI_CHECK_DOC);
-    getCassandra().addStatement(RESET_PROCESSING_Q, FIND_PROCESSING);
-    getCassandra().addStatement(RESET_ERROR_Q, FIND_ERROR);
-    getCassandra().addStatement(RESET_BATCHED_Q, FIND_BATCHED);
+    getCassandra().addStatement(FIND_STRANDED_Q, FIND_STRANDED);
+    getCassandra().addStatement(UNINDEX_STATUS_U, CassandraLog4JManager.DELETE_FTI_STATUS);
     getCassandra().addStatement(RESET_DOCS_U, RESET_DOCS);
     getCassandra().addStatement(UPDATE_HASH_U, UPDATE_HASH);
+    getCassandra().addStatement(FTI_SCANNER_Q, FTI_SCANNER_DOCS);
   }
 
   @Override
   public void activate() {
     super.activate();
+    statusStore = StatusStores.get();
     if (isRemembering() || isHashing()) {
-      Session session = getCassandra().getSession();
-      List<DocKey> strandedDocs = new ArrayList<>();
-      PreparedStatement preparedQuery = getCassandra().getPreparedQuery(RESET_PROCESSING_Q);
-      BoundStatement statement = createBoundStatement(preparedQuery);
-      statement.bind(getName());
-      ResultSet procRs = session.execute(statement);
-      strandedDocs.addAll(procRs.all().stream()
-          .map((row) -> new DocKey(row.getString(0), row.getString(1))).collect(Collectors.toList()));
-      preparedQuery = getCassandra().getPreparedQuery(RESET_ERROR_Q);
-      statement = createBoundStatement(preparedQuery);
-      statement.bind(getName());
-      ResultSet errorRs = session.execute(statement);
-      strandedDocs.addAll(errorRs.all().stream()
-          .map((row) -> new DocKey(row.getString(0), row.getString(1))).collect(Collectors.toList()));
-      preparedQuery = getCassandra().getPreparedQuery(RESET_BATCHED_Q);
-      statement = createBoundStatement(preparedQuery);
-      statement.bind(getName());
-      ResultSet batchedRs = session.execute(statement);
-      strandedDocs.addAll(batchedRs.all().stream()
-          .map((row) -> new DocKey(row.getString(0), row.getString(1))).collect(Collectors.toList()));
-
-      preparedQuery = getCassandra().getPreparedQuery(RESET_DOCS_U);
-      statement = createBoundStatement(preparedQuery);
-      // todo: batch
-      for (DocKey docId : strandedDocs) {
-        statement.bind(docId.docid, docId.scanner);
-        session.execute(statement);
+      if (statusStore != null) {
+        int reset = statusStore.reset(getName(), CassandraLog4JManager.IN_FLIGHT_STATUSES);
+        log.info("{} reset {} stranded documents", getName(), reset);
+      } else {
+        resetStrandedDocs();
       }
+    }
+    if (bloomFiltering && isRemembering()) {
+      seenIds = loadSeenIds();
+    }
+  }
 
+  /**
+   * Load the filter of ids this scanner has sent, rebuilding it from the fault tolerance table if it was not
+   * saved when we last stopped.
+   *
+   * @return the filter, or null if it could neither be loaded nor rebuilt
+   */
+  private SeenIdFilter loadSeenIds() {
+    String home = Main.JJ_DIR != null ? Main.JJ_DIR : System.getProperty("user.home") + "/.jj";
+    Path file = Paths.get(home, "filters", getName().replaceAll("[^A-Za-z0-9_.-]", "_") + ".bloom");
+    try {
+      SeenIdFilter filter = SeenIdFilter.load(file);
+      if (filter != null) {
+        log.info("{} loaded a filter of {} previously sent ids", getName(), filter.size());
+        return filter;
+      }
+    } catch (IOException e) {
+      log.warn("Could not read the id filter for {} from {}, rebuilding it", getName(), file);
+      log.warn(e);
+    }
+    long start = System.nanoTime();
+    try {
+      SeenIdFilter filter = new SeenIdFilter(file, bloomCapacity, BLOOM_FPP);
+      if (statusStore != null) {
+        List<String> ids = new ArrayList<>();
+        statusStore.forEach(getName(), (state) -> ids.add(state.getDocId()));
+        for (String id : ids) {
+          filter.put(id);
+        }
+      } else {
+        BoundStatement statement = createBoundStatement(getCassandra().getPreparedQuery(FTI_SCANNER_Q));
+        statement.bind(getName());
+        statement.setFetchSize(PRELOAD_FETCH_SIZE);
+        for (Row row : getCassandra().getSession().execute(statement)) {
+          filter.put(row.getString(0));
+        }
+      }
+      filter.save();
+      log.info("{} rebuilt a filter of {} previously sent ids in {} ms", getName(), filter.size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return filter;
+    } catch (IOException | NoHostAvailableException e) {
+      log.error("Could not rebuild the id filter for {}, all ids will be looked up", getName());
+      log.error(e);
+      return null;
+    }
+  }
+
+  private void saveSeenIds() {
+    SeenIdFilter filter = seenIds;
+    if (filter != null) {
+      try {
+        filter.save();
+      } catch (IOException e) {
+        log.warn("Could not save the id filter for {}, it will be rebuilt on restart", getName());
+        log.warn(e);
+      }
     }
   }
 
+  /**
+   * Mark documents that were in flight when we last stopped as dirty so that they are processed again. The
+   * candidates are paged from the status index, and each is checked against the fault tolerant table before
+   * being reset, since the index may briefly lag the document's real status. The checks and updates are sent
+   * asynchronously with a limited number outstanding.
+   */
+  void resetStrandedDocs() {
+    long start = System.nanoTime();
+    Session session = getCassandra().getSession();
+    PreparedStatement check = getCassandra().getPreparedQuery(FTI_CHECK_Q);
+    PreparedStatement reset = getCassandra().getPreparedQuery(RESET_DOCS_U);
+    PreparedStatement unindex = getCassandra().getPreparedQuery(UNINDEX_STATUS_U);
+    Semaphore outstanding = new Semaphore(MAX_RESETS_OUTSTANDING);
+    AtomicInteger resetCount = new AtomicInteger();
+    for (String status : CassandraLog4JManager.IN_FLIGHT_STATUSES) {
+      BoundStatement find = createBoundStatement(getCassandra().getPreparedQuery(FIND_STRANDED_Q));
+      find.bind(getName(), status);
+      find.setFetchSize(RESET_FETCH_SIZE);
+      ResultSet stranded = session.execute(find);
+      for (Row row : stranded) {
+        if (stranded.getAvailableWithoutFetching() == RESET_PREFETCH && !stranded.isFullyFetched()) {
+          stranded.fetchMoreResults();
+        }
+        String docId = row.getString(0);
+        outstanding.acquireUninterruptibly();
+        ListenableFuture<ResultSet> done = Futures.transform(session.executeAsync(check.bind(docId, getName())),
+            (AsyncFunction<ResultSet, ResultSet>) current -> {
+              Row currentRow = current.one();
+              BatchStatement update = new BatchStatement(BatchStatement.Type.UNLOGGED);
+              if (currentRow != null && status.equals(currentRow.getString(0))) {
+                update.add(reset.bind(docId, getName()));
+                resetCount.incrementAndGet();
+              }
+              update.add(unindex.bind(getName(), status, docId));
+              return session.executeAsync(update);
+            });
+        Futures.addCallback(done, new FutureCallback<ResultSet>() {
+          @Override
+          public void onSuccess(ResultSet result) {
+            outstanding.release();
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            outstanding.release();
+            log.error("Could not reset stranded document {} for {}", docId, getName());
+            log.error(t);
+          }
+        }, MoreExecutors.directExecutor());
+      }
+    }
+    outstanding.acquireUninterruptibly(MAX_RESETS_OUTSTANDING);
+    log.info("{} reset {} stranded documents in {} ms", getName(), resetCount.get(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
 
   @Override
   public void deactivate() {
+    ScannedIdIndex index = scannedIds;
+    scannedIds = null;
+    if (index != null) {
+      writeHashes(index.drainWrites());
+    }
+    saveSeenIds();
+    seenIds = null;
     super.deactivate();
     // when we get to dynamically starting/stopping multiple plans across the cluster
     // this will probably need reference counting...
@@ -149,16 +294,6 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
     }
   }
 
-  private static class DocKey {
-    public String docid;
-    public String scanner;
-
-    public DocKey(String docid, String scanner) {
-      this.docid = docid;
-      this.scanner = scanner;
-    }
-  }
-
   public void run() {
     nanoInterval = interval * 1000000;
     Future<?> scanner = null;
@@ -186,10 +321,42 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
     }
   }
 
+  /**
+   * Scanners are driven by a single thread that schedules scan operations, regardless of configuration.
+   *
+   * @return always 1
+   */
+  @Override
+  protected int getWorkerCount() {
+    return 1;
+  }
+
+  /**
+   * Scanners always keep their own thread to decide when to scan, even if the plan uses a shared pool. The scan
+   * operations themselves are run on the shared pool when there is one.
+   *
+   * @return always false
+   */
+  @Override
+  protected boolean isPoolScheduled() {
+    return false;
+  }
+
+  /**
+   * Scanners are driven by their own thread, never by lightweight threads.
+   *
+   * @return always false
+   */
+  @Override
+  protected boolean isLightweightThreaded() {
+    return false;
+  }
+
   Future<?> safeSubmit() {
     Future<?> scanner = null;
     try {
-      scanner = exec.submit(getScanOperation());
+      ExecutorService pool = getSharedPool();
+      scanner = (pool != null ? pool : exec).submit(getScanOperation());
     } catch (Exception e) {
       log.error("Scan operation for {} failed.", getName());
       log.error(e);
@@ -197,6 +364,53 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
     return scanner;
   }
 
+  /**
+   * Scanners have no queue, so the credit available to a scanner is that of the steps it feeds.
+   *
+   * @return the smallest credit advertised by the following steps.
+   */
+  @Override
+  public int getRemainingCredit() {
+    int credit = Integer.MAX_VALUE;
+    for (Step step : getNextSteps().values()) {
+      credit = Math.min(credit, step.getRemainingCredit());
+    }
+    return credit;
+  }
+
+  /**
+   * Wait until the steps this scanner feeds have room for another document. Scanner implementations should call
+   * this before reading the content of a document into memory (or fetching the next row, etc.) so that a slow
+   * step anywhere in the plan pauses scanning instead of leaving documents held in memory while blocked on a
+   * full queue. Returns immediately if the scanner is deactivated.
+   *
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  protected void awaitCredit() throws InterruptedException {
+    if (getRemainingCredit() > 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    log.debug("{} pausing, no capacity downstream", getName());
+    long sleep = 1;
+    while (isActive() && getRemainingCredit() <= 0) {
+      Thread.sleep(sleep);
+      sleep = Math.min(sleep * 2, MAX_CREDIT_WAIT_MS);
+    }
+    long waited = System.nanoTime() - start;
+    creditWaitNanos.add(waited);
+    log.debug("{} resuming after {} ms", getName(), TimeUnit.NANOSECONDS.toMillis(waited));
+  }
+
+  /**
+   * The total time scanning has been paused waiting for capacity downstream.
+   *
+   * @return time spent waiting in nanoseconds
+   */
+  public long getCreditWaitNanos() {
+    return creditWaitNanos.sum();
+  }
+
   boolean longerAgoThanInterval(long last) {
     return last + nanoInterval < System.nanoTime();
   }
@@ -204,11 +418,39 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
   @Override
   public void sendToNext(Document doc) {
     if (isRemembering()) {
+      ScannedIdIndex index = scannedIds;
+      SeenIdFilter filter = seenIds;
+      if (filter != null) {
+        try {
+          filter.put(doc.getId());
+        } catch (IOException e) {
+          // a stale filter on disk would hide ids from later runs, so stop using it.
+          log.error("Could not invalidate the saved id filter for {}, all ids will be looked up", getName());
+          log.error(e);
+          seenIds = null;
+        }
+      }
+      StatusStore store = statusStore;
+      if (store != null) {
+        store.setHash(doc.getSourceScannerName(), doc.getId(), doc.getHash());
+        superSendToNext(doc);
+        return;
+      }
       try {
-        Session session = getCassandra().getSession();
         PreparedStatement preparedQuery = getCassandra().getPreparedQuery(UPDATE_HASH_U);
-        BoundStatement bind = preparedQuery.bind(doc.getHash(), doc.getId(), doc.getSourceScannerName());
-        session.execute(bind);
+        String hash = doc.getHash();
+        BoundStatement bind = preparedQuery.bind(hash, doc.getId(), doc.getSourceScannerName());
+        if (index == null) {
+          getCassandra().getSession().execute(bind);
+        } else {
+          // a document found again later in the same scan should be treated as it would be once this is logged
+          index.put(doc.getId(), Status.PROCESSING.name(), hash);
+          writeHashes(index.queueWrite(bind));
+          if (scannedIds != index) {
+            // the scan finished while we were queueing, don't leave our write behind
+            writeHashes(index.drainWrites());
+          }
+        }
       } catch (NoHostAvailableException e) {
         if (Main.isNotShuttingDown()) {
           log.error("Could not contact our internal Cassandra!!!" + e);
@@ -218,6 +460,37 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
     superSendToNext(doc);
   }
 
+  /**
+   * Write a group of hash updates. The rows are in different partitions, so rather than a batch they are sent
+   * concurrently and then awaited.
+   *
+   * @param writes the statements to execute, may be null
+   */
+  private void writeHashes(List<Statement> writes) {
+    if (writes == null || writes.isEmpty()) {
+      return;
+    }
+    try {
+      Session session = getCassandra().getSession();
+      List<ResultSetFuture> results = new ArrayList<>(writes.size());
+      for (Statement write : writes) {
+        results.add(session.executeAsync(write));
+      }
+      for (ResultSetFuture result : results) {
+        try {
+          result.getUninterruptibly();
+        } catch (DriverException e) {
+          log.error("Could not record hash for a document scanned by {}", getName());
+          log.error(e);
+        }
+      }
+    } catch (NoHostAvailableException e) {
+      if (Main.isNotShuttingDown()) {
+        log.error("Could not contact our internal Cassandra!!!" + e);
+      }
+    }
+  }
+
   // mockable method for unit tests
   void superSendToNext(Document doc) {
     super.sendToNext(doc);
@@ -240,7 +513,30 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
     id = doc.getId();
     String status = null;
     String md5 = null;
-    if (isRemembering()) {
+    ScannedIdIndex index = scannedIds;
+    SeenIdFilter filter = seenIds;
+    StatusStore store = statusStore;
+    if (isRemembering() && index != null) {
+      ScannedIdIndex.Known known = index.get(id);
+      if (known != null) {
+        status = known.status;
+        log.trace("Found '{}' with status {}", id, status);
+        if (isHashing()) {
+          md5 = known.md5;
+        }
+      }
+    } else if (isRemembering() && filter != null && !filter.mightContain(id)) {
+      log.trace("{} has never sent {}", getName(), id);
+    } else if (isRemembering() && store != null) {
+      DocumentState state = store.find(getName(), id);
+      if (state != null) {
+        status = state.getStatus();
+        log.trace("Found '{}' with status {}", id, status);
+        if (isHashing()) {
+          md5 = state.getMd5();
+        }
+      }
+    } else if (isRemembering()) {
       try {
         PreparedStatement preparedQuery = getCassandra().getPreparedQuery(FTI_CHECK_Q);
         BoundStatement bs = createBoundStatement(preparedQuery);
@@ -476,11 +772,47 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
   }
 
   public void scanStarted() {
-    activeScans.incrementAndGet();
+    // a status store other than cassandra is already local, so there is nothing to gain from preloading
+    if (activeScans.incrementAndGet() == 1 && preloading && isRemembering() && statusStore == null) {
+      scannedIds = loadScannedIds();
+    }
   }
 
   public void scanFinished() {
-    activeScans.decrementAndGet();
+    if (activeScans.decrementAndGet() == 0) {
+      ScannedIdIndex index = scannedIds;
+      scannedIds = null;
+      if (index != null) {
+        writeHashes(index.drainWrites());
+      }
+      saveSeenIds();
+    }
+  }
+
+  /**
+   * Read the status and hash of every document this scanner has previously seen in a single paged query.
+   *
+   * @return the index of previously seen documents, or null if it could not be loaded.
+   */
+  private ScannedIdIndex loadScannedIds() {
+    long start = System.nanoTime();
+    try {
+      ScannedIdIndex index = new ScannedIdIndex(isHashing(), HASH_WRITE_BATCH);
+      BoundStatement statement = createBoundStatement(getCassandra().getPreparedQuery(FTI_SCANNER_Q));
+      statement.bind(getName());
+      statement.setFetchSize(PRELOAD_FETCH_SIZE);
+      for (Row row : getCassandra().getSession().execute(statement)) {
+        index.put(row.getString(0), row.getString(1), row.getString(2));
+      }
+      log.info("{} loaded the state of {} previously scanned documents in {} ms", getName(), index.size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return index;
+    } catch (NoHostAvailableException e) {
+      if (Main.isNotShuttingDown()) {
+        log.error("Could not contact our internal Cassandra!!!" + e);
+      }
+      return null;
+    }
   }
 
   public boolean isRemembering() {
@@ -579,6 +911,48 @@ public abstract class ScannerImpl extends StepImpl implements Scanner {
       return this;
     }
 
+    /**
+     * Load the status and hash of all previously scanned documents when a scan starts, rather than querying for
+     * each document as it is found. This trades memory (roughly 50 bytes per document) and a single large read
+     * for a round trip per document, which is much faster for scans that find many documents. Hash updates for
+     * documents sent during the scan are also written in groups. Has no effect unless
+     * {@link #rememberScannedIds(boolean)} is turned on.
+     *
+     * @param preload whether or not to load the state of all previously scanned documents at the start of a scan
+     * @return This builder object for further configuration
+     */
+    public ScannerImpl.Builder preloadingScannedIds(boolean preload) {
+      getObj().preloading = preload;
+      return this;
+    }
+
+    /**
+     * Keep a Bloom filter of the ids this scanner has sent, so that documents that have certainly never been
+     * seen before don't need to be looked up. This helps most for sources where most documents found are new,
+     * such as a directory that only ever has files added. The filter is saved under the JesterJ home directory
+     * when scans finish and is rebuilt from the fault tolerance table if it is missing. Has no effect unless
+     * {@link #rememberScannedIds(boolean)} is turned on.
+     *
+     * @param filter whether or not to filter ids that have never been seen
+     * @return This builder object for further configuration
+     */
+    public ScannerImpl.Builder bloomFilteringScannedIds(boolean filter) {
+      getObj().bloomFiltering = filter;
+      return this;
+    }
+
+    /**
+     * The number of ids the Bloom filter is initially sized for, one million by default. The filter grows as
+     * needed, but lookups are a little faster if it never has to.
+     *
+     * @param capacity the expected number of documents
+     * @return This builder object for further configuration
+     */
+    public ScannerImpl.Builder expectingScannedIds(int capacity) {
+      getObj().bloomCapacity = capacity;
+      return this;
+    }
+
   }
 
 
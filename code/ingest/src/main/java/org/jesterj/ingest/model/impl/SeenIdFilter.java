@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter of the ids a scanner has sent, so that ids that have certainly never been seen can skip the
+ * lookup in cassandra. The filter grows by adding stages, each twice the size of the last with half the false
+ * positive rate, so the overall false positive rate stays below twice that of the first stage however many
+ * ids are added.
+ * <p>
+ * The filter is saved to a file, and the file is deleted as soon as an id is added after saving, so a file
+ * that exists always contains every id that was sent. If the process stops without saving, the file will be
+ * missing and the filter must be rebuilt from the fault tolerance table.
+ */
+class SeenIdFilter {
+  private static final int MAGIC = 0x4A4A4246;
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path file;
+  private final List<Stage> stages = new ArrayList<>();
+  private boolean saved;
+
+  /**
+   * Create an empty filter.
+   *
+   * @param file            where the filter is saved
+   * @param initialCapacity the number of ids the first stage is sized for
+   * @param fpp             the false positive rate of the first stage
+   */
+  SeenIdFilter(Path file, int initialCapacity, double fpp) {
+    this.file = file;
+    addStage(initialCapacity, fpp);
+  }
+
+  private SeenIdFilter(Path file) {
+    this.file = file;
+  }
+
+  private void addStage(int capacity, double fpp) {
+    stages.add(new Stage(BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, fpp),
+        capacity, fpp, 0));
+  }
+
+  /**
+   * Check for an id.
+   *
+   * @param id the document id
+   * @return false if the id has certainly not been added, true if it probably has
+   */
+  synchronized boolean mightContain(String id) {
+    for (Stage stage : stages) {
+      if (stage.filter.mightContain(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Add an id. If the filter has been saved, the saved copy is deleted first since it will no longer be complete.
+   *
+   * @param id the document id
+   * @throws IOException if the saved copy cannot be deleted
+   */
+  synchronized void put(String id) throws IOException {
+    if (mightContain(id)) {
+      return;
+    }
+    if (saved) {
+      Files.deleteIfExists(file);
+      saved = false;
+    }
+    Stage current = stages.get(stages.size() - 1);
+    if (current.count >= current.capacity) {
+      addStage((int) Math.min(current.capacity * 2L, Integer.MAX_VALUE), current.fpp / 2);
+      current = stages.get(stages.size() - 1);
+    }
+    current.filter.put(id);
+    current.count++;
+  }
+
+  synchronized long size() {
+    long size = 0;
+    for (Stage stage : stages) {
+      size += stage.count;
+    }
+    return size;
+  }
+
+  /**
+   * Write the filter to its file, unless it has not changed since it was last saved or loaded. The file is
+   * replaced atomically, so a reader never sees a partly written filter.
+   *
+   * @throws IOException if the filter cannot be written
+   */
+  synchronized void save() throws IOException {
+    if (saved) {
+      return;
+    }
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+      writeTo(out);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    saved = true;
+  }
+
+  private void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.writeInt(stages.size());
+    for (Stage stage : stages) {
+      data.writeInt(stage.capacity);
+      data.writeDouble(stage.fpp);
+      data.writeLong(stage.count);
+      stage.filter.writeTo(data);
+    }
+    data.flush();
+  }
+
+  /**
+   * Read a saved filter.
+   *
+   * @param file the file the filter was saved to
+   * @return the filter, or null if there is no saved filter
+   * @throws IOException if the file exists but cannot be read or is not a saved filter
+   */
+  static SeenIdFilter load(Path file) throws IOException {
+    SeenIdFilter filter = new SeenIdFilter(file);
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+      DataInputStream data = new DataInputStream(in);
+      if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+        throw new IOException(file + " is not a saved id filter");
+      }
+      int stages = data.readInt();
+      for (int i = 0; i < stages; i++) {
+        int capacity = data.readInt();
+        double fpp = data.readDouble();
+        long count = data.readLong();
+        BloomFilter<CharSequence> bloom = BloomFilter.readFrom(data, Funnels.stringFunnel(StandardCharsets.UTF_8));
+        filter.stages.add(new Stage(bloom, capacity, fpp, count));
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (filter.stages.isEmpty()) {
+      throw new IOException(file + " contains no filter stages");
+    }
+    filter.saved = true;
+    return filter;
+  }
+
+  private static class Stage {
+    final BloomFilter<CharSequence> filter;
+    final int capacity;
+    final double fpp;
+    long count;
+
+    Stage(BloomFilter<CharSequence> filter, int capacity, double fpp, long count) {
+      this.filter = filter;
+      this.capacity = capacity;
+      this.fpp = fpp;
+      this.count = count;
+    }
+  }
+}
@@ -27,8 +27,10 @@ import org.jesterj.ingest.config.Transient;
 import org.jesterj.ingest.logging.JesterJAppender;
 import org.jesterj.ingest.model.*;
 import org.jesterj.ingest.processors.DefaultWarningProcessor;
+import org.jesterj.ingest.queue.SingleConsumer;
 import org.jesterj.ingest.routers.RouteByStepName;
 import org.jesterj.ingest.utils.Cloner;
+import org.jesterj.ingest.utils.LightweightThreads;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -43,9 +45,18 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,7 +79,24 @@ public class StepImpl implements Step {
 
   private static final Logger log = LogManager.getLogger();
 
-  private LinkedBlockingQueue<Document> queue;
+  /**
+   * How long the worker blocks waiting for a document before re-checking whether it is still active.
+   */
+  private static final long DRAIN_TIMEOUT_MS = 100;
+
+  /**
+   * How long deactivation waits for worker threads to finish the documents they hold before interrupting them.
+   */
+  private static final long WORKER_STOP_MS = 1000;
+
+  /**
+   * How long deactivation waits for documents already handed to lightweight threads. These are typically waiting
+   * on the network, so they are given longer than workers.
+   */
+  private static final long LIGHTWEIGHT_STOP_MS = 5000;
+
+  private BlockingQueue<Document> queue;
+  private IntFunction<BlockingQueue<Document>> inboxFactory = LinkedBlockingQueue::new;
   private int batchSize; // no concurrency by default
   private LinkedHashMap<String, Step> nextSteps = new LinkedHashMap<>();
   private volatile boolean active;
@@ -77,7 +105,27 @@ public class StepImpl implements Step {
   private String stepName;
   private Router router = new RouteByStepName();
   private DocumentProcessor processor = new DefaultWarningProcessor();
-  private Thread worker;
+  private final List<Thread> workers = new ArrayList<>();
+  private int threads = 1;
+  private boolean orderedById;
+
+  // set by the plan when steps are to be run as tasks on a pool shared by all steps instead of on dedicated threads
+  private volatile ForkJoinPool sharedPool;
+  private final AtomicInteger scheduledDrains = new AtomicInteger();
+  private final Runnable drainTask = this::drainOnPool;
+
+  // maximum number of documents processed concurrently on lightweight threads, 0 if not in use
+  private int lightweightThreads;
+  private Semaphore lightweightPermits;
+  // only changed under the activeLock, read without it by the dispatcher
+  private volatile ExecutorService lightweightExecutor;
+
+  // true if documents are processed on the thread of the preceding step instead of being queued, see fuseInto()
+  private boolean fused;
+
+  // maximum number of documents handed to the processor in one call, 1 for document at a time processing
+  private int processorBatchSize = 1;
+  private final DocumentConsumer fusedConsumer = new DocumentConsumer();
   private Plan plan;
   private Cloner<Document> cloner = new Cloner<>();
 
@@ -85,6 +133,17 @@ public class StepImpl implements Step {
   private final Object sideEffectListLock = new Object();
   private Step[] possibleSideEffects;
 
+  // held while changing active status and the threads serving this step
+  private final ReentrantLock activeLock = new ReentrantLock();
+
+  // only used when orderedById is set. Held while taking documents off the queue so that documents are claimed
+  // in the order they were queued.
+  private final ReentrantLock takeLock = new ReentrantLock();
+  // ids currently being processed by a worker, mapped to later documents with the same id that must wait for it.
+  private final ConcurrentHashMap<String, Deque<Document>> inFlightIds = new ConcurrentHashMap<>();
+
+  private final StepMetrics metrics = new StepMetrics(this);
+
   StepImpl() {
   }
 
@@ -142,11 +201,23 @@ public class StepImpl implements Step {
   }
 
   public boolean offer(Document document, long timeout, TimeUnit unit) throws InterruptedException {
-    return queue.offer(document, timeout, unit);
+    markQueued(document);
+    boolean offered = queue.offer(document, timeout, unit);
+    if (offered) {
+      metrics.documentIn();
+      scheduleDrain();
+    }
+    return offered;
   }
 
   public boolean offer(Document document) {
-    return queue.offer(document);
+    markQueued(document);
+    boolean offered = queue.offer(document);
+    if (offered) {
+      metrics.documentIn();
+      scheduleDrain();
+    }
+    return offered;
   }
 
   public Document poll() {
@@ -162,7 +233,10 @@ public class StepImpl implements Step {
   }
 
   public void put(Document document) throws InterruptedException {
+    markQueued(document);
     queue.put(document);
+    metrics.documentIn();
+    scheduleDrain();
   }
 
   public Document peek() {
@@ -186,7 +260,11 @@ public class StepImpl implements Step {
   }
 
   public boolean add(Document document) {
-    return queue.add(document);
+    markQueued(document);
+    boolean added = queue.add(document);
+    metrics.documentIn();
+    scheduleDrain();
+    return added;
   }
 
   public void forEach(Consumer<? super Document> action) {
@@ -269,22 +347,71 @@ public class StepImpl implements Step {
   @Override
   public void activate() {
     log.info("Starting {} ", getName());
-    if (worker == null || !worker.isAlive()) {
-      log.info("Starting new thread for {} ", getName());
-      worker = new Thread(this);
-      worker.setName("jj-worker-" + this.stepName);
-      worker.setDaemon(true);
-      worker.start();
+    activeLock.lock();
+    try {
+      // set active first so that a newly started worker never observes an inactive step
+      setActive(true);
+      if (fused) {
+        // documents arrive via processFused(), we never need our own threads
+        return;
+      }
+      if (isPoolScheduled()) {
+        // pick up anything that arrived while we were inactive
+        scheduleDrain();
+        return;
+      }
+      workers.removeIf(thread -> !thread.isAlive());
+      if (isLightweightThreaded()) {
+        if (lightweightExecutor == null) {
+          lightweightExecutor = new LightweightThreads().newExecutor("jj-lightweight-" + this.stepName + "-");
+        }
+        if (workers.isEmpty()) {
+          log.info("Starting dispatch thread for {} ", getName());
+          Thread dispatcher = new Thread(this::dispatch);
+          dispatcher.setName("jj-dispatch-" + this.stepName);
+          dispatcher.setDaemon(true);
+          dispatcher.start();
+          workers.add(dispatcher);
+        }
+        return;
+      }
+      int count = getWorkerCount();
+      while (workers.size() < count) {
+        log.info("Starting new thread for {} ", getName());
+        Thread worker = new Thread(this);
+        worker.setName("jj-worker-" + this.stepName + (count > 1 ? "-" + workers.size() : ""));
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+      }
+    } finally {
+      activeLock.unlock();
     }
-    this.active = true;
   }
 
+  /**
+   * Stop the threads serving this step. Workers and the lightweight dispatcher stop taking documents as soon as
+   * they notice the step is inactive, and are interrupted if they have not finished the documents they hold within
+   * a second. Documents already handed to lightweight threads are then given several seconds of their own to
+   * finish. The processor is closed last.
+   */
   @Override
   public void deactivate() {
-    this.active = false;
-    if (worker != null) {
+    List<Thread> stopping;
+    ExecutorService executor;
+    activeLock.lock();
+    try {
+      setActive(false);
+      stopping = new ArrayList<>(workers);
+      executor = lightweightExecutor;
+      lightweightExecutor = null;
+    } finally {
+      activeLock.unlock();
+    }
+    long deadline = System.currentTimeMillis() + WORKER_STOP_MS;
+    for (Thread worker : stopping) {
       try {
-        worker.join(1000);
+        worker.join(Math.max(1, deadline - System.currentTimeMillis()));
         if (worker.isAlive()) {
           log.warn("{} was slow shutting down, interrupting..", getName());
           worker.interrupt();
@@ -293,15 +420,308 @@ public class StepImpl implements Step {
         // ignore
       }
     }
+    if (executor != null) {
+      // the dispatcher has stopped, permits are returned as each document already handed over completes
+      try {
+        if (lightweightPermits.tryAcquire(lightweightThreads, LIGHTWEIGHT_STOP_MS, TimeUnit.MILLISECONDS)) {
+          lightweightPermits.release(lightweightThreads);
+        } else {
+          log.warn("{} was slow shutting down, interrupting lightweight threads..", getName());
+        }
+      } catch (InterruptedException e) {
+        // ignore
+      }
+      executor.shutdownNow();
+    }
     processor.close();
   }
 
+  /**
+   * The number of threads that should consume documents from this step's queue.
+   *
+   * @return the number of worker threads to start on activation.
+   */
+  protected int getWorkerCount() {
+    return threads;
+  }
+
+  /**
+   * Only to be used by PlanImpl. Supply a pool on which this step's work should be scheduled as tasks rather
+   * than starting threads of its own. Must be set before activation.
+   *
+   * @param pool the pool shared by all the steps in the plan, or null to use dedicated threads.
+   */
+  void setSharedPool(ForkJoinPool pool) {
+    this.sharedPool = pool;
+  }
+
+  /**
+   * Only to be used by PlanImpl. Stop scheduling new work without closing the processor, so that work already
+   * on the shared pool can finish before the step is deactivated.
+   */
+  void stopScheduling() {
+    setActive(false);
+  }
+
+  ForkJoinPool getSharedPool() {
+    return sharedPool;
+  }
+
+  /**
+   * Determine if this step's queue is drained by tasks on a shared pool rather than by dedicated worker threads.
+   *
+   * @return true if work is scheduled on a shared pool
+   */
+  protected boolean isPoolScheduled() {
+    return sharedPool != null && !isLightweightThreaded();
+  }
+
+  /**
+   * Determine if this step may be fused into the given predecessor, i.e. process documents directly on the
+   * predecessor's thread rather than receiving them through its queue. This is only done where it can't change
+   * the result: the predecessor must send everything to this step and nowhere else, neither step may be
+   * concurrent or distributed, and this step's processor must be cheap and have no external side effects. Only
+   * cheap processors are fused so that expensive ones keep a thread of their own to pipeline their work.
+   *
+   * @param predecessor the only step that sends documents to this step
+   * @return true if fusion is safe
+   */
+  boolean canFuseInto(StepImpl predecessor) {
+    return !(predecessor instanceof ScannerImpl) &&
+        predecessor.getNextSteps().size() == 1 &&
+        predecessor.getNextSteps().values().iterator().next() == this &&
+        predecessor.getWorkerCount() == 1 && !predecessor.isLightweightThreaded() &&
+        getWorkerCount() == 1 && !isLightweightThreaded() && processorBatchSize == 1 &&
+        predecessor.outputSpace == null && outputSpace == null &&
+        processor != null && processor.isCheap() && !processor.hasExternalSideEffects();
+  }
+
+  /**
+   * Only to be used by PlanImpl. Mark this step as fused with its predecessor, documents will be processed by
+   * the predecessor's thread and this step will not start threads of its own. Status is still reported with
+   * this step's name, so the plan reads the same in the logs.
+   */
+  void fuse() {
+    this.fused = true;
+  }
+
+  boolean isFused() {
+    return fused;
+  }
+
+  /**
+   * Process a document handed directly to us by the step into which we were fused.
+   *
+   * @param document the document to process
+   */
+  void processFused(Document document) {
+    metrics.documentIn();
+    fusedConsumer.accept(document);
+  }
+
+  /**
+   * Determine if documents in this step are each processed on their own lightweight thread, up to the
+   * configured ceiling, rather than by a fixed number of workers.
+   *
+   * @return true if a dispatcher hands each document to a lightweight thread
+   */
+  protected boolean isLightweightThreaded() {
+    return lightweightThreads > 0;
+  }
+
+  /**
+   * Take documents one at a time and hand each to a new lightweight thread, waiting whenever the maximum
+   * number of documents are already being processed.
+   */
+  private void dispatch() {
+    DocumentConsumer consumer = new DocumentConsumer();
+    boolean ordered = orderedById && lightweightThreads > 1;
+    while (true) {
+      try {
+        if (!active && retire()) {
+          return;
+        }
+        if (!lightweightPermits.tryAcquire(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          continue;
+        }
+        if (!active) {
+          lightweightPermits.release();
+          continue;
+        }
+        Document document = queue.poll(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (document == null || (ordered && !claim(document))) {
+          // nothing to do, or it was handed to the thread already processing the same id
+          lightweightPermits.release();
+          continue;
+        }
+        recordHandoff(document, System.nanoTime());
+        try {
+          lightweightExecutor.execute(() -> {
+            try {
+              if (ordered) {
+                processInOrder(document, consumer);
+              } else {
+                consumer.accept(document);
+              }
+            } finally {
+              lightweightPermits.release();
+            }
+          });
+        } catch (RuntimeException e) {
+          // executor shut down under us, put it back for next time we are activated.
+          lightweightPermits.release();
+          if (ordered) {
+            inFlightIds.remove(document.getId());
+          }
+          if (!queue.offer(document)) {
+            // a blocked sender took the room, and blocking here could wait forever on a deactivated step
+            reportDocStatus(Status.DIRTY, document, "{} could not be requeued by {} while deactivating",
+                document.getId(), getName());
+          }
+        }
+      } catch (InterruptedException e) {
+        // ignore, deactivate() interrupts us if we are slow to notice we are no longer active
+      } catch (Throwable t) {
+        log.error("Unexpected exception dispatching " + getName(), t);
+      }
+    }
+  }
+
+  /**
+   * Submit a task to drain the queue, unless as many drain tasks as this step has threads are already scheduled.
+   * Every drain task checks the queue again after it finishes, so work that arrives while the maximum number of
+   * tasks is scheduled is never stranded.
+   */
+  private void scheduleDrain() {
+    ForkJoinPool pool = this.sharedPool;
+    if (pool == null || !isPoolScheduled() || !active) {
+      return;
+    }
+    int limit = getWorkerCount();
+    int scheduled;
+    do {
+      scheduled = scheduledDrains.get();
+      if (scheduled >= limit) {
+        return;
+      }
+    } while (!scheduledDrains.compareAndSet(scheduled, scheduled + 1));
+    pool.execute(drainTask);
+  }
+
+  private void drainOnPool() {
+    try {
+      if (!active) {
+        return;
+      }
+      ArrayList<Document> temp = new ArrayList<>();
+      boolean ordered = orderedById && getWorkerCount() > 1;
+      try {
+        if (ordered) {
+          takeInOrder(temp, false);
+        } else {
+          take(temp, false);
+        }
+      } catch (InterruptedException e) {
+        // not possible without waiting, but if it were, try again later.
+        return;
+      }
+      log.trace("{} took {} from queue", getName(), temp.size());
+      DocumentConsumer consumer = new DocumentConsumer();
+      if (ordered) {
+        temp.forEach(document -> processInOrder(document, consumer));
+      } else {
+        process(temp, consumer);
+      }
+    } catch (Throwable t) {
+      log.error("Unexpected exception draining " + getName(), t);
+    } finally {
+      scheduledDrains.decrementAndGet();
+      if (!queue.isEmpty()) {
+        scheduleDrain();
+      }
+    }
+  }
+
   @Transient
   @Override
   public boolean isActive() {
     return this.active;
   }
 
+  private void setActive(boolean active) {
+    activeLock.lock();
+    try {
+      this.active = active;
+    } finally {
+      activeLock.unlock();
+    }
+  }
+
+  /**
+   * Called by a worker or dispatcher thread that has found this step inactive. The thread leaves the step's
+   * threads unless the step has been activated again meanwhile. Holds the activation lock so that
+   * {@link #activate()} either finds the thread gone and starts another, or the thread sees the step active.
+   *
+   * @return true if the calling thread should exit
+   */
+  private boolean retire() {
+    activeLock.lock();
+    try {
+      if (this.active) {
+        return false;
+      }
+      workers.remove(Thread.currentThread());
+      return true;
+    } finally {
+      activeLock.unlock();
+    }
+  }
+
+  /**
+   * The number of documents that have been handed to this step's worker since the step was built.
+   *
+   * @return the count of documents taken off the queue
+   */
+  public long getHandoffCount() {
+    return metrics.getQueuedCount();
+  }
+
+  /**
+   * The mean time in nanoseconds between a document being placed in this step's queue and the worker for this
+   * step picking it up. This is the per-hop cost of passing a document between steps. Documents are timed from
+   * the moment they are offered, so time a sender spends blocked waiting for room in a full queue is included.
+   *
+   * @return the mean handoff latency or zero if no documents have been received.
+   */
+  public long getMeanHandoffNanos() {
+    return metrics.getQueuedNanosMean();
+  }
+
+  /**
+   * Runtime statistics for this step.
+   *
+   * @return the metrics for this step
+   */
+  public StepMetrics getMetrics() {
+    return metrics;
+  }
+
+  // before enqueueing, since once queued the worker may take the document at any moment
+  private void markQueued(Document document) {
+    if (document instanceof DocumentImpl) {
+      ((DocumentImpl) document).setQueuedNanos(System.nanoTime());
+    }
+  }
+
+  private void recordHandoff(Document document, long now) {
+    if (document instanceof DocumentImpl) {
+      long queued = ((DocumentImpl) document).getQueuedNanos();
+      if (queued != 0) {
+        metrics.queued(now - queued);
+      }
+    }
+  }
+
   @Override
   public void sendToNext(Document doc) {
     pushToNextIfOk(doc);
@@ -344,6 +764,19 @@ public class StepImpl implements Step {
     return nextSteps;
   }
 
+  @Override
+  public int getRemainingCredit() {
+    // a fused step has no queue of its own, documents go straight through to the following steps
+    int credit = fused ? Integer.MAX_VALUE : remainingCapacity();
+    for (Step step : nextSteps.values()) {
+      if (credit <= 0) {
+        break;
+      }
+      credit = Math.min(credit, step.getRemainingCredit());
+    }
+    return credit;
+  }
+
   private void pushToNextIfOk(Document document) {
     log.trace("starting push to next if ok {} for {}", getName(), document.getId());
     if (document.getStatus() == Status.PROCESSING) {
@@ -362,6 +795,11 @@ public class StepImpl implements Step {
         for (int i = 0; i < next.length; i++) {
           // clone before attempting to push just in case mutable state in the delegate mutates to cause exception
           // part way through. This would indicate some form of bad design, but let's be safe anyway.
+          if (document instanceof DocumentImpl) {
+            // share raw data and fields until a branch modifies them, rather than serializing a full copy per branch
+            clones.add(i == 0 ? document : ((DocumentImpl) document).copyOnWrite());
+            continue;
+          }
           try {
             clones.add(getCloner().cloneObj(document));
           } catch (IOException | ClassNotFoundException e) {
@@ -381,12 +819,29 @@ public class StepImpl implements Step {
   }
 
   private void pushToStep(Document document, Step step) {
+    if (step instanceof StepImpl && ((StepImpl) step).isFused()) {
+      // no queue, no thread handoff
+      metrics.documentOut();
+      ((StepImpl) step).processFused(document);
+      return;
+    }
     if (step != null) {
       if (this.outputSpace == null) {
         // local processing is our only option, do blocking put.
         try {
           log.trace("starting put ( {} into {} )", getName(), step.getName());
-          step.put(document);
+          if (!step.offer(document)) {
+            long start = System.nanoTime();
+            if (ForkJoinTask.inForkJoinPool()) {
+              // let the pool compensate for us if the next step is full, otherwise a pool full of tasks blocked on
+              // full queues could starve the tasks that would empty them.
+              ForkJoinPool.managedBlock(new PutBlocker(step, document));
+            } else {
+              step.put(document);
+            }
+            metrics.blockedOnPut(System.nanoTime() - start);
+          }
+          metrics.documentOut();
           log.trace("completed put ( {} into {} )", getName(), step.getName());
         } catch (InterruptedException e) {
           String message = "Exception while offering to " + step.getName();
@@ -418,6 +873,11 @@ public class StepImpl implements Step {
     try {
       ThreadContext.put(JesterJAppender.JJ_INGEST_DOCID, document.getId());
       ThreadContext.put(JesterJAppender.JJ_INGEST_SOURCE_SCANNER, document.getSourceScannerName());
+      if (status == Status.ERROR) {
+        metrics.error();
+      } else if (status == Status.DROPPED) {
+        metrics.drop();
+      }
       document.setStatus(status);
       log.info(status.getMarker(), message, messageParams);
     } catch (AppenderLoggingException | NoHostAvailableException e) {
@@ -432,36 +892,34 @@ public class StepImpl implements Step {
   @Override
   public void run() {
     try {
-      //noinspection InfiniteLoopStatement
+      ArrayList<Document> temp = new ArrayList<>();
+      DocumentConsumer consumer = new DocumentConsumer();
+      // a single thread always processes documents in order.
+      boolean ordered = orderedById && getWorkerCount() > 1;
       while (true) {
-        while (!this.active) {
-          log.trace("inactive: {}", getName());
-          try {
-            Thread.sleep(50);
-          } catch (InterruptedException e) {
-            // ignore
-          }
+        if (!active && retire()) {
+          return;
         }
-        log.trace("active: {}", getName());
-        ArrayList<Document> temp = null;
-        if (peek() != null) {
-          temp = new ArrayList<>();
-          for (int i = 0; i < queue.size(); i++) {
-            temp.add(queue.take());
+        try {
+          if (ordered) {
+            takeInOrder(temp, true);
+          } else {
+            take(temp, true);
           }
+        } catch (InterruptedException e) {
+          // ignore, deactivate() interrupts us if we are slow to notice we are no longer active
+          continue;
         }
-        if (temp != null) {
-          log.trace("{} took {} from queue", getName(), temp.size());
-          temp.forEach(new DocumentConsumer());
+        if (temp.isEmpty()) {
           continue;
         }
-
-        try {
-          // if we don't have work make sure we let others do their work.
-          Thread.sleep(5);
-        } catch (InterruptedException e) {
-          // ignore
+        log.trace("{} took {} from queue", getName(), temp.size());
+        if (ordered) {
+          temp.forEach(document -> processInOrder(document, consumer));
+        } else {
+          process(temp, consumer);
         }
+        temp.clear();
       }
     } catch (Throwable t) {
       t.printStackTrace();
@@ -473,6 +931,111 @@ public class StepImpl implements Step {
     }
   }
 
+  /**
+   * Take available documents from the queue. If requested, block until work arrives, but wake up periodically to
+   * notice deactivation. When more than one thread is working this queue each thread takes only a share of the
+   * available documents so that work is spread out.
+   *
+   * @param temp the list to which documents should be added.
+   * @param wait whether to wait for documents if none are available
+   * @throws InterruptedException if interrupted while waiting for documents
+   */
+  private void take(List<Document> temp, boolean wait) throws InterruptedException {
+    Document first = wait ? queue.poll(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS) : queue.poll();
+    if (first == null) {
+      return;
+    }
+    temp.add(first);
+    int count = getWorkerCount();
+    if (count > 1) {
+      queue.drainTo(temp, Math.max(0, queue.size() / count));
+    } else {
+      queue.drainTo(temp);
+    }
+    long now = System.nanoTime();
+    for (Document document : temp) {
+      recordHandoff(document, now);
+    }
+  }
+
+  /**
+   * Take documents such that no two workers ever process documents with the same id at the same time. Documents
+   * whose id is already being processed by another worker are handed to that worker, which will process them
+   * in the order they were queued once it finishes with the earlier document.
+   *
+   * @param temp the list to which documents that this worker now owns should be added.
+   * @param wait whether to wait for documents if none are available
+   * @throws InterruptedException if interrupted while waiting for documents
+   */
+  private void takeInOrder(List<Document> temp, boolean wait) throws InterruptedException {
+    takeLock.lockInterruptibly();
+    try {
+      take(temp, wait);
+      temp.removeIf(document -> !claim(document));
+    } finally {
+      takeLock.unlock();
+    }
+  }
+
+  private boolean claim(Document document) {
+    boolean[] claimed = new boolean[1];
+    inFlightIds.compute(document.getId(), (id, waiting) -> {
+      if (waiting == null) {
+        claimed[0] = true;
+        return new ArrayDeque<>();
+      }
+      waiting.add(document);
+      return waiting;
+    });
+    return claimed[0];
+  }
+
+  /**
+   * Hand the documents to the processor, in batches if this step is configured for batches.
+   *
+   * @param documents the documents taken from the queue
+   * @param consumer  the consumer for document at a time processing
+   */
+  private void process(List<Document> documents, Consumer<Document> consumer) {
+    if (processorBatchSize < 2 || documents.size() < 2) {
+      documents.forEach(consumer);
+      return;
+    }
+    for (int from = 0; from < documents.size(); from += processorBatchSize) {
+      List<Document> batch = documents.subList(from, Math.min(documents.size(), from + processorBatchSize));
+      try {
+        log.trace("sending batch of {} to {} in {}", batch.size(), processor.getName(), getName());
+        long start = System.nanoTime();
+        Document[] results = processor.processBatch(Collections.unmodifiableList(batch));
+        metrics.serviced(System.nanoTime() - start, batch.size());
+        for (Document result : results) {
+          pushToNextIfOk(result);
+        }
+      } catch (Exception e) {
+        for (Document document : batch) {
+          reportException(document, e, e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void processInOrder(Document document, Consumer<Document> consumer) {
+    String id = document.getId(); // processors could change the id
+    Document next = document;
+    while (next != null) {
+      consumer.accept(next);
+      Document[] waiting = new Document[1];
+      inFlightIds.compute(id, (key, queued) -> {
+        if (queued == null || queued.isEmpty()) {
+          return null;
+        }
+        waiting[0] = queued.poll();
+        return queued;
+      });
+      next = waiting[0];
+    }
+  }
+
   @Override
   public String getName() {
     return stepName;
@@ -508,6 +1071,31 @@ public class StepImpl implements Step {
     return cloner;
   }
 
+  private static class PutBlocker implements ForkJoinPool.ManagedBlocker {
+    private final Step step;
+    private final Document document;
+    private boolean done;
+
+    PutBlocker(Step step, Document document) {
+      this.step = step;
+      this.document = document;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      if (!done) {
+        step.put(document);
+        done = true;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return done || (done = step.offer(document));
+    }
+  }
+
   private class DocumentConsumer implements Consumer<Document> {
 
     @Override
@@ -516,7 +1104,9 @@ public class StepImpl implements Step {
         log.trace("accepting {}, sending to {} in {}", document.getId(),
             (StepImpl.this.processor == null) ? "null" : StepImpl.this.processor.getName(),
             StepImpl.this.getName());
+        long start = System.nanoTime();
         Document[] documents = StepImpl.this.processor.processDocument(document);
+        metrics.serviced(System.nanoTime() - start, 1);
         log.trace("finished {}, was sent to {} in {}", document.getId(),
             (StepImpl.this.processor == null) ? "null" : StepImpl.this.processor.getName(),
             StepImpl.this.getName());
@@ -550,7 +1140,21 @@ public class StepImpl implements Step {
 
     public Builder batchSize(int size) {
       getObj().batchSize = size;
-      getObj().queue = new LinkedBlockingQueue<>(size);
+      getObj().queue = getObj().inboxFactory.apply(size);
+      return this;
+    }
+
+    /**
+     * Supply the queue implementation used as this step's inbox. The factory is passed the batch size as the
+     * capacity. Defaults to {@link LinkedBlockingQueue}. Queues that only support a single consumer (such as
+     * {@link org.jesterj.ingest.queue.MpscRingBufferQueue}) can't be used with more than one thread unless
+     * documents are also {@link #orderedById(boolean) ordered by id}, which serializes taking from the queue.
+     *
+     * @param inboxFactory creates the queue given its capacity
+     * @return this builder for further configuration
+     */
+    public Builder withInbox(IntFunction<BlockingQueue<Document>> inboxFactory) {
+      getObj().inboxFactory = inboxFactory;
       return this;
     }
 
@@ -570,6 +1174,71 @@ public class StepImpl implements Step {
       return this;
     }
 
+    /**
+     * Set the number of threads that will concurrently take documents from this step and hand them to the
+     * processor. Processors used with more than one thread must be thread safe. Defaults to 1.
+     *
+     * @param threads the number of worker threads, must be at least 1
+     * @return this builder for further configuration
+     */
+    public Builder withThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("A step requires at least one thread, got " + threads);
+      }
+      getObj().threads = threads;
+      return this;
+    }
+
+    /**
+     * When more than one thread is in use, ensure that documents with the same id are processed one at a time in
+     * the order in which they were received, so that a delete can never overtake the update that preceded it.
+     * Documents with different ids are still processed concurrently. Has no effect with a single thread, which
+     * always preserves order.
+     *
+     * @param ordered true if documents with the same id must be processed in order
+     * @return this builder for further configuration
+     */
+    public Builder orderedById(boolean ordered) {
+      getObj().orderedById = ordered;
+      return this;
+    }
+
+    /**
+     * Take up to the given number of documents from the queue at a time and hand them to the processor together
+     * via {@link DocumentProcessor#processBatch(List)}. Fewer documents are handed over if fewer are waiting, a
+     * step never waits for a batch to fill. Batches are not used when each document is processed on its own
+     * lightweight thread, or when documents are ordered by id across several threads. Defaults to 1, which
+     * processes each document with {@link DocumentProcessor#processDocument(Document)}.
+     *
+     * @param maxDocuments the largest number of documents to process in one call, must be at least 1
+     * @return this builder for further configuration
+     */
+    public Builder processingBatchesOf(int maxDocuments) {
+      if (maxDocuments < 1) {
+        throw new IllegalArgumentException("Batches must contain at least one document, got " + maxDocuments);
+      }
+      getObj().processorBatchSize = maxDocuments;
+      return this;
+    }
+
+    /**
+     * Process each document on its own lightweight thread, for steps whose processors spend most of their time
+     * waiting on I/O such as fetching URLs or sending to remote systems. Virtual threads are used if the JVM
+     * supports them, otherwise platform threads are created as needed. Overrides {@link #withThreads(int)}.
+     * Processors used this way must be thread safe.
+     *
+     * @param maxConcurrent the maximum number of documents processed at the same time, must be at least 1
+     * @return this builder for further configuration
+     */
+    public Builder withLightweightThreads(int maxConcurrent) {
+      if (maxConcurrent < 1) {
+        throw new IllegalArgumentException("Concurrency ceiling must be at least 1, got " + maxConcurrent);
+      }
+      getObj().lightweightThreads = maxConcurrent;
+      getObj().lightweightPermits = new Semaphore(maxConcurrent);
+      return this;
+    }
+
     public Builder routingBy(ConfiguredBuildable<? extends Router> router) {
       StepImpl currObj = getObj(); // make sure that this cant' change after build() called.
       getObj().addDeferred(() -> currObj.router = router.build());
@@ -600,7 +1269,12 @@ public class StepImpl implements Step {
       StepImpl object = getObj(); // if subclassed we want subclass not our obj. This is intentional
       object.executeDeferred();
       int batchSize = object.batchSize;
-      object.queue = new LinkedBlockingQueue<>(batchSize > 0 ? batchSize : 50);
+      object.queue = object.inboxFactory.apply(batchSize > 0 ? batchSize : 50);
+      if (object.queue instanceof SingleConsumer && !object.isLightweightThreaded() &&
+          object.getWorkerCount() > 1 && !object.orderedById) {
+        throw new IllegalStateException("Step " + object.getName() + " has " + object.getWorkerCount() +
+            " threads taking from a single consumer inbox without ordering by id");
+      }
       obj = new StepImpl(); // subclasses such as scanners will mask this with thier own obj field which is ok.
       return object;
     }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the statistics exposed by {@link StepMetricsMBean} for a step. Updates are cheap and thread safe so
+ * they can be made on every document by every thread working the step.
+ */
+public class StepMetrics implements StepMetricsMBean {
+
+  private final StepImpl step;
+
+  private final LongAdder documentsIn = new LongAdder();
+  private final LongAdder documentsOut = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder drops = new LongAdder();
+  private final LongAdder blockedOnPutNanos = new LongAdder();
+  private final LongAdder queuedCount = new LongAdder();
+  private final LongAdder queuedNanos = new LongAdder();
+  private final LongAdder servicedCount = new LongAdder();
+  private final LongAdder serviceNanos = new LongAdder();
+  // default reservoir is exponentially decaying, favoring the last 5 minutes
+  private final Histogram queuedTime = new Histogram(new ExponentiallyDecayingReservoir());
+  private final Histogram serviceTime = new Histogram(new ExponentiallyDecayingReservoir());
+
+  StepMetrics(StepImpl step) {
+    this.step = step;
+  }
+
+  void documentIn() {
+    documentsIn.increment();
+  }
+
+  void documentOut() {
+    documentsOut.increment();
+  }
+
+  void error() {
+    errors.increment();
+  }
+
+  void drop() {
+    drops.increment();
+  }
+
+  void blockedOnPut(long nanos) {
+    blockedOnPutNanos.add(nanos);
+  }
+
+  void queued(long nanos) {
+    queuedCount.increment();
+    queuedNanos.add(nanos);
+    queuedTime.update(nanos);
+  }
+
+  /**
+   * Record the time taken by the processor.
+   *
+   * @param nanos     the time taken
+   * @param documents the number of documents processed in that time
+   */
+  void serviced(long nanos, int documents) {
+    servicedCount.add(documents);
+    serviceNanos.add(nanos);
+    long perDocument = nanos / documents;
+    for (int i = 0; i < documents; i++) {
+      serviceTime.update(perDocument);
+    }
+  }
+
+  long getQueuedCount() {
+    return queuedCount.sum();
+  }
+
+  long getQueuedNanosMean() {
+    long count = queuedCount.sum();
+    return count == 0 ? 0 : queuedNanos.sum() / count;
+  }
+
+  @Override
+  public long getDocumentsIn() {
+    return documentsIn.sum();
+  }
+
+  @Override
+  public long getDocumentsOut() {
+    return documentsOut.sum();
+  }
+
+  @Override
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  @Override
+  public long getDrops() {
+    return drops.sum();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return step.size();
+  }
+
+  @Override
+  public int getRemainingCapacity() {
+    return step.remainingCapacity();
+  }
+
+  @Override
+  public double getQueuedTimeMeanMicros() {
+    return micros(getQueuedNanosMean());
+  }
+
+  @Override
+  public double getQueuedTimeP50Micros() {
+    return micros(queuedTime.getSnapshot().getMedian());
+  }
+
+  @Override
+  public double getQueuedTimeP99Micros() {
+    return micros(queuedTime.getSnapshot().get99thPercentile());
+  }
+
+  @Override
+  public double getServiceTimeMeanMicros() {
+    long count = servicedCount.sum();
+    return count == 0 ? 0 : micros((double) serviceNanos.sum() / count);
+  }
+
+  @Override
+  public double getServiceTimeP50Micros() {
+    return micros(serviceTime.getSnapshot().getMedian());
+  }
+
+  @Override
+  public double getServiceTimeP99Micros() {
+    return micros(serviceTime.getSnapshot().get99thPercentile());
+  }
+
+  @Override
+  public long getBlockedOnPutMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(blockedOnPutNanos.sum());
+  }
+
+  private static double micros(double nanos) {
+    return nanos / 1000.0;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+/**
+ * Runtime statistics for a single step, registered with the platform MBean server while the plan is active.
+ * Counts are totals since the step was created, times are in microseconds unless noted otherwise, and
+ * percentiles are drawn from a sample biased towards the last five minutes.
+ */
+public interface StepMetricsMBean {
+
+  /**
+   * @return the number of documents placed in this step's queue, or handed directly to a fused step.
+   */
+  long getDocumentsIn();
+
+  /**
+   * @return the number of documents this step has handed to the next step(s).
+   */
+  long getDocumentsOut();
+
+  /**
+   * @return the number of documents that ended in error in this step.
+   */
+  long getErrors();
+
+  /**
+   * @return the number of documents dropped by this step.
+   */
+  long getDrops();
+
+  /**
+   * @return the number of documents currently waiting in this step's queue.
+   */
+  int getQueueDepth();
+
+  /**
+   * @return the number of documents that could be added to this step's queue before it is full.
+   */
+  int getRemainingCapacity();
+
+  double getQueuedTimeMeanMicros();
+
+  double getQueuedTimeP50Micros();
+
+  double getQueuedTimeP99Micros();
+
+  /**
+   * @return the mean time taken by the processor for each document.
+   */
+  double getServiceTimeMeanMicros();
+
+  double getServiceTimeP50Micros();
+
+  double getServiceTimeP99Micros();
+
+  /**
+   * @return the total time this step has spent waiting for space in the queues of the steps that follow it.
+   */
+  long getBlockedOnPutMillis();
+}
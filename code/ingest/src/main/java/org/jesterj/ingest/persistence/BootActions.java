@@ -0,0 +1,153 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The actions waiting for cassandra to boot. Schema changes are made in order on one thread while the other
+ * actions (mostly preparing statements) run concurrently on the others. Actions added while these run are also
+ * run before boot is considered complete. Actions added after that run immediately on the calling thread.
+ */
+class BootActions {
+
+  // Like Cassandra, this class must not log, see the warning there.
+
+  private final ConcurrentLinkedQueue<RunnableFuture<?>> finalBootActions = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<RunnableFuture<?>> schemaActions = new ConcurrentLinkedQueue<>();
+  private final CountDownLatch schemaCreated = new CountDownLatch(1);
+  private final int threads;
+
+  private volatile boolean booting = true;
+  private boolean schemaActionsRun;
+  private volatile long schemaMillis;
+
+  BootActions(int threads) {
+    this.threads = threads;
+  }
+
+  boolean isBooting() {
+    return booting;
+  }
+
+  /**
+   * @return the time taken to make the schema changes registered before boot
+   */
+  long getSchemaMillis() {
+    return schemaMillis;
+  }
+
+  void run() {
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, (r) -> {
+      Thread t = new Thread(r, "cassandra-boot-" + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      List<Future<?>> running = new ArrayList<>();
+      running.add(pool.submit(() -> {
+        long start = System.nanoTime();
+        try {
+          RunnableFuture<?> action;
+          while ((action = nextSchemaAction()) != null) {
+            action.run();
+          }
+        } finally {
+          schemaMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          schemaCreated.countDown();
+        }
+      }));
+      while (true) {
+        synchronized (finalBootActions) {
+          if (finalBootActions.isEmpty() && running.isEmpty()) {
+            booting = false;
+            return;
+          }
+          while (finalBootActions.peek() != null) {
+            running.add(pool.submit(finalBootActions.remove()));
+          }
+        }
+        for (Future<?> action : running) {
+          try {
+            action.get();
+          } catch (ExecutionException e) {
+            // the action's own future reports the failure to whoever is waiting for it
+            e.printStackTrace();
+          } catch (InterruptedException e) {
+            throw new RuntimeException("interrupted during startup");
+          }
+        }
+        running.clear();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // once this returns null, later schema changes are made by the thread registering them
+  private RunnableFuture<?> nextSchemaAction() {
+    synchronized (finalBootActions) {
+      RunnableFuture<?> action = schemaActions.poll();
+      if (action == null) {
+        schemaActionsRun = true;
+      }
+      return action;
+    }
+  }
+
+  void awaitSchema() throws InterruptedException {
+    schemaCreated.await();
+  }
+
+  Future<Object> updateSchema(Callable<Object> callable) {
+    FutureTask<Object> t = new FutureTask<>(callable);
+    synchronized (finalBootActions) {
+      if (!schemaActionsRun) {
+        schemaActions.add(t);
+        return t;
+      }
+    }
+    t.run();
+    return t;
+  }
+
+  Future<Object> add(Callable<Object> callable) {
+    FutureTask<Object> t = new FutureTask<>(callable);
+    synchronized (finalBootActions) {
+      if (isBooting()) {
+        finalBootActions.add(t);
+      } else {
+        t.run();
+      }
+    }
+    return t;
+  }
+}
@@ -17,8 +17,10 @@
 package org.jesterj.ingest.persistence;
 
 import org.apache.cassandra.auth.AuthKeyspace;
+import org.apache.cassandra.auth.RoleResource;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.ConfigurationLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.YamlConfigurationLoader;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.service.CassandraDaemon;
@@ -33,11 +35,12 @@ import java.net.ServerSocket;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -51,10 +54,16 @@ public class Cassandra {
   // though they should all fire only during system startup.
 
   private static CassandraDaemon cassandra;
-  private static final ConcurrentLinkedQueue<RunnableFuture> finalBootActions = new ConcurrentLinkedQueue<>();
+  private static final Map<String, Long> bootTimings = Collections.synchronizedMap(new LinkedHashMap<>());
   private static String listenAddress;
 
-  private volatile static boolean booting = true;
+  // Cassandra waits this long before creating its default roles, so that a new cluster's nodes can all join
+  // before one of them creates the roles. We only ever start a single node at a time, so it need not be long.
+  private static final String SUPERUSER_SETUP_DELAY_PROPERTY = "cassandra.superuser_setup_delay_ms";
+  private static final String FIRST_BOOT_SUPERUSER_SETUP_DELAY_MS = "250";
+  private static final long ROLE_POLL_MS = 50;
+  private static final int BOOT_THREADS = 4;
+  private static final BootActions bootActions = new BootActions(BOOT_THREADS);
 
   /**
    * Indicates whether cassandra has finished booting. Does NOT indicate if
@@ -66,7 +75,7 @@ public class Cassandra {
    * may not have booted yet.
    */
   public static boolean isBooting() {
-    return booting;
+    return bootActions.isBooting();
   }
 
   public static void start(File cassandraDir) {
@@ -75,6 +84,8 @@ public class Cassandra {
     public static void start(File cassandraDir, String listenAddress) {
 
     System.out.println("Booting internal cassandra");
+    long bootStart = System.nanoTime();
+    long phaseStart = bootStart;
     boolean firstboot = false;
     try {
       if (!cassandraDir.exists() && !cassandraDir.mkdirs()) {
@@ -125,6 +136,10 @@ public class Cassandra {
     } catch (IOException | ConfigurationException e) {
       e.printStackTrace();
     }
+    phaseStart = recordPhase("config", phaseStart);
+    if (firstboot && System.getProperty(SUPERUSER_SETUP_DELAY_PROPERTY) == null) {
+      System.setProperty(SUPERUSER_SETUP_DELAY_PROPERTY, FIRST_BOOT_SUPERUSER_SETUP_DELAY_MS);
+    }
     cassandra = new CassandraDaemon();
     try {
       // keep cassandra from clobering system.out and sytem.err
@@ -134,24 +149,22 @@ public class Cassandra {
       e.printStackTrace();
     }
 
+    phaseStart = recordPhase("daemon", phaseStart);
+
     // Issue #59
-    // Cassandra waits 10 seconds before creating the super-user, see CassandraRoleManager.scheduleSetupTask()
+    // Cassandra waits before creating the super-user, see CassandraRoleManager.scheduleSetupTask()
     // https://github.com/apache/cassandra/blob/cassandra-3.11.0/src/java/org/apache/cassandra/auth/CassandraRoleManager.java#L403
     if (firstboot) {
-      try {
-        // wait 11 seconds...
-        System.out.println("First time startup... waiting for Cassandra to create it's default roles");
-        Thread.sleep((long) (AuthKeyspace.SUPERUSER_SETUP_DELAY * 1.1));
-      } catch (InterruptedException e) {
-        throw new RuntimeException("interrupted during startup");
-      }
-    }
-    synchronized (finalBootActions) {
-      while (finalBootActions.peek() != null) {
-        finalBootActions.remove().run();
-      }
-      booting = false;
+      System.out.println("First time startup... waiting for Cassandra to create it's default roles");
+      awaitDefaultRoles();
     }
+    phaseStart = recordPhase("roles", phaseStart);
+
+    bootActions.run();
+    bootTimings.put("schema", bootActions.getSchemaMillis());
+    recordPhase("statements", phaseStart);
+    recordPhase("total", bootStart);
+    System.out.println("Cassandra boot timings (ms): " + getBootTimings());
     System.out.println("Cassandra booted");
   }
 
@@ -164,16 +177,67 @@ public class Cassandra {
     cassandra.destroy();
   }
 
-  public static Future whenBooted(Callable<Object> callable) {
-    FutureTask<Object> t = new FutureTask<>(callable);
-    synchronized (finalBootActions) {
-      if (isBooting()) {
-        finalBootActions.add(t);
-      } else {
-        t.run();
+  private static long recordPhase(String phase, long start) {
+    long now = System.nanoTime();
+    bootTimings.put(phase, TimeUnit.NANOSECONDS.toMillis(now - start));
+    return now;
+  }
+
+  /**
+   * The time taken by each phase of the last boot, in the order they completed. Schema creation overlaps the
+   * preparation of statements, so the phases do not add up to the total.
+   *
+   * @return phase names mapped to milliseconds
+   */
+  public static Map<String, Long> getBootTimings() {
+    synchronized (bootTimings) {
+      return new LinkedHashMap<>(bootTimings);
+    }
+  }
+
+  private static void awaitDefaultRoles() {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AuthKeyspace.SUPERUSER_SETUP_DELAY * 3 + 30_000);
+    RoleResource superuser = RoleResource.role("cassandra");
+    while (System.nanoTime() < deadline) {
+      try {
+        if (DatabaseDescriptor.getRoleManager().isExistingRole(superuser)) {
+          return;
+        }
+      } catch (Exception e) {
+        // auth tables not ready yet
+      }
+      try {
+        Thread.sleep(ROLE_POLL_MS);
+      } catch (InterruptedException e) {
+        throw new RuntimeException("interrupted during startup");
       }
     }
-    return t;
+    System.out.println("WARNING: Cassandra did not create it's default roles in time, continuing anyway");
+  }
+
+  /**
+   * Wait until the schema changes registered with {@link #whenBootedUpdateSchema(Callable)} have been made.
+   * Statements that depend on the schema and fail while it is being created can wait on this and retry.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static void awaitSchema() throws InterruptedException {
+    bootActions.awaitSchema();
+  }
+
+  /**
+   * Make a schema change once cassandra has booted. Schema changes are made in the order they are registered,
+   * concurrently with the actions registered with {@link #whenBooted(Callable)}.
+   *
+   * @param callable the schema change
+   * @return a future for the result of the change
+   */
+  public static Future<Object> whenBootedUpdateSchema(Callable<Object> callable) {
+    return bootActions.updateSchema(callable);
+  }
+
+  public static Future whenBooted(Callable<Object> callable) {
+    return bootActions.add(callable);
   }
 
 }
@@ -24,6 +24,7 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Map;
@@ -44,6 +45,8 @@ public class CassandraSupport {
    * Add a query to the list of prepared queries maintained by this instance. Queries may be added before
    * Cassandra is booted, but will not become available until after the Cassandra boot cycle completes.
    * Attempts to add a query with the same name more than once will be ignored. Queries are cached globally.
+   * Queries are prepared while the schema is being created, so a query against a table that does not yet exist
+   * is prepared again once the schema is complete.
    *
    * @param name      A name with which to retrieve the prepared statement instance
    * @param statement A string to be prepared as a CQL statement.
@@ -52,7 +55,14 @@ public class CassandraSupport {
     synchronized (preparedQueries) {
       if (!preparedQueries.containsKey(name)) {
         //noinspection unchecked
-        preparedQueries.put(name, Cassandra.whenBooted(() -> getSession().prepare(statement)));
+        preparedQueries.put(name, Cassandra.whenBooted(() -> {
+          try {
+            return getSession().prepare(statement);
+          } catch (InvalidQueryException e) {
+            Cassandra.awaitSchema();
+            return getSession().prepare(statement);
+          }
+        }));
       }
     }
   }
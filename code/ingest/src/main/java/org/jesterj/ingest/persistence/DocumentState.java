@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+/**
+ * The state of a document as recorded in a {@link StatusStore}.
+ */
+public class DocumentState {
+  private final String docId;
+  private final String status;
+  private final String md5;
+
+  public DocumentState(String docId, String status, String md5) {
+    this.docId = docId;
+    this.status = status;
+    this.md5 = md5;
+  }
+
+  public String getDocId() {
+    return docId;
+  }
+
+  /**
+   * The name of the document's status.
+   *
+   * @return the status, or null if only a hash has been recorded.
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * The hash of the document's content.
+   *
+   * @return the hash, or null if none has been recorded.
+   */
+  public String getMd5() {
+    return md5;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.persistence;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The state of every document recorded for one scanner, kept compactly enough that millions of documents fit
+ * comfortably on the heap. Ids are kept as UTF-8 bytes in one shared array, statuses as an index into the few
+ * status names seen, and md5 hashes as two longs, so an entry costs about 40 bytes plus the bytes of its id
+ * and the room left for growth. A map of strings to {@link DocumentState} objects costs more than twice as much.
+ * <p>
+ * Entries are never removed, so they are numbered in the order they were added and a visit of every entry
+ * can proceed while others are being added.
+ */
+class DocumentStateTable {
+  private static final HashFunction ID_HASH = Hashing.murmur3_32();
+  private static final float MAX_LOAD = 0.7f;
+  private static final byte NO_STATUS = -1;
+  private static final byte NO_MD5 = 0;
+  private static final byte LOWER_MD5 = 1;
+  private static final byte UPPER_MD5 = 2;
+  private static final byte OTHER_MD5 = 3;
+  private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+  private final List<String> statusNames = new ArrayList<>();
+  // hashes that can't be stored as two longs, by entry, expected to be rare
+  private final Map<Integer, String> otherMd5s = new HashMap<>();
+
+  // one more than the entry in each hash slot, zero for a free slot
+  private int[] slots = new int[1024];
+  private int mask = slots.length - 1;
+
+  // by entry
+  private int[] hashes = new int[1024];
+  private int[] idEnds = new int[1024];
+  private byte[] statuses = new byte[1024];
+  private byte[] md5Forms = new byte[1024];
+  // two longs per entry
+  private long[] md5s = new long[2048];
+  private byte[] ids = new byte[16 * 1024];
+  private int size;
+
+  /**
+   * The state recorded for a document.
+   *
+   * @param docId the id of the document
+   * @return the state, or null if nothing has been recorded for the document
+   */
+  synchronized DocumentState get(String docId) {
+    byte[] id = docId.getBytes(StandardCharsets.UTF_8);
+    int entry = slots[find(id, hash(id))] - 1;
+    return entry < 0 ? null : stateOf(entry);
+  }
+
+  /**
+   * Record the status of a document, keeping any hash already recorded.
+   *
+   * @param docId  the id of the document
+   * @param status the name of the status
+   */
+  synchronized void setStatus(String docId, String status) {
+    int entry = entryFor(docId);
+    statuses[entry] = statusByte(status);
+  }
+
+  /**
+   * Record the hash of a document, keeping any status already recorded.
+   *
+   * @param docId the id of the document
+   * @param md5   the hash of the document
+   */
+  synchronized void setHash(String docId, String md5) {
+    int entry = entryFor(docId);
+    byte form = md5Form(md5);
+    md5Forms[entry] = form;
+    if (form == OTHER_MD5) {
+      otherMd5s.put(entry, md5);
+    } else {
+      otherMd5s.remove(entry);
+      if (form != NO_MD5) {
+        md5s[entry * 2] = Long.parseUnsignedLong(md5.substring(0, 16), 16);
+        md5s[entry * 2 + 1] = Long.parseUnsignedLong(md5.substring(16), 16);
+      }
+    }
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Visit the state of every document, in the order they were first recorded. The table is not locked while
+   * the action runs, so documents recorded during the visit may or may not be seen.
+   *
+   * @param action what to do with each document's state
+   */
+  void forEach(Consumer<DocumentState> action) {
+    for (int entry = 0; ; entry++) {
+      DocumentState state;
+      synchronized (this) {
+        if (entry >= size) {
+          return;
+        }
+        state = stateOf(entry);
+      }
+      action.accept(state);
+    }
+  }
+
+  private DocumentState stateOf(int entry) {
+    int start = entry == 0 ? 0 : idEnds[entry - 1];
+    String docId = new String(ids, start, idEnds[entry] - start, StandardCharsets.UTF_8);
+    String status = statuses[entry] == NO_STATUS ? null : statusNames.get(statuses[entry]);
+    String md5;
+    switch (md5Forms[entry]) {
+      case LOWER_MD5:
+        md5 = toHex(md5s[entry * 2]) + toHex(md5s[entry * 2 + 1]);
+        break;
+      case UPPER_MD5:
+        md5 = (toHex(md5s[entry * 2]) + toHex(md5s[entry * 2 + 1])).toUpperCase(Locale.ROOT);
+        break;
+      case OTHER_MD5:
+        md5 = otherMd5s.get(entry);
+        break;
+      default:
+        md5 = null;
+    }
+    return new DocumentState(docId, status, md5);
+  }
+
+  // the entry for a document, added with no status or hash if there is none yet
+  private int entryFor(String docId) {
+    byte[] id = docId.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(id);
+    int slot = find(id, hash);
+    if (slots[slot] != 0) {
+      return slots[slot] - 1;
+    }
+    if (size + 1 > slots.length * MAX_LOAD) {
+      rehash();
+      slot = find(id, hash);
+    }
+    int entry = size;
+    int start = entry == 0 ? 0 : idEnds[entry - 1];
+    if (start > MAX_ARRAY - id.length) {
+      throw new IllegalStateException("Too many document ids to hold in memory");
+    }
+    if (entry == hashes.length) {
+      int capacity = hashes.length * 2;
+      hashes = Arrays.copyOf(hashes, capacity);
+      idEnds = Arrays.copyOf(idEnds, capacity);
+      statuses = Arrays.copyOf(statuses, capacity);
+      md5Forms = Arrays.copyOf(md5Forms, capacity);
+      md5s = Arrays.copyOf(md5s, capacity * 2);
+    }
+    if (start + id.length > ids.length) {
+      ids = Arrays.copyOf(ids, (int) Math.min(MAX_ARRAY, Math.max(2L * ids.length, start + id.length)));
+    }
+    System.arraycopy(id, 0, ids, start, id.length);
+    hashes[entry] = hash;
+    idEnds[entry] = start + id.length;
+    statuses[entry] = NO_STATUS;
+    md5Forms[entry] = NO_MD5;
+    slots[slot] = entry + 1;
+    size++;
+    return entry;
+  }
+
+  // linear probing, the slot holding the id or the free slot where it belongs
+  private int find(byte[] id, int hash) {
+    int slot = hash & mask;
+    while (true) {
+      int entry = slots[slot] - 1;
+      if (entry < 0 || (hashes[entry] == hash && idEquals(entry, id))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean idEquals(int entry, byte[] id) {
+    int start = entry == 0 ? 0 : idEnds[entry - 1];
+    if (idEnds[entry] - start != id.length) {
+      return false;
+    }
+    for (int i = 0; i < id.length; i++) {
+      if (ids[start + i] != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    mask = slots.length - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = hashes[entry] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+
+  private byte statusByte(String status) {
+    if (status == null) {
+      return NO_STATUS;
+    }
+    int index = statusNames.indexOf(status);
+    if (index < 0) {
+      if (statusNames.size() > Byte.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many distinct statuses to record " + status);
+      }
+      index = statusNames.size();
+      statusNames.add(status);
+    }
+    return (byte) index;
+  }
+
+  private static int hash(byte[] id) {
+    return ID_HASH.hashBytes(id).asInt();
+  }
+
+  // anything other than 32 hex digits of one case can't be stored as two longs, and is kept as it is.
+  private static byte md5Form(String md5) {
+    if (md5 == null) {
+      return NO_MD5;
+    }
+    if (md5.length() != 32) {
+      return OTHER_MD5;
+    }
+    boolean lower = false;
+    boolean upper = false;
+    for (int i = 0; i < md5.length(); i++) {
+      char c = md5.charAt(i);
+      if (c >= 'a' && c <= 'f') {
+        lower = true;
+      } else if (c >= 'A' && c <= 'F') {
+        upper = true;
+      } else if (c < '0' || c > '9') {
+        return OTHER_MD5;
+      }
+    }
+    if (lower && upper) {
+      return OTHER_MD5;
+    }
+    return upper ? UPPER_MD5 : LOWER_MD5;
+  }
+
+  private static String toHex(long bits) {
+    String hex = Long.toHexString(bits);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+import org.jesterj.ingest.model.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A status store that keeps document state in memory only. Everything is forgotten when the process stops, so
+ * every document will be processed again by the next run. Useful for testing, and for plans where documents
+ * are only ever processed once per run anyway.
+ * <p>
+ * Each document costs about 40 bytes of heap plus the UTF-8 bytes of its id, see {@link DocumentStateTable}.
+ */
+public class EphemeralStatusStore implements StatusStore {
+
+  private final ConcurrentMap<String, DocumentStateTable> scanners = new ConcurrentHashMap<>();
+
+  @Override
+  public DocumentState find(String scanner, String docId) {
+    DocumentStateTable docs = scanners.get(scanner);
+    return docs == null ? null : docs.get(docId);
+  }
+
+  @Override
+  public void forEach(String scanner, Consumer<DocumentState> action) {
+    DocumentStateTable docs = scanners.get(scanner);
+    if (docs != null) {
+      docs.forEach(action);
+    }
+  }
+
+  @Override
+  public void setStatus(String scanner, String docId, String status) {
+    docs(scanner).setStatus(docId, status);
+  }
+
+  @Override
+  public void setHash(String scanner, String docId, String md5) {
+    docs(scanner).setHash(docId, md5);
+  }
+
+  @Override
+  public int reset(String scanner, Collection<String> statuses) {
+    List<String> stranded = new ArrayList<>();
+    forEach(scanner, (state) -> {
+      if (statuses.contains(state.getStatus())) {
+        stranded.add(state.getDocId());
+      }
+    });
+    for (String docId : stranded) {
+      setStatus(scanner, docId, Status.DIRTY.name());
+    }
+    return stranded.size();
+  }
+
+  /**
+   * The names of all scanners with recorded documents.
+   *
+   * @return a snapshot of the scanner names
+   */
+  protected Collection<String> getScanners() {
+    return new ArrayList<>(scanners.keySet());
+  }
+
+  /**
+   * The number of documents recorded for all scanners.
+   *
+   * @return the number of documents
+   */
+  protected long size() {
+    long size = 0;
+    for (DocumentStateTable docs : scanners.values()) {
+      size += docs.size();
+    }
+    return size;
+  }
+
+  private DocumentStateTable docs(String scanner) {
+    return scanners.computeIfAbsent(scanner, (name) -> new DocumentStateTable());
+  }
+
+  @Override
+  public void close() {
+    // nothing to keep
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A status store for a single node that keeps document state in memory and records every change in a log of
+ * memory mapped segment files in a local directory. Appending to the log is a copy into the mapped segment, so
+ * the cost of a change is close to that of the in memory update. The operating system writes the mapped pages
+ * back to disk, so changes survive the process stopping unexpectedly; segments are forced to disk when they
+ * are filled and when the store is closed.
+ * <p>
+ * Lookups are served from memory, not from the log. Each document costs about 40 bytes of heap plus the UTF-8
+ * bytes of its id, and up to twice that just after the arrays holding them have grown. Two million documents
+ * with 41 byte ids and hashes measured about 110 bytes each, so five million such documents need around 550MB.
+ * <p>
+ * When the store is opened the log is replayed to rebuild the state. The log grows by a record for every
+ * change, so when it holds more than four records for each live one it is compacted: the
+ * current state is written to a new generation of segments, which is marked complete once written, and the old
+ * generation is deleted.
+ * <p>
+ * Each record is framed by its length and a CRC, so a record torn by a crash marks the end of the log.
+ */
+public class LocalStatusStore extends EphemeralStatusStore {
+
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final Pattern SEGMENT = Pattern.compile("g(\\d+)-(\\d+)\\.seg");
+  private static final Pattern MARKER = Pattern.compile("g(\\d+)\\.ok");
+  private static final byte STATUS = 1;
+  private static final byte HASH = 2;
+  private static final int HEADER = 8;
+  // don't bother compacting small logs
+  private static final long MIN_COMPACT_RECORDS = 100_000;
+  // compact once the log holds this many records for each live one
+  private static final int COMPACT_FACTOR = 4;
+
+  private final Path dir;
+  private final int segmentSize;
+
+  private int generation;
+  private int segment;
+  private MappedByteBuffer current;
+  private long records;
+  private boolean closed;
+
+  /**
+   * Open a store, creating it if the directory holds none.
+   *
+   * @param dir         the directory holding the log
+   * @param segmentSize the size of each log segment, records larger than this cannot be written
+   * @throws IOException if the log cannot be read or created
+   */
+  public LocalStatusStore(Path dir, int segmentSize) throws IOException {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(dir);
+    open();
+  }
+
+  public LocalStatusStore(Path dir) throws IOException {
+    this(dir, DEFAULT_SEGMENT_SIZE);
+  }
+
+  private void open() throws IOException {
+    int complete = -1;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path file : files) {
+        Matcher marker = MARKER.matcher(file.getFileName().toString());
+        if (marker.matches()) {
+          complete = Math.max(complete, Integer.parseInt(marker.group(1)));
+        }
+      }
+    }
+    if (complete < 0) {
+      complete = 0;
+      Files.createFile(marker(complete));
+    }
+    generation = complete;
+    TreeMap<Integer, Path> segments = new TreeMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        Matcher seg = SEGMENT.matcher(name);
+        Matcher marker = MARKER.matcher(name);
+        if (seg.matches() && Integer.parseInt(seg.group(1)) == generation) {
+          segments.put(Integer.parseInt(seg.group(2)), file);
+        } else if ((seg.matches() && Integer.parseInt(seg.group(1)) != generation) ||
+            (marker.matches() && Integer.parseInt(marker.group(1)) != generation)) {
+          // an older generation that was not deleted after compaction, or a compaction that did not complete
+          Files.delete(file);
+        }
+      }
+    }
+    if (segments.isEmpty()) {
+      segment = 0;
+      current = map(segmentPath(generation, segment), true);
+      return;
+    }
+    for (Integer index : segments.keySet()) {
+      segment = index;
+      current = map(segments.get(index), false);
+      replay(current);
+    }
+    // anything after the last good record in the last segment is a torn write, don't leave it to be misread
+    for (int i = current.position(); i < current.limit(); i++) {
+      current.put(i, (byte) 0);
+    }
+    if (needsCompaction()) {
+      compact();
+    }
+  }
+
+  private boolean needsCompaction() {
+    return records > MIN_COMPACT_RECORDS && records > COMPACT_FACTOR * size();
+  }
+
+  private void replay(ByteBuffer log) {
+    CRC32 crc = new CRC32();
+    int position = 0;
+    while (position + HEADER <= log.limit()) {
+      int length = log.getInt(position);
+      if (length <= 0 || length > log.limit() - position - HEADER) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      ByteBuffer slice = log.duplicate();
+      slice.position(position + HEADER);
+      slice.get(payload);
+      crc.reset();
+      crc.update(payload, 0, length);
+      if ((int) crc.getValue() != log.getInt(position + 4)) {
+        break;
+      }
+      apply(ByteBuffer.wrap(payload));
+      records++;
+      position += HEADER + length;
+    }
+    log.position(position);
+  }
+
+  private void apply(ByteBuffer record) {
+    byte type = record.get();
+    String scanner = readString(record);
+    String docId = readString(record);
+    String value = readString(record);
+    if (type == STATUS) {
+      super.setStatus(scanner, docId, value);
+    } else if (type == HASH) {
+      super.setHash(scanner, docId, value);
+    }
+  }
+
+  @Override
+  public synchronized void setStatus(String scanner, String docId, String status) {
+    append(STATUS, scanner, docId, status);
+    super.setStatus(scanner, docId, status);
+  }
+
+  @Override
+  public synchronized void setHash(String scanner, String docId, String md5) {
+    append(HASH, scanner, docId, md5);
+    super.setHash(scanner, docId, md5);
+  }
+
+  @Override
+  public synchronized int reset(String scanner, Collection<String> statuses) {
+    return super.reset(scanner, statuses);
+  }
+
+  private void append(byte type, String scanner, String docId, String value) {
+    if (closed) {
+      throw new IllegalStateException("Status store in " + dir + " has been closed");
+    }
+    byte[] payload = encode(type, scanner, docId, value);
+    if (HEADER + payload.length > segmentSize) {
+      throw new IllegalArgumentException("Document id too long to record: " + docId);
+    }
+    try {
+      if (current.remaining() < HEADER + payload.length) {
+        if (needsCompaction()) {
+          compact();
+        }
+        if (current.remaining() < HEADER + payload.length) {
+          roll();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    write(payload);
+  }
+
+  private void write(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    int position = current.position();
+    ByteBuffer body = current.duplicate();
+    body.position(position + HEADER);
+    body.put(payload);
+    current.putInt(position + 4, (int) crc.getValue());
+    // the length goes in last, so a partly written record reads as the end of the log
+    current.putInt(position, payload.length);
+    current.position(position + HEADER + payload.length);
+    records++;
+  }
+
+  private void roll() throws IOException {
+    current.force();
+    segment++;
+    current = map(segmentPath(generation, segment), true);
+  }
+
+  /**
+   * Write the current state to a new generation of the log, and delete the old one.
+   *
+   * @throws IOException if the new generation cannot be written
+   */
+  synchronized void compact() throws IOException {
+    int old = generation;
+    current.force();
+    generation = old + 1;
+    segment = 0;
+    records = 0;
+    current = map(segmentPath(generation, segment), true);
+    for (String scanner : getScanners()) {
+      List<byte[]> payloads = new ArrayList<>();
+      forEach(scanner, (state) -> {
+        if (state.getStatus() != null) {
+          payloads.add(encode(STATUS, scanner, state.getDocId(), state.getStatus()));
+        }
+        if (state.getMd5() != null) {
+          payloads.add(encode(HASH, scanner, state.getDocId(), state.getMd5()));
+        }
+      });
+      for (byte[] payload : payloads) {
+        if (current.remaining() < HEADER + payload.length) {
+          roll();
+        }
+        write(payload);
+      }
+    }
+    current.force();
+    Files.createFile(marker(generation));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "g" + old + "*")) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private MappedByteBuffer map(Path file, boolean create) throws IOException {
+    try (FileChannel channel = create ?
+        FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE) :
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = create ? segmentSize : channel.size();
+      // the mapping remains valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private Path segmentPath(int generation, int segment) {
+    return dir.resolve("g" + generation + "-" + segment + ".seg");
+  }
+
+  private Path marker(int generation) {
+    return dir.resolve("g" + generation + ".ok");
+  }
+
+  private static byte[] encode(byte type, String scanner, String docId, String value) {
+    byte[] scannerBytes = scanner.getBytes(StandardCharsets.UTF_8);
+    byte[] idBytes = docId.getBytes(StandardCharsets.UTF_8);
+    byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(1 + 12 + scannerBytes.length + idBytes.length +
+        (valueBytes == null ? 0 : valueBytes.length));
+    record.put(type);
+    writeBytes(record, scannerBytes);
+    writeBytes(record, idBytes);
+    writeBytes(record, valueBytes);
+    return record.array();
+  }
+
+  private static void writeBytes(ByteBuffer record, byte[] bytes) {
+    if (bytes == null) {
+      record.putInt(-1);
+    } else {
+      record.putInt(bytes.length);
+      record.put(bytes);
+    }
+  }
+
+  private static String readString(ByteBuffer record) {
+    int length = record.getInt();
+    if (length < 0) {
+      return null;
+    }
+    String value = new String(record.array(), record.arrayOffset() + record.position(), length,
+        StandardCharsets.UTF_8);
+    record.position(record.position() + length);
+    return value;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      current.force();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Holds the fault tolerance state of documents: the status last logged for each document found by each scanner
+ * and the hash of its content. By default this state is kept in cassandra, which also allows it to be shared by
+ * a cluster. A single node may instead install another implementation with {@link StatusStores#use(StatusStore)}
+ * before its plan is loaded, and avoid starting cassandra entirely.
+ * <p>
+ * Implementations must be safe for use by many threads.
+ */
+public interface StatusStore extends Closeable {
+
+  /**
+   * Find the state of a document.
+   *
+   * @param scanner the name of the scanner that found the document
+   * @param docId   the id of the document
+   * @return the state of the document, or null if the scanner has never recorded it
+   */
+  DocumentState find(String scanner, String docId);
+
+  /**
+   * Visit the state of every document recorded for a scanner, in no particular order.
+   *
+   * @param scanner the name of the scanner
+   * @param action  what to do with each document's state
+   */
+  void forEach(String scanner, Consumer<DocumentState> action);
+
+  /**
+   * Record a change in the status of a document.
+   *
+   * @param scanner the name of the scanner that found the document
+   * @param docId   the id of the document
+   * @param status  the name of the document's new status
+   */
+  void setStatus(String scanner, String docId, String status);
+
+  /**
+   * Record the hash of a document's content.
+   *
+   * @param scanner the name of the scanner that found the document
+   * @param docId   the id of the document
+   * @param md5     the hash of the document
+   */
+  void setHash(String scanner, String docId, String md5);
+
+  /**
+   * Mark every document of a scanner that has one of the given statuses as dirty so that it will be processed
+   * again.
+   *
+   * @param scanner  the name of the scanner
+   * @param statuses the names of the statuses to reset
+   * @return the number of documents reset
+   */
+  int reset(String scanner, Collection<String> statuses);
+
+  /**
+   * Release any resources held, making sure that everything recorded so far is durable.
+   *
+   * @throws IOException if recorded state could not be written
+   */
+  @Override
+  void close() throws IOException;
+}
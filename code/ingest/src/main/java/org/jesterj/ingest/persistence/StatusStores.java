@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+/**
+ * The status store in use by this node. When none has been installed, document state is kept in cassandra.
+ */
+public class StatusStores {
+
+  private static volatile StatusStore store;
+
+  private StatusStores() {
+  }
+
+  /**
+   * Keep document state in the given store instead of cassandra. Must be called before any plan is activated.
+   *
+   * @param statusStore the store to use
+   */
+  public static void use(StatusStore statusStore) {
+    store = statusStore;
+  }
+
+  /**
+   * The installed store.
+   *
+   * @return the store, or null if document state is kept in cassandra
+   */
+  public static StatusStore get() {
+    return store;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Chooses the batch size and partial batch delay for a {@link BatchProcessor} from the outcome of the batches it
+ * sends. The size grows while full batches come back well within the target latency, shrinks in proportion when
+ * they take longer than the target, halves when a batch fails outright, and never exceeds the number of
+ * documents of average size that fit in the byte limit. The partial batch delay is set to the time a batch
+ * takes to fill at the recent arrival rate, or to the minimum when documents trickle in too slowly for a batch
+ * to fill within the maximum delay, so that sparse updates are not held back waiting for company.
+ */
+class AdaptiveBatchTuner {
+
+  // weight given to each new observation in the moving averages
+  private static final double ALPHA = 0.2;
+  private static final double MAX_ERROR_RATE_FOR_GROWTH = 0.05;
+
+  private int minBatchSize = 1;
+  private int maxBatchSize = 1000;
+  private int minDelayMs = 10;
+  private int maxDelayMs = 5000;
+  private long targetLatencyMs = 1000;
+  private long maxBatchBytes = 16 * 1024 * 1024;
+  private boolean adaptingDelay;
+
+  private int batchSize;
+  private int delayMs;
+  private double errorRate;
+  private double bytesPerDocument;
+  // not guarded by the monitor, so that documents arriving don't contend with each other
+  private final LongAdder arrivals = new LongAdder();
+  private final LongSupplier nanoClock;
+  private long lastAdjustedNanos;
+
+  AdaptiveBatchTuner(int initialBatchSize, int initialDelayMs) {
+    this(initialBatchSize, initialDelayMs, System::nanoTime);
+  }
+
+  /**
+   * Create a tuner that measures arrival rates with the given clock.
+   *
+   * @param initialBatchSize the batch size to use until the first batch completes
+   * @param initialDelayMs   the delay to use until the first batch completes
+   * @param nanoClock        supplies times in nanoseconds, as {@link System#nanoTime()} does
+   */
+  AdaptiveBatchTuner(int initialBatchSize, int initialDelayMs, LongSupplier nanoClock) {
+    this.batchSize = initialBatchSize;
+    this.delayMs = initialDelayMs;
+    this.nanoClock = nanoClock;
+    this.lastAdjustedNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Restart from the given values, bounded by the current limits.
+   *
+   * @param initialBatchSize the batch size to use until the next batch completes
+   * @param initialDelayMs   the delay to use until the next batch completes
+   */
+  synchronized void startFrom(int initialBatchSize, int initialDelayMs) {
+    batchSize = clamp(initialBatchSize, minBatchSize, maxBatchSize);
+    delayMs = adaptingDelay ? clamp(initialDelayMs, minDelayMs, maxDelayMs) : initialDelayMs;
+  }
+
+  synchronized void setBatchSizeBounds(int min, int max) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("Invalid batch size bounds " + min + " to " + max);
+    }
+    minBatchSize = min;
+    maxBatchSize = max;
+    batchSize = clamp(batchSize, min, max);
+  }
+
+  synchronized void setDelayBounds(int minMs, int maxMs) {
+    if (minMs < 1 || maxMs < minMs) {
+      throw new IllegalArgumentException("Invalid partial batch delay bounds " + minMs + " to " + maxMs);
+    }
+    minDelayMs = minMs;
+    maxDelayMs = maxMs;
+    delayMs = clamp(delayMs, minMs, maxMs);
+    adaptingDelay = true;
+  }
+
+  synchronized void setTargetLatencyMs(long ms) {
+    if (ms < 1) {
+      throw new IllegalArgumentException("Target latency must be positive, got " + ms);
+    }
+    targetLatencyMs = ms;
+  }
+
+  synchronized void setMaxBatchBytes(long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("Batch byte limit must be positive, got " + bytes);
+    }
+    maxBatchBytes = bytes;
+  }
+
+  void documentsArrived(int count) {
+    arrivals.add(count);
+  }
+
+  /**
+   * Adjust the batch size and delay given the outcome of a batch.
+   *
+   * @param documents the number of documents in the batch
+   * @param bytes     the approximate size of the documents in the batch
+   * @param nanos     the time taken to send the batch
+   * @param failed    true if the batch as a whole could not be sent
+   */
+  synchronized void batchCompleted(int documents, long bytes, long nanos, boolean failed) {
+    errorRate = errorRate * (1 - ALPHA) + (failed ? ALPHA : 0);
+    if (documents > 0) {
+      double perDocument = (double) bytes / documents;
+      bytesPerDocument = bytesPerDocument == 0 ? perDocument : bytesPerDocument * (1 - ALPHA) + perDocument * ALPHA;
+    }
+    long latencyMs = nanos / 1_000_000;
+    int size = batchSize;
+    if (failed) {
+      size = size / 2;
+    } else if (latencyMs > targetLatencyMs) {
+      size = (int) Math.min(size - 1, size * targetLatencyMs / latencyMs);
+    } else if (documents >= size && latencyMs < targetLatencyMs / 2 && errorRate < MAX_ERROR_RATE_FOR_GROWTH) {
+      size = size + Math.max(1, size / 4);
+    }
+    if (bytesPerDocument > 0) {
+      size = (int) Math.min(size, maxBatchBytes / bytesPerDocument);
+    }
+    batchSize = clamp(size, minBatchSize, maxBatchSize);
+
+    long now = nanoClock.getAsLong();
+    if (adaptingDelay) {
+      double elapsedMs = (now - lastAdjustedNanos) / 1_000_000.0;
+      double perMs = elapsedMs > 0 ? arrivals.sum() / elapsedMs : 0;
+      double fillMs = perMs > 0 ? batchSize / perMs : Double.MAX_VALUE;
+      delayMs = fillMs > maxDelayMs ? minDelayMs : clamp((int) fillMs, minDelayMs, maxDelayMs);
+    }
+    arrivals.reset();
+    lastAdjustedNanos = now;
+  }
+
+  synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  synchronized int getDelayMs() {
+    return delayMs;
+  }
+
+  synchronized double getErrorRate() {
+    return errorRate;
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
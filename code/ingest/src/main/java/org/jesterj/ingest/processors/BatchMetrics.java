@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the statistics exposed by {@link BatchMetricsMBean} for a batch processor.
+ */
+public class BatchMetrics implements BatchMetricsMBean {
+
+  private final BatchProcessor<?> processor;
+
+  private final LongAdder batchesSent = new LongAdder();
+  private final LongAdder batchesFailed = new LongAdder();
+  private final LongAdder documentsSent = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  // default reservoir is exponentially decaying, favoring the last 5 minutes
+  private final Histogram sendTime = new Histogram(new ExponentiallyDecayingReservoir());
+
+  BatchMetrics(BatchProcessor<?> processor) {
+    this.processor = processor;
+  }
+
+  void batchSent(int documents, long bytes, long nanos, boolean failed) {
+    batchesSent.increment();
+    if (failed) {
+      batchesFailed.increment();
+    }
+    documentsSent.add(documents);
+    bytesSent.add(bytes);
+    sendTime.update(nanos);
+  }
+
+  @Override
+  public int getBatchSize() {
+    return processor.getBatchSize();
+  }
+
+  @Override
+  public int getPartialBatchDelayMs() {
+    return processor.getPartialBatchDelayMs();
+  }
+
+  @Override
+  public long getBatchesSent() {
+    return batchesSent.sum();
+  }
+
+  @Override
+  public long getBatchesFailed() {
+    return batchesFailed.sum();
+  }
+
+  @Override
+  public long getDocumentsSent() {
+    return documentsSent.sum();
+  }
+
+  @Override
+  public double getErrorRate() {
+    return processor.getErrorRate();
+  }
+
+  @Override
+  public double getMeanBatchBytes() {
+    long batches = batchesSent.sum();
+    return batches == 0 ? 0 : (double) bytesSent.sum() / batches;
+  }
+
+  @Override
+  public double getSendTimeMeanMillis() {
+    return millis(sendTime.getSnapshot().getMean());
+  }
+
+  @Override
+  public double getSendTimeP99Millis() {
+    return millis(sendTime.getSnapshot().get99thPercentile());
+  }
+
+  private static double millis(double nanos) {
+    return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+/**
+ * Statistics for a processor that sends documents in batches, registered with the platform MBean server while
+ * the processor is in use. Counts are totals since the processor was created. The batch size and partial
+ * batch delay are the values currently in force, which change over time when batching is adaptive.
+ */
+public interface BatchMetricsMBean {
+
+  int getBatchSize();
+
+  int getPartialBatchDelayMs();
+
+  long getBatchesSent();
+
+  /**
+   * @return the number of batches that could not be sent as a whole.
+   */
+  long getBatchesFailed();
+
+  long getDocumentsSent();
+
+  /**
+   * @return a moving average of the fraction of batches that failed as a whole, for adaptive batching only.
+   */
+  double getErrorRate();
+
+  double getMeanBatchBytes();
+
+  double getSendTimeMeanMillis();
+
+  double getSendTimeP99Millis();
+}
@@ -26,90 +26,513 @@ import org.jesterj.ingest.model.DocumentProcessor;
 import org.jesterj.ingest.model.Status;
 import org.jesterj.ingest.model.impl.NamedBuilder;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
 
 abstract class BatchProcessor<T> implements DocumentProcessor {
   private static final Logger log = LogManager.getLogger();
 
-  private final ScheduledExecutorService sender = Executors.newScheduledThreadPool(1);
-  private int batchSize = 100;
-  private int sendPartialBatchAfterMs = 5000;
-  private ScheduledFuture scheduledSend;
+  private final ScheduledThreadPoolExecutor sender;
+  private final LongSupplier nanoClock;
+  // volatile since adaptive batching changes these from sending threads
+  private volatile int batchSize = 100;
+  private volatile int sendPartialBatchAfterMs = 5000;
+  private AdaptiveBatchTuner tuner;
+  private final BatchMetrics metrics = new BatchMetrics(this);
+  private ObjectName metricsName;
 
-  private final Object batchLock = new Object();
-  private final Object sendLock = new Object();
+  private static final Object SINGLE_PARTITION = "all";
+  // the longest the flush timer sleeps when no partial batch is waiting, so that a reduced delay takes effect
+  private static final long MAX_FLUSH_CHECK_MS = 1000;
+  // how long close waits for the batches still waiting or in flight to be sent
+  private static final long CLOSE_TIMEOUT_MINUTES = 30;
+  private final Map<Object, Partition> partitions = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private boolean coalescing;
 
-  private ConcurrentBiMap<Document, T> batch;
+  // Only used when more than one batch may be in flight.
+  private int maxInFlightBatches = 1;
+  private Semaphore inFlightPermits;
+  private ExecutorService inFlightSender;
+  // the completion of the most recently dispatched batch containing each document id
+  private final Map<String, CompletableFuture<Void>> inFlightIds = new ConcurrentHashMap<>();
 
-  {
-    // lock on monitor to ensure initialization "happens before" any access.
-    synchronized (batchLock) {
-      batch = new ConcurrentBiMap<>();
-    }
+  BatchProcessor() {
+    this(new ScheduledThreadPoolExecutor(1), System::nanoTime);
+  }
+
+  /**
+   * Create a processor with the given partial batch timer and clock, so that tests can control both.
+   *
+   * @param sender    runs the partial batch timer
+   * @param nanoClock supplies times in nanoseconds, as {@link System#nanoTime()} does
+   */
+  BatchProcessor(ScheduledThreadPoolExecutor sender, LongSupplier nanoClock) {
+    this.sender = sender;
+    this.nanoClock = nanoClock;
   }
 
   public Document[] processDocument(Document document) {
     T doc = convertDoc(document);
-    ConcurrentBiMap<Document, T> oldBatch = null;
-    int size;
-    synchronized (batchLock) {
-      if (this.batch.size() >= batchSize) {
-        oldBatch = takeBatch();
+    if (tuner != null) {
+      tuner.documentsArrived(1);
+    }
+    int position = add(partition(document, doc), document, doc);
+    scheduleFlush();
+
+    log.info(Status.BATCHED.getMarker(), "{} queued in postition {} for sending to solr. " +
+        "Will be sent within {} milliseconds.", document.getId(), position, sendPartialBatchAfterMs);
+
+    return new Document[0];
+  }
+
+  /**
+   * Add each of the documents to its batch, logging its status as soon as it has been added. Adding a later
+   * document may send a full batch before this returns, so logging afterwards could record a document as batched
+   * after it was sent.
+   *
+   * @param documents the documents to add
+   * @return always empty, documents are sent on by this processor
+   */
+  @Override
+  public Document[] processBatch(List<Document> documents) {
+    if (tuner != null) {
+      tuner.documentsArrived(documents.size());
+    }
+    try {
+      for (Document document : documents) {
+        T doc = convertDoc(document);
+        int position = add(partition(document, doc), document, doc);
+        scheduleFlush();
+        // each status event must be recorded against its own document
+        putIdInThreadContext(document);
+        log.info(Status.BATCHED.getMarker(), "{} queued in postition {} for sending to solr. " +
+            "Will be sent within {} milliseconds.", document.getId(), position, sendPartialBatchAfterMs);
+      }
+    } finally {
+      ThreadContext.remove(JesterJAppender.JJ_INGEST_DOCID);
+      ThreadContext.remove(JesterJAppender.JJ_INGEST_SOURCE_SCANNER);
+    }
+    return new Document[0];
+  }
+
+  /**
+   * Add a document to the partition's batch. Threads adding to a batch with room only share a read lock and
+   * reserve their position with an atomic increment. The thread that finds the batch full takes the write lock,
+   * replaces the batch, adds its document to the new one and then sends the full batch.
+   *
+   * @return the position of the document in its batch
+   */
+  private int add(Partition partition, Document document, T doc) {
+    int limit = batchSize;
+    int position;
+    Document superseded = null;
+    Lock shared = partition.lock.readLock();
+    shared.lock();
+    try {
+      // before reserving, so that the flush timer never sees a reservation without its time
+      partition.lastAddNanos = nanoClock.getAsLong();
+      position = partition.reserved.getAndIncrement();
+      if (position < limit) {
+        superseded = put(partition, document, doc);
+        if (superseded != null) {
+          // no room was taken after all
+          partition.reserved.decrementAndGet();
+        }
       }
-      size = this.batch.size();
-      this.batch.put(document, doc);
+    } finally {
+      shared.unlock();
     }
-    if (oldBatch != null) {
-      sendBatch(oldBatch);
+    if (position < limit) {
+      reportSuperseded(superseded, document);
+      return position;
     }
-    if (scheduledSend != null) {
-      scheduledSend.cancel(false);
+    ConcurrentBiMap<Document, T> full = null;
+    Lock exclusive = partition.lock.writeLock();
+    exclusive.lock();
+    try {
+      // another thread may have replaced the batch while we waited
+      if (partition.reserved.get() >= batchSize) {
+        full = swap(partition);
+      }
+      partition.lastAddNanos = nanoClock.getAsLong();
+      position = partition.reserved.getAndIncrement();
+      superseded = put(partition, document, doc);
+      if (superseded != null) {
+        partition.reserved.decrementAndGet();
+      }
+    } finally {
+      exclusive.unlock();
+    }
+    reportSuperseded(superseded, document);
+    if (full != null) {
+      sendBatch(partition, full);
     }
-    scheduledSend = sender.schedule(() -> sendBatch(takeBatch()), sendPartialBatchAfterMs, TimeUnit.MILLISECONDS);
+    return position;
+  }
 
-    log.info(Status.BATCHED.getMarker(), "{} queued in postition {} for sending to solr. " +
-        "Will be sent within {} milliseconds.", document.getId(), size, sendPartialBatchAfterMs);
+  /**
+   * Put the document in the partition's batch, replacing any earlier document with the same id when coalescing.
+   * Must hold one of the partition's locks.
+   *
+   * @return the document replaced, if any
+   */
+  private Document put(Partition partition, Document document, T doc) {
+    Map<String, Document> byId = partition.byId;
+    if (byId == null) {
+      partition.batch.put(document, doc);
+      return null;
+    }
+    Document[] replaced = new Document[1];
+    // atomic for the id, so concurrent versions of the same document can't both remain in the batch
+    byId.compute(document.getId(), (id, earlier) -> {
+      if (earlier != null) {
+        partition.batch.remove(earlier);
+        replaced[0] = earlier;
+      }
+      partition.batch.put(document, doc);
+      return document;
+    });
+    return replaced[0];
+  }
 
-    return new Document[0];
+  private void reportSuperseded(Document superseded, Document replacement) {
+    if (superseded == null) {
+      return;
+    }
+    putIdInThreadContext(superseded);
+    log.info(Status.SUPERSEDED.getMarker(), "{} replaced in its batch by a later {} before being sent",
+        superseded.getId(), replacement.getOperation());
+    putIdInThreadContext(replacement);
+  }
+
+  /**
+   * The partition in which a document should be batched. Each partition has its own batch, is flushed when
+   * it has been idle for the partial batch delay, and in the absence of concurrent sends has its own send lock,
+   * so documents in one partition never wait for documents in another to fill a batch or be sent. Subclasses
+   * may partition documents by the server that will receive them. Partitions are never removed, so the number
+   * of distinct keys returned should be small.
+   *
+   * @param document  the document being batched
+   * @param converted the document converted for sending
+   * @return a key identifying the partition, equal keys identify the same partition. All documents share a
+   *     single partition by default.
+   */
+  protected Object partitionFor(Document document, T converted) {
+    return SINGLE_PARTITION;
+  }
+
+  private Partition partition(Document document, T converted) {
+    Object key = partitionFor(document, converted);
+    Partition partition = partitions.get(key);
+    // computeIfAbsent locks even when the key is present
+    return partition != null ? partition : partitions.computeIfAbsent(key, (k) -> new Partition());
+  }
+
+  /**
+   * Make sure the flush timer is running. The timer runs only while partial batches are waiting, so adding a
+   * document usually costs a single volatile read here.
+   */
+  private void scheduleFlush() {
+    if (!flushScheduled.get() && flushScheduled.compareAndSet(false, true)) {
+      sender.schedule(this::flushIdlePartitions, sendPartialBatchAfterMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send the batch of every partition that has not received a document for the partial batch delay, as if each
+   * document had restarted a timer for its partition. Reschedules itself for the next time a partition could
+   * become due, and stops when no documents are waiting.
+   */
+  private void flushIdlePartitions() {
+    long nextCheckMs = Math.min(sendPartialBatchAfterMs, MAX_FLUSH_CHECK_MS);
+    boolean waiting = false;
+    try {
+      long delayNanos = TimeUnit.MILLISECONDS.toNanos(sendPartialBatchAfterMs);
+      for (Partition partition : partitions.values()) {
+        if (partition.reserved.get() == 0) {
+          continue;
+        }
+        long idleNanos = nanoClock.getAsLong() - partition.lastAddNanos;
+        if (idleNanos >= delayNanos) {
+          sendBatch(partition, takeBatch(partition));
+        } else {
+          waiting = true;
+          nextCheckMs = Math.min(nextCheckMs, TimeUnit.NANOSECONDS.toMillis(delayNanos - idleNanos) + 1);
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error("Unexpected error sending partial batches", e);
+      waiting = true;
+    }
+    if (!waiting) {
+      flushScheduled.set(false);
+      // a document added after we looked at its partition, but before the flag was cleared, saw the timer running
+      for (Partition partition : partitions.values()) {
+        waiting |= partition.reserved.get() > 0;
+      }
+      if (!waiting || !flushScheduled.compareAndSet(false, true)) {
+        return;
+      }
+    }
+    sender.schedule(this::flushIdlePartitions, nextCheckMs, TimeUnit.MILLISECONDS);
+  }
+
+  private ConcurrentBiMap<Document, T> takeBatch(Partition partition) {
+    Lock exclusive = partition.lock.writeLock();
+    exclusive.lock();
+    try {
+      return swap(partition);
+    } finally {
+      exclusive.unlock();
+    }
   }
 
-  private ConcurrentBiMap<Document, T> takeBatch() {
-    synchronized (batchLock) {
-      ConcurrentBiMap<Document, T> oldBatch = this.batch;
-      this.batch = new ConcurrentBiMap<>();
-      log.info("took batch {} with size {}",oldBatch.toString(), oldBatch.size());
-      return oldBatch;
+  // must hold the partition's write lock
+  private ConcurrentBiMap<Document, T> swap(Partition partition) {
+    ConcurrentBiMap<Document, T> oldBatch = partition.batch;
+    partition.batch = new ConcurrentBiMap<>();
+    if (partition.byId != null) {
+      partition.byId = new ConcurrentHashMap<>();
     }
+    partition.reserved.set(0);
+    log.info("took batch {} with size {}",oldBatch.toString(), oldBatch.size());
+    return oldBatch;
   }
 
-  private void sendBatch(ConcurrentBiMap<Document, T> oldBatch) {
+  private void sendBatch(Partition partition, ConcurrentBiMap<Document, T> oldBatch) {
+    if (maxInFlightBatches > 1) {
+      sendPipelined(oldBatch);
+      return;
+    }
     // there's a small window where the same BiMap could be grabbed by a timer and a full batch causing a double
     // send. Thus we have a lock to ensure that the oldBatch.clear() in the finally is called
     // before the second thread tries to send the same batch. We tolerate this because it means batches can fill up
     // while sending is in progress.
-    synchronized (sendLock) {
+    partition.sendLock.lock();
+    try {
       if (oldBatch.size() == 0) {
         return;
       }
+      send(oldBatch);
+    } finally {
+      partition.sendLock.unlock();
+    }
+  }
+
+  /**
+   * Hand the batch to a sending thread and return without waiting for the response, so that the calling step
+   * can go on filling the next batch. Blocks while the maximum number of batches are already in flight, which
+   * bounds the memory held by batches awaiting a response. A batch that contains the id of a document in an
+   * earlier batch still in flight is not sent until that batch completes, so updates and deletes for any one
+   * document reach the destination in the order they were received.
+   *
+   * @param oldBatch a batch that has been detached from this processor
+   */
+  private void sendPipelined(ConcurrentBiMap<Document, T> oldBatch) {
+    if (oldBatch.size() == 0) {
+      return;
+    }
+    inFlightPermits.acquireUninterruptibly();
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    List<CompletableFuture<Void>> earlier = new ArrayList<>();
+    // batches are dispatched one at a time so that the order of batches sharing an id is the order taken
+    synchronized (inFlightIds) {
+      for (Document document : oldBatch.keySet()) {
+        CompletableFuture<Void> previous = inFlightIds.put(document.getId(), done);
+        if (previous != null && previous != done) {
+          earlier.add(previous);
+        }
+      }
+    }
+    CompletableFuture.allOf(earlier.toArray(new CompletableFuture<?>[0])).thenRunAsync(() -> {
+      try {
+        send(oldBatch);
+      } catch (RuntimeException e) {
+        log.error("Unexpected error sending batch", e);
+      } finally {
+        for (Document document : oldBatch.keySet()) {
+          inFlightIds.remove(document.getId(), done);
+        }
+        oldBatch.clear();
+        inFlightPermits.release();
+        done.complete(null);
+      }
+    }, inFlightSender);
+  }
+
+  private void send(ConcurrentBiMap<Document, T> oldBatch) {
+    registerMetrics();
+    int documents = oldBatch.size();
+    long bytes = 0;
+    for (Document document : oldBatch.keySet()) {
+      bytes += estimateBytes(document);
+    }
+    boolean failed = false;
+    long nanos;
+    long start = nanoClock.getAsLong();
+    try {
+      Exception failure = null;
       try {
         batchOperation(oldBatch);
       } catch (Exception e) {
+        failure = e;
+      }
+      // the time of the batch operation, not the fallback, is what tells us how the destination copes
+      nanos = nanoClock.getAsLong() - start;
+      if (failure != null) {
         // we may have a single bad document...
         //noinspection ConstantConditions
-        if (exceptionIndicatesDocumentIssue(e)) {
-          individualFallbackOperation(oldBatch, e);
+        if (exceptionIndicatesDocumentIssue(failure)) {
+          individualFallbackOperation(oldBatch, failure);
         } else {
-          perDocumentFailure(oldBatch, e);
+          // only a failure unrelated to the documents says the destination is struggling
+          failed = true;
+          perDocumentFailure(oldBatch, failure);
         }
-      } finally {
-        ThreadContext.remove(JesterJAppender.JJ_INGEST_DOCID);
-        ThreadContext.remove(JesterJAppender.JJ_INGEST_SOURCE_SCANNER);
-        oldBatch.clear();
       }
+    } finally {
+      ThreadContext.remove(JesterJAppender.JJ_INGEST_DOCID);
+      ThreadContext.remove(JesterJAppender.JJ_INGEST_SOURCE_SCANNER);
+      oldBatch.clear();
+    }
+    metrics.batchSent(documents, bytes, nanos, failed);
+    if (tuner != null) {
+      tuner.batchCompleted(documents, bytes, nanos, failed);
+      batchSize = tuner.getBatchSize();
+      sendPartialBatchAfterMs = tuner.getDelayMs();
+    }
+  }
+
+  /**
+   * The approximate number of bytes a document will add to a request, used to limit the size of adaptive
+   * batches. Counts the raw data and the characters of every field name and value.
+   *
+   * @param document the document to be sent
+   * @return the estimated size of the document
+   */
+  protected long estimateBytes(Document document) {
+    long bytes = document.getRawData() == null ? 0 : document.getRawData().length;
+    for (String field : document.keySet()) {
+      for (String value : document.get(field)) {
+        bytes += field.length() + (value == null ? 0 : value.length());
+      }
+    }
+    return bytes;
+  }
+
+  private void registerMetrics() {
+    if (metricsName != null || getName() == null) {
+      return;
+    }
+    synchronized (metrics) {
+      if (metricsName != null) {
+        return;
+      }
+      try {
+        ObjectName name = new ObjectName("org.jesterj:type=BatchProcessor,name=" + ObjectName.quote(getName()));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        metricsName = name;
+      } catch (JMException e) {
+        log.warn("Could not register batch metrics for " + getName(), e);
+        // don't try again for every batch
+        metricsName = ObjectName.WILDCARD;
+      }
+    }
+  }
+
+  /**
+   * Stop the flush timer, send any partial batches and wait for the batches in flight to complete before
+   * releasing the sending threads.
+   */
+  @Override
+  public void close() {
+    // a flush already running may finish, but no further flushes are scheduled
+    sender.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    sender.shutdown();
+    try {
+      if (!sender.awaitTermination(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+        log.error("Gave up waiting for partial batches to be sent by {}", getName());
+      }
+      flush();
+      if (!awaitInFlight(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+        log.error("Gave up waiting for batches in flight to be sent by {}", getName());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (inFlightSender != null) {
+        inFlightSender.shutdown();
+      }
+    }
+    synchronized (metrics) {
+      if (metricsName != null && metricsName != ObjectName.WILDCARD) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+          if (server.isRegistered(metricsName)) {
+            server.unregisterMBean(metricsName);
+          }
+        } catch (JMException e) {
+          log.warn("Could not unregister batch metrics for " + getName(), e);
+        }
+      }
+      metricsName = null;
+    }
+  }
+
+  public BatchMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Send the waiting batch of every partition now, without waiting for it to fill or for the partial batch
+   * delay. Batches handed to sending threads may still be in flight when this returns, see
+   * {@link #awaitInFlight(long, TimeUnit)}.
+   */
+  protected void flush() {
+    for (Partition partition : partitions.values()) {
+      if (partition.reserved.get() > 0) {
+        sendBatch(partition, takeBatch(partition));
+      }
+    }
+  }
+
+  /**
+   * Wait until every batch handed to a sending thread has completed. Only useful when several batches may be
+   * in flight, otherwise sends complete before the processing that triggers them returns.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if nothing remains in flight
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitInFlight(long timeout, TimeUnit unit) throws InterruptedException {
+    if (maxInFlightBatches <= 1) {
+      return true;
+    }
+    if (inFlightPermits.tryAcquire(maxInFlightBatches, timeout, unit)) {
+      inFlightPermits.release(maxInFlightBatches);
+      return true;
     }
+    return false;
   }
 
   protected void perDocumentFailure(ConcurrentBiMap<Document, ?> oldBatch, Exception e) {
@@ -147,15 +570,155 @@ abstract class BatchProcessor<T> implements DocumentProcessor {
     return batchSize;
   }
 
+  protected int getPartialBatchDelayMs() {
+    return sendPartialBatchAfterMs;
+  }
+
+  double getErrorRate() {
+    return tuner == null ? 0 : tuner.getErrorRate();
+  }
+
+  // keep the starting point of adaptive batching in step with the configured values
+  private void syncTuner() {
+    if (tuner != null) {
+      tuner.startFrom(batchSize, sendPartialBatchAfterMs);
+      batchSize = tuner.getBatchSize();
+      sendPartialBatchAfterMs = tuner.getDelayMs();
+    }
+  }
+
+  private AdaptiveBatchTuner tuner() {
+    if (tuner == null) {
+      tuner = new AdaptiveBatchTuner(batchSize, sendPartialBatchAfterMs, nanoClock);
+    }
+    return tuner;
+  }
+
+  protected int getMaxInFlightBatches() {
+    return maxInFlightBatches;
+  }
+
+  private void setMaxInFlightBatches(int batches) {
+    if (batches < 1) {
+      throw new IllegalArgumentException("At least one batch must be allowed in flight, got " + batches);
+    }
+    if (inFlightSender != null) {
+      inFlightSender.shutdown();
+      inFlightSender = null;
+    }
+    maxInFlightBatches = batches;
+    if (batches > 1) {
+      inFlightPermits = new Semaphore(batches);
+      inFlightSender = Executors.newFixedThreadPool(batches);
+    }
+  }
+
+  private class Partition {
+    // the read lock is held while adding to the batch, the write lock while replacing it
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile ConcurrentBiMap<Document, T> batch = new ConcurrentBiMap<>();
+    // positions claimed in the current batch, may exceed the batch size while a full batch is being replaced
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile long lastAddNanos;
+    // the documents in the batch by id, only when coalescing
+    private volatile Map<String, Document> byId = coalescing ? new ConcurrentHashMap<>() : null;
+    // not a monitor, since a thread holding a monitor while blocked on the network pins a virtual thread's carrier
+    private final ReentrantLock sendLock = new ReentrantLock();
+  }
+
   public static abstract class Builder extends NamedBuilder<BatchProcessor> {
 
     public Builder sendingBatchesOf(int batchSize) {
       getObj().batchSize = batchSize;
+      getObj().syncTuner();
       return this;
     }
 
     public Builder sendingPartialBatchesAfterMs(int ms) {
       getObj().sendPartialBatchAfterMs = ms;
+      getObj().syncTuner();
+      return this;
+    }
+
+    /**
+     * Keep only the latest version of each document in a batch. When a document arrives with the same id as one
+     * already waiting in its batch, the earlier version is removed and reported as
+     * {@link Status#SUPERSEDED}, so an update followed by a delete sends just the delete, and several updates send
+     * only the last. Documents already handed off for sending are not affected.
+     *
+     * @return this builder for further configuration
+     */
+    public Builder coalescingById() {
+      getObj().coalescing = true;
+      return this;
+    }
+
+    /**
+     * Adjust the batch size after every batch, within the given bounds, according to how long batches take to
+     * send, how often they fail and how large they are. The size set with {@link #sendingBatchesOf(int)} is
+     * the starting point.
+     *
+     * @param min the smallest batch size to use
+     * @param max the largest batch size to use
+     * @return this builder for further configuration
+     */
+    public Builder adaptingBatchSize(int min, int max) {
+      getObj().tuner().setBatchSizeBounds(min, max);
+      getObj().syncTuner();
+      return this;
+    }
+
+    /**
+     * Adjust the time after which a partial batch is sent, within the given bounds, to the time a batch takes to
+     * fill at the recent rate of arrival. When documents arrive too slowly for a batch to fill within the
+     * maximum, partial batches are sent after the minimum so that they are not delayed for nothing. The delay
+     * set with {@link #sendingPartialBatchesAfterMs(int)} is the starting point.
+     *
+     * @param minMs the shortest delay to use
+     * @param maxMs the longest delay to use
+     * @return this builder for further configuration
+     */
+    public Builder adaptingPartialBatchDelayMs(int minMs, int maxMs) {
+      getObj().tuner().setDelayBounds(minMs, maxMs);
+      getObj().syncTuner();
+      return this;
+    }
+
+    /**
+     * The time within which adaptive batching tries to complete each batch. Batches that take longer shrink,
+     * full batches that take less than half of this grow. Defaults to 1000 ms.
+     *
+     * @param ms the target time to send a batch
+     * @return this builder for further configuration
+     */
+    public Builder targetingSendLatencyMs(int ms) {
+      getObj().tuner().setTargetLatencyMs(ms);
+      return this;
+    }
+
+    /**
+     * The approximate size that adaptive batches may not exceed, estimated by
+     * {@link BatchProcessor#estimateBytes(Document)}. Defaults to 16 MB.
+     *
+     * @param bytes the maximum size of a batch
+     * @return this builder for further configuration
+     */
+    public Builder limitingBatchBytes(long bytes) {
+      getObj().tuner().setMaxBatchBytes(bytes);
+      return this;
+    }
+
+    /**
+     * Allow up to the given number of batches to be sent concurrently. Full batches are then handed to sending
+     * threads rather than sent by the step's thread, which only waits when all of them are busy. Batches holding
+     * the same document id are still sent one after the other. Defaults to 1, which sends each batch on the
+     * thread that filled it (or the partial batch timer) and waits for the response.
+     *
+     * @param batches the maximum number of batches awaiting a response at any time
+     * @return this builder for further configuration
+     */
+    public Builder sendingBatchesConcurrently(int batches) {
+      getObj().setMaxInFlightBatches(batches);
       return this;
     }
 
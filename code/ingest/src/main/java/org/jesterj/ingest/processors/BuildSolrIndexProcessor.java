@@ -0,0 +1,411 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.processors;
+
+import org.apache.cassandra.utils.ConcurrentBiMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.CompositeIdRouter;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.NodeConfig;
+import org.apache.solr.core.SolrResourceLoader;
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.DocumentProcessor;
+import org.jesterj.ingest.model.Status;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Writes documents directly into Solr indexes on the local disk, one per shard, rather than sending them to a
+ * running Solr. Intended for initial loads too large to send over HTTP in reasonable time. Each shard's index is
+ * written by an embedded Solr core using the collection's config set, so documents are analyzed exactly as
+ * Solr would analyze them, and shards are written in parallel by separate sending threads.
+ * <p>
+ * Documents are assigned to shards by the compositeId router, with the hash ranges Solr gives a collection
+ * created with the same number of shards. When the processor is closed the indexes are committed (and optionally
+ * merged) and the index for shard N is left in <code>&lt;output directory&gt;/shardN/data/index</code>, ready
+ * to be installed in place of the index of that shard's replicas. If the output directory already holds indexes
+ * written by an earlier run documents are added to them, so an interrupted load may be resumed.
+ */
+public class BuildSolrIndexProcessor extends BatchProcessor<SolrInputDocument> implements DocumentProcessor {
+  private static final Logger log = LogManager.getLogger();
+  private static final long CLOSE_TIMEOUT_MINUTES = 30;
+
+  private final CompositeIdRouter router = new CompositeIdRouter();
+  private Path configSet;
+  private Path outputDir;
+  private int shards = 1;
+  private int maxSegments;
+  private String textContentField = "content";
+  private String fieldsField;
+  private String name;
+
+  // in shard order, shard N covers the Nth hash range
+  private List<DocRouter.Range> ranges;
+  private Map<String, EmbeddedSolrServer> cores;
+  private CoreContainer container;
+
+  protected BuildSolrIndexProcessor() {
+  }
+
+  @Override
+  protected void perDocFailLogging(Exception e, Document doc) {
+    log.info(Status.ERROR.getMarker(), "{} could not be written to the local index because of {}",
+        doc.getId(), e.getMessage());
+    log.error("Error writing to the local index!", e);
+  }
+
+  @Override
+  public boolean hasExternalSideEffects() {
+    return true;
+  }
+
+  @Override
+  protected Object partitionFor(Document document, SolrInputDocument converted) {
+    return shardFor(document.getId(), converted);
+  }
+
+  String shardFor(String id, SolrInputDocument converted) {
+    int hash = router.sliceHash(id, converted, null, null);
+    for (int i = 0; i < ranges.size(); i++) {
+      if (ranges.get(i).includes(hash)) {
+        return shardName(i);
+      }
+    }
+    // the ranges cover every hash
+    throw new IllegalStateException("No shard for hash " + hash);
+  }
+
+  private static String shardName(int index) {
+    return "shard" + (index + 1);
+  }
+
+  /**
+   * Retry the documents of a failed batch one at a time, so that only the documents Solr rejects fail.
+   *
+   * @param oldBatch The batch for which to handle failures.
+   * @param e        the exception reported with the failure
+   */
+  @Override
+  protected void individualFallbackOperation(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, Exception e) {
+    for (Document document : oldBatch.keySet()) {
+      try {
+        write(oldBatch, Collections.singletonList(document));
+      } catch (Exception ex) {
+        putIdInThreadContext(document);
+        perDocFailLogging(ex, document);
+      }
+    }
+  }
+
+  @Override
+  protected void batchOperation(ConcurrentBiMap<Document, SolrInputDocument> oldBatch)
+      throws SolrServerException, IOException {
+    write(oldBatch, oldBatch.keySet());
+  }
+
+  private void write(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, Collection<Document> toWrite)
+      throws SolrServerException, IOException {
+    if (toWrite.isEmpty()) {
+      return;
+    }
+    // batches are partitioned by shard, so every document in the batch belongs to the same one
+    Document first = toWrite.iterator().next();
+    String shard = shardFor(first.getId(), oldBatch.get(first));
+    EmbeddedSolrServer core = cores.get(shard);
+    List<String> deletes = toWrite.stream()
+        .filter(doc -> doc.getOperation() == Document.Operation.DELETE)
+        .map(Document::getId)
+        .collect(Collectors.toList());
+    if (deletes.size() > 0) {
+      core.deleteById(deletes);
+    }
+    List<SolrInputDocument> adds = toWrite.stream()
+        .filter(doc -> doc.getOperation() != Document.Operation.DELETE)
+        .map(oldBatch::get)
+        .collect(Collectors.toList());
+    if (adds.size() > 0) {
+      core.add(adds);
+    }
+    for (Document document : toWrite) {
+      putIdInThreadContext(document);
+      if (document.getOperation() == Document.Operation.DELETE) {
+        log.info(Status.INDEXED.getMarker(), "{} deleted from the local index for {}", document.getId(), shard);
+      } else {
+        log.info(Status.INDEXED.getMarker(), "{} written to the local index for {}", document.getId(), shard);
+      }
+    }
+  }
+
+  @Override
+  protected boolean exceptionIndicatesDocumentIssue(Exception e) {
+    return e instanceof SolrException && ((SolrException) e).code() == SolrException.ErrorCode.BAD_REQUEST.code;
+  }
+
+  @Override
+  protected SolrInputDocument convertDoc(Document document) {
+    SolrInputDocument doc = new SolrInputDocument();
+    for (String field : document.keySet()) {
+      List<String> values = document.get(field);
+      if (values.size() > 1) {
+        doc.addField(field, values);
+      } else {
+        doc.addField(field, document.getFirstValue(field));
+      }
+      if (fieldsField != null) {
+        doc.addField(fieldsField, field);
+      }
+    }
+    // Note that raw data should be empty or have been converted to the bytes of a utf-8 string.
+    if (document.getRawData() != null && document.getRawData().length > 0) {
+      doc.addField(textContentField, new String(document.getRawData(), StandardCharsets.UTF_8));
+    }
+    return doc;
+  }
+
+  /**
+   * The directory holding each shard's index, in <code>data/index</code> beneath it.
+   *
+   * @param shard the number of the shard, starting from 1
+   * @return the directory for the shard
+   */
+  public Path getShardDirectory(int shard) {
+    return outputDir.resolve(shardName(shard - 1));
+  }
+
+  private void open() {
+    try {
+      Files.createDirectories(outputDir);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create " + outputDir, e);
+    }
+    NodeConfig config = new NodeConfig.NodeConfigBuilder(getName(), new SolrResourceLoader(outputDir))
+        .setConfigSetBaseDirectory(configSet.getParent().toString())
+        .build();
+    container = new CoreContainer(config, new Properties(), false);
+    container.load();
+    ranges = router.partitionRange(shards, router.fullRange());
+    cores = new LinkedHashMap<>();
+    for (int i = 0; i < shards; i++) {
+      String shard = shardName(i);
+      // indexes left by an earlier run are discovered by load()
+      if (container.getCoreDescriptor(shard) == null) {
+        Map<String, String> params = new HashMap<>();
+        params.put("configSet", configSet.getFileName().toString());
+        container.create(shard, outputDir.resolve(shard), params, false);
+      }
+      cores.put(shard, new EmbeddedSolrServer(container, shard));
+      log.info("Writing documents in hash range {} to {}", ranges.get(i), getShardDirectory(i + 1));
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Write any waiting documents, commit every shard's index, merge it if requested and release the indexes.
+   */
+  @Override
+  public void close() {
+    flush();
+    try {
+      if (!awaitInFlight(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+        log.error("Gave up waiting for documents to be written to the local indexes, indexes may be incomplete");
+      }
+      for (Map.Entry<String, EmbeddedSolrServer> core : cores.entrySet()) {
+        core.getValue().commit();
+        if (maxSegments > 0) {
+          core.getValue().optimize(true, true, maxSegments);
+        }
+        log.info("Committed the local index for {}", core.getKey());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (SolrServerException | IOException e) {
+      log.error("Could not commit the local indexes in " + outputDir, e);
+    } finally {
+      super.close();
+      container.shutdown();
+    }
+  }
+
+  public static class Builder extends BatchProcessor.Builder {
+
+    BuildSolrIndexProcessor obj = new BuildSolrIndexProcessor();
+    boolean concurrencySet;
+
+    public Builder sendingBatchesOf(int batchSize) {
+      super.sendingBatchesOf(batchSize);
+      return this;
+    }
+
+    public Builder sendingPartialBatchesAfterMs(int ms) {
+      super.sendingPartialBatchesAfterMs(ms);
+      return this;
+    }
+
+    /**
+     * Limit the number of batches written at once. Defaults to the number of shards or the number of
+     * processors, whichever is smaller.
+     *
+     * @param batches the maximum number of batches being written at any time
+     * @return This builder for further configuration
+     */
+    public Builder sendingBatchesConcurrently(int batches) {
+      super.sendingBatchesConcurrently(batches);
+      concurrencySet = true;
+      return this;
+    }
+
+    public Builder coalescingById() {
+      super.coalescingById();
+      return this;
+    }
+
+    public Builder adaptingBatchSize(int min, int max) {
+      super.adaptingBatchSize(min, max);
+      return this;
+    }
+
+    public Builder adaptingPartialBatchDelayMs(int minMs, int maxMs) {
+      super.adaptingPartialBatchDelayMs(minMs, maxMs);
+      return this;
+    }
+
+    public Builder targetingSendLatencyMs(int ms) {
+      super.targetingSendLatencyMs(ms);
+      return this;
+    }
+
+    public Builder limitingBatchBytes(long bytes) {
+      super.limitingBatchBytes(bytes);
+      return this;
+    }
+
+    /**
+     * The config set of the collection the indexes are intended for, a directory containing a conf directory
+     * with the solrconfig.xml and schema. An update log configured there is written too, so config sets used
+     * only for bulk loads are best without one.
+     *
+     * @param directory the config set directory
+     * @return This builder for further configuration
+     */
+    public Builder usingConfigSet(String directory) {
+      getObj().configSet = Paths.get(directory).toAbsolutePath();
+      return this;
+    }
+
+    /**
+     * The directory in which to write a directory for each shard, created if it does not exist.
+     *
+     * @param directory the output directory
+     * @return This builder for further configuration
+     */
+    public Builder writingIndexesTo(String directory) {
+      getObj().outputDir = Paths.get(directory).toAbsolutePath();
+      return this;
+    }
+
+    /**
+     * The number of shards in the target collection. Defaults to 1.
+     *
+     * @param shards the number of indexes to write
+     * @return This builder for further configuration
+     */
+    public Builder withShards(int shards) {
+      if (shards < 1) {
+        throw new IllegalArgumentException("At least one shard is required, got " + shards);
+      }
+      getObj().shards = shards;
+      return this;
+    }
+
+    /**
+     * Merge each index down to at most the given number of segments when the processor is closed. By default the
+     * indexes are left with whatever segments the merge policy produced.
+     *
+     * @param segments the maximum number of segments in each index
+     * @return This builder for further configuration
+     */
+    public Builder mergingToSegments(int segments) {
+      if (segments < 1) {
+        throw new IllegalArgumentException("At least one segment is required, got " + segments);
+      }
+      getObj().maxSegments = segments;
+      return this;
+    }
+
+    public Builder placingTextContentIn(String field) {
+      getObj().textContentField = field;
+      return this;
+    }
+
+    public Builder withDocFieldsIn(String fieldsField) {
+      getObj().fieldsField = fieldsField;
+      return this;
+    }
+
+    public Builder named(String name) {
+      getObj().name = name;
+      return this;
+    }
+
+    protected BuildSolrIndexProcessor getObj() {
+      return obj;
+    }
+
+    private void setObj(BuildSolrIndexProcessor obj) {
+      this.obj = obj;
+    }
+
+    public BuildSolrIndexProcessor build() {
+      BuildSolrIndexProcessor tmp = getObj();
+      if (tmp.configSet == null || tmp.outputDir == null) {
+        throw new IllegalStateException("A config set and an output directory are required to build indexes");
+      }
+      if (!concurrencySet) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        super.sendingBatchesConcurrently(Math.max(1, Math.min(tmp.shards, processors)));
+      }
+      setObj(new BuildSolrIndexProcessor());
+      concurrencySet = false;
+      tmp.open();
+      return tmp;
+    }
+  }
+}
@@ -59,6 +59,11 @@ public class CopyField implements DocumentProcessor {
     return retainOriginal;
   }
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return name;
@@ -58,18 +58,16 @@ public class FetchUrl implements DocumentProcessor {
       url = new URL(document.getFirstValue(linkField));
       String protocol = url.getProtocol();
       String server = url.getHost();
-      Long lastAccess = visitedSiteCache.getIfPresent(server);
+      // Reserve our access time atomically, so that many concurrent fetches of the same site (e.g. when this
+      // step runs on lightweight threads) are spaced out rather than all seeing the same last access time.
       long now = System.currentTimeMillis();
-      if (lastAccess == null) {
-        visitedSiteCache.put(server, now);
-      } else {
-        long elapsed = now - lastAccess;
-        if (elapsed < throttleMs) {
-          try {
-            Thread.sleep(throttleMs - elapsed);
-          } catch (InterruptedException e) {
-            // ignore, not really important.
-          }
+      long scheduled = visitedSiteCache.asMap().merge(server, now,
+          (lastAccess, time) -> Math.max(time, lastAccess + throttleMs));
+      if (scheduled > now) {
+        try {
+          Thread.sleep(scheduled - now);
+        } catch (InterruptedException e) {
+          // ignore, not really important.
         }
       }
       URLConnection conn = url.openConnection();
@@ -38,6 +38,11 @@ public class RegexValueReplace implements DocumentProcessor {
   private String replace;
 
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return name;
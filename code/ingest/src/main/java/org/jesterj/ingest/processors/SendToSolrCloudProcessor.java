@@ -22,8 +22,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.ClusterStateProvider;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Slice;
 import org.jesterj.ingest.model.Document;
 import org.jesterj.ingest.model.DocumentProcessor;
 import org.jesterj.ingest.model.Status;
@@ -31,6 +35,8 @@ import org.jesterj.ingest.model.Status;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -43,11 +49,17 @@ import java.util.stream.Collectors;
  */
 public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument> implements DocumentProcessor {
   private static final Logger log = LogManager.getLogger();
+  private static final long SHARD_LAYOUT_REFRESH_MS = 60_000;
 
   private String collection;
   private String textContentField = "content";
   private String fieldsField;
   private Map<String, String> params;
+  private int maxBisectionDepth = 10;
+  private boolean partitioningByShard;
+  // the collection's shard layout, refreshed periodically so that splits and migrations are eventually noticed
+  private volatile DocCollection shardLayout;
+  private volatile long shardLayoutExpires;
 
   private CloudSolrClient solrClient;
   private String name;
@@ -71,10 +83,51 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
     return true;
   }
 
+  /**
+   * Find the documents that caused a batch to fail by sending each half of the batch separately, and halving
+   * again any half that fails because of a document, so that a single bad document in a batch of n costs about
+   * 2 log2(n) requests rather than n. Once the maximum depth of bisection is reached the documents remaining
+   * in a failed part are sent one at a time.
+   *
+   * @param oldBatch The batch for which to handle failures.
+   * @param e        the exception reported with the failure
+   */
   @Override
   protected void individualFallbackOperation(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, Exception e) {
-    // TODO: send in bisected batches to avoid massive traffic down due to one doc when batches are large
-    for (Document document : oldBatch.keySet()) {
+    List<Document> documents = new ArrayList<>(oldBatch.keySet());
+    if (documents.size() == 1) {
+      logSendError(documents.get(0), e);
+    } else {
+      bisect(oldBatch, documents, 0);
+    }
+  }
+
+  private void bisect(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, List<Document> failed, int depth) {
+    if (depth >= getMaxBisectionDepth()) {
+      sendIndividually(oldBatch, failed);
+      return;
+    }
+    int middle = failed.size() / 2;
+    for (List<Document> half : Arrays.asList(failed.subList(0, middle), failed.subList(middle, failed.size()))) {
+      try {
+        sendDocuments(oldBatch, half);
+      } catch (Exception e) {
+        if (half.size() == 1) {
+          logSendError(half.get(0), e);
+        } else if (exceptionIndicatesDocumentIssue(e)) {
+          bisect(oldBatch, half, depth + 1);
+        } else {
+          for (Document document : half) {
+            putIdInThreadContext(document);
+            perDocFailLogging(e, document);
+          }
+        }
+      }
+    }
+  }
+
+  private void sendIndividually(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, List<Document> documents) {
+    for (Document document : documents) {
       putIdInThreadContext(document);
       try {
         SolrInputDocument doc = oldBatch.get(document);
@@ -86,22 +139,74 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
           log().info(Status.INDEXED.getMarker(), "{} sent to solr successfully", document.getId());
         }
       } catch (IOException | SolrServerException e1) {
-        log().info(Status.ERROR.getMarker(), "{} could not be sent to solr because of {}", document.getId(), e1.getMessage());
-        log().error("Error sending to with solr!", e1);
+        logSendError(document, e1);
+      }
+    }
+  }
+
+  private void logSendError(Document document, Exception e) {
+    putIdInThreadContext(document);
+    log().info(Status.ERROR.getMarker(), "{} could not be sent to solr because of {}", document.getId(), e.getMessage());
+    log().error("Error sending to with solr!", e);
+  }
+
+  /**
+   * When partitioning by shard, batch documents separately for each shard of the collection, as determined by
+   * the collection's router from the document's id. Documents the router can't place (e.g. deletes for a
+   * collection routed on a field other than the id) and all documents while the collection's layout is
+   * unavailable share a single partition.
+   */
+  @Override
+  protected Object partitionFor(Document document, SolrInputDocument converted) {
+    if (!isPartitioningByShard()) {
+      return super.partitionFor(document, converted);
+    }
+    try {
+      DocCollection layout = getShardLayout();
+      if (layout != null) {
+        Slice slice = layout.getRouter().getTargetSlice(document.getId(), converted, null, null, layout);
+        if (slice != null) {
+          return slice.getName();
+        }
+      }
+    } catch (RuntimeException e) {
+      log().debug("Could not determine the shard for {}: {}", document.getId(), e.getMessage());
+    }
+    return super.partitionFor(document, converted);
+  }
+
+  private DocCollection getShardLayout() {
+    long now = System.currentTimeMillis();
+    if (now > shardLayoutExpires) {
+      // not synchronized, several threads may occasionally refresh at once, which is harmless
+      shardLayoutExpires = now + SHARD_LAYOUT_REFRESH_MS;
+      ClusterStateProvider stateProvider = getSolrClient().getClusterStateProvider();
+      stateProvider.connect();
+      ClusterState.CollectionRef ref = stateProvider.getState(collection);
+      DocCollection layout = ref == null ? null : ref.get();
+      if (layout == null) {
+        log().warn("Collection {} not found, documents will not be partitioned by shard", collection);
       }
+      shardLayout = layout;
     }
+    return shardLayout;
   }
 
   @Override
   protected void batchOperation(ConcurrentBiMap<Document, SolrInputDocument> oldBatch) throws SolrServerException, IOException {
-    List<String> deletes = oldBatch.keySet().stream()
+    sendDocuments(oldBatch, oldBatch.keySet());
+  }
+
+  private void sendDocuments(ConcurrentBiMap<Document, SolrInputDocument> oldBatch, Collection<Document> toSend)
+      throws SolrServerException, IOException {
+    List<String> deletes = toSend.stream()
         .filter(doc -> doc.getOperation() == Document.Operation.DELETE)
         .map(Document::getId)
         .collect(Collectors.toList());
     if (deletes.size() > 0) {
       getSolrClient().deleteById(deletes);
     }
-    List<SolrInputDocument> adds = oldBatch.keySet().stream()
+    List<SolrInputDocument> adds = toSend.stream()
         .filter(doc -> doc.getOperation() != Document.Operation.DELETE)
         .map(oldBatch::get)
         .collect(Collectors.toList());
@@ -119,7 +224,7 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
         getSolrClient().request(req);
       }
     }
-    for (Document document : oldBatch.keySet()) {
+    for (Document document : toSend) {
       putIdInThreadContext(document);
       if (document.getOperation() == Document.Operation.DELETE) {
         log().info(Status.INDEXED.getMarker(), "{} deleted from solr successfully", document.getId());
@@ -163,6 +268,14 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
     return doc;
   }
 
+  boolean isPartitioningByShard() {
+    return partitioningByShard;
+  }
+
+  int getMaxBisectionDepth() {
+    return maxBisectionDepth;
+  }
+
   Map<String, String> getParams() {
     return params;
   }
@@ -189,6 +302,7 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
 
   @Override
   public void close() {
+    super.close();
     try {
       solrClient.close();
     } catch (IOException e) {
@@ -213,6 +327,36 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
       return this;
     }
 
+    public Builder sendingBatchesConcurrently(int batches) {
+      super.sendingBatchesConcurrently(batches);
+      return this;
+    }
+
+    public Builder coalescingById() {
+      super.coalescingById();
+      return this;
+    }
+
+    public Builder adaptingBatchSize(int min, int max) {
+      super.adaptingBatchSize(min, max);
+      return this;
+    }
+
+    public Builder adaptingPartialBatchDelayMs(int minMs, int maxMs) {
+      super.adaptingPartialBatchDelayMs(minMs, maxMs);
+      return this;
+    }
+
+    public Builder targetingSendLatencyMs(int ms) {
+      super.targetingSendLatencyMs(ms);
+      return this;
+    }
+
+    public Builder limitingBatchBytes(long bytes) {
+      super.limitingBatchBytes(bytes);
+      return this;
+    }
+
     public Builder placingTextContentIn(String field) {
       getObj().textContentField = field;
       return this;
@@ -248,6 +392,35 @@ public class SendToSolrCloudProcessor extends BatchProcessor<SolrInputDocument>
       return this;
     }
 
+    /**
+     * Limit the number of times a failed batch is halved to isolate the documents causing the failure. Parts of
+     * the batch still failing at this depth are sent one document at a time. The default of 10 isolates a single
+     * bad document in batches of up to 1024 documents, 0 sends every document of a failed batch individually.
+     *
+     * @param depth the maximum depth of bisection
+     * @return This builder for further configuration
+     */
+    public Builder bisectingFailedBatchesTo(int depth) {
+      if (depth < 0) {
+        throw new IllegalArgumentException("Bisection depth may not be negative, got " + depth);
+      }
+      getObj().maxBisectionDepth = depth;
+      return this;
+    }
+
+    /**
+     * Batch documents separately for each shard of the collection, so that each shard receives batches
+     * containing only its own documents. Each shard's batch fills and is sent independently, with the same
+     * size and partial batch delay. Combine with {@link #sendingBatchesConcurrently(int)} so that a slow shard
+     * does not delay the sending of batches bound for the others.
+     *
+     * @return This builder for further configuration
+     */
+    public Builder partitioningByShard() {
+      getObj().partitioningByShard = true;
+      return this;
+    }
+
     public Builder withDocFieldsIn(String fieldsField) {
       getObj().fieldsField = fieldsField;
       return this;
@@ -32,6 +32,11 @@ public class SetStaticValue implements DocumentProcessor {
     return new Document[]{document};
   }
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return this.name;
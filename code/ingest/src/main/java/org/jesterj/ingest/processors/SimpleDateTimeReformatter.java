@@ -79,6 +79,11 @@ public class SimpleDateTimeReformatter implements DocumentProcessor {
     return new Document[]{document};
   }
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return name;
@@ -37,6 +37,11 @@ public class SplitFieldProcessor implements DocumentProcessor {
   private boolean trim;
   private static final Logger log = LogManager.getLogger();
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return this.name;
@@ -35,6 +35,11 @@ public class UrlEncodeFieldProcessor implements DocumentProcessor {
   private String fieldToEncode;
   private String charset;
 
+  @Override
+  public boolean isCheap() {
+    return true;
+  }
+
   @Override
   public String getName() {
     return name;
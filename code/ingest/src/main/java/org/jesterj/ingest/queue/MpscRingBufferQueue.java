@@ -0,0 +1,339 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.queue;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, preallocated, lock-free queue for many producers and a single consumer. Each slot of the ring
+ * carries a sequence number that tells producers when the slot is free and the consumer when it has been
+ * published, so producers only contend on a single compare and set to claim slots, and no nodes are allocated
+ * per element. Producers may claim and publish several slots at once with {@link #offerAll(List)}, and the
+ * consumer releases slots as it drains them with {@link #drainTo(Collection, int)}.
+ * <p>
+ * Only one thread may consume at a time. Consumers on different threads must be serialized externally
+ * (e.g. by a lock) so that each sees the previous consumer's progress. The consumer parks when waiting for
+ * elements and is woken by producers; producers waiting for space back off with short parks. Iteration
+ * returns a snapshot, and removal of arbitrary elements is not supported.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class MpscRingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, SingleConsumer {
+
+  private static final int SPINS = 64;
+  private static final long MAX_PRODUCER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int capacity;
+  private final int mask;
+  private final Object[] buffer;
+  // slot i is free for the producer claiming position p when sequence == p, published for position p when
+  // sequence == p + 1, and released by the consumer by setting sequence to p + buffer length.
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+  private volatile Thread waitingConsumer;
+
+  /**
+   * Create a ring buffer.
+   *
+   * @param capacity the minimum capacity, the actual capacity will be rounded up to a power of two.
+   */
+  public MpscRingBufferQueue(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive, got " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.capacity = size;
+    this.mask = size - 1;
+    this.buffer = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  @Override
+  public boolean offer(@Nonnull E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    while (true) {
+      long position = tail.get();
+      int index = (int) (position & mask);
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          buffer[index] = e;
+          // a volatile write, so that it can't be reordered with the read of waitingConsumer in signalConsumer()
+          sequences.set(index, position + 1);
+          signalConsumer();
+          return true;
+        }
+      } else if (available < 0) {
+        return false; // full
+      }
+      // otherwise another producer claimed this position, try again
+    }
+  }
+
+  /**
+   * Claim enough slots for all of the elements with a single compare and set, and publish them in order.
+   * Either all of the elements are added or none are.
+   *
+   * @param elements the elements to add, none may be null
+   * @return true if the elements were added, false if there was not room for all of them
+   */
+  public boolean offerAll(List<? extends E> elements) {
+    int count = elements.size();
+    if (count == 0) {
+      return true;
+    }
+    if (count > capacity) {
+      return false;
+    }
+    for (E element : elements) {
+      if (element == null) {
+        throw new NullPointerException();
+      }
+    }
+    while (true) {
+      long position = tail.get();
+      // slots are released in order, so if the last slot we need is free all the ones before it are too.
+      long last = position + count - 1;
+      long available = sequences.get((int) (last & mask)) - last;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + count)) {
+          for (int i = 0; i < count; i++) {
+            buffer[(int) ((position + i) & mask)] = elements.get(i);
+          }
+          for (int i = 0; i < count - 1; i++) {
+            long p = position + i;
+            sequences.lazySet((int) (p & mask), p + 1);
+          }
+          sequences.set((int) (last & mask), last + 1);
+          signalConsumer();
+          return true;
+        }
+      } else if (available < 0) {
+        return false;
+      }
+    }
+  }
+
+  @Override
+  public void put(@Nonnull E e) throws InterruptedException {
+    long park = 0;
+    while (!offer(e)) {
+      park = backOff(park);
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long park = 0;
+    while (!offer(e)) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      park = backOff(park);
+    }
+    return true;
+  }
+
+  private long backOff(long park) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (park == 0) {
+      Thread.yield();
+      return 1000;
+    }
+    LockSupport.parkNanos(this, park);
+    return Math.min(park * 2, MAX_PRODUCER_PARK_NANOS);
+  }
+
+  private void signalConsumer() {
+    Thread waiting = waitingConsumer;
+    if (waiting != null) {
+      LockSupport.unpark(waiting);
+    }
+  }
+
+  @Override
+  public E poll() {
+    long position = head;
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null; // empty, or the next element is claimed but not yet published
+    }
+    @SuppressWarnings("unchecked")
+    E e = (E) buffer[index];
+    buffer[index] = null;
+    sequences.lazySet(index, position + buffer.length);
+    head = position + 1;
+    return e;
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e;
+    while ((e = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) == null) {
+      // spurious timeout, keep waiting
+    }
+    return e;
+  }
+
+  @Override
+  public E poll(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+    E e = poll();
+    if (e != null) {
+      return e;
+    }
+    for (int i = 0; i < SPINS; i++) {
+      if ((e = poll()) != null) {
+        return e;
+      }
+    }
+    long nanos = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + nanos;
+    Thread current = Thread.currentThread();
+    waitingConsumer = current;
+    try {
+      while ((e = poll()) == null) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        // producers unpark us after publishing, and we check again before every park.
+        LockSupport.parkNanos(this, remaining);
+      }
+      return e;
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  @Override
+  public E peek() {
+    long position = head;
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    E e = (E) buffer[index];
+    return e;
+  }
+
+  @Override
+  public int drainTo(@Nonnull Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(@Nonnull Collection<? super E> c, int maxElements) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    long position = head;
+    int count = 0;
+    while (count < maxElements) {
+      int index = (int) (position & mask);
+      if (sequences.get(index) != position + 1) {
+        break;
+      }
+      @SuppressWarnings("unchecked")
+      E e = (E) buffer[index];
+      buffer[index] = null;
+      sequences.lazySet(index, position + buffer.length);
+      c.add(e);
+      position++;
+      count++;
+    }
+    // one volatile write for the whole batch
+    head = position;
+    return count;
+  }
+
+  @Override
+  public int size() {
+    long size = tail.get() - head;
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tail.get() == head;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  @Override
+  public void clear() {
+    //noinspection StatementWithEmptyBody
+    while (poll() != null) {
+    }
+  }
+
+  /**
+   * A snapshot of the published elements at the time of the call. The iterator does not support removal.
+   *
+   * @return an iterator over a copy of the current contents
+   */
+  @Override
+  @Nonnull
+  public Iterator<E> iterator() {
+    List<E> snapshot = new ArrayList<>();
+    long end = tail.get();
+    for (long position = head; position < end; position++) {
+      int index = (int) (position & mask);
+      long sequence = sequences.get(index);
+      @SuppressWarnings("unchecked")
+      E e = (E) buffer[index];
+      // skip anything not yet published or consumed while we were looking
+      if (sequence == position + 1 && sequences.get(index) == sequence && e != null) {
+        snapshot.add(e);
+      }
+    }
+    return Collections.unmodifiableList(snapshot).iterator();
+  }
+}
@@ -119,6 +119,8 @@ public class JdbcScanner extends ScannerImpl {
             if (count == 0) {
               log.debug("{} begining processing of result set", getName());
             }
+            // don't pull row content into memory until the plan has room for it
+            awaitCredit();
             String docId = rs.getString(docIdColumnIdx);
             docId = jdbcUrl + "/" + table + "/" + docId;
             Document doc = makeDoc(rs, columnNames, docId);
@@ -123,6 +123,8 @@ public class SimpleFileScanner extends ScannerImpl implements FileScanner {
   private void makeDoc(Path file, Document.Operation operation, BasicFileAttributes attributes) {
     byte[] rawData = new byte[0];
     try {
+      // don't read the file until the plan has room for it
+      awaitCredit();
       long size = attributes.size();
       long memWaitStart = System.currentTimeMillis();
       int count = 0;
@@ -192,9 +192,14 @@ public class SimpleFileWatchScanner extends ScannerImpl implements FileScanner {
   private void makeDoc(Path file, Document.Operation operation, BasicFileAttributes attributes) {
     byte[] rawData = new byte[0];
     try {
+      // don't read the file until the plan has room for it
+      awaitCredit();
       rawData = Files.readAllBytes(file);
     } catch (IOException e) {
       log.error("Could not read bytes from file:" + file, e);
+    } catch (InterruptedException e) {
+      log.error("Document failed (not processed) due to interrupted exception", e);
+      throw new RuntimeException(e);
     }
     String id;
     try {
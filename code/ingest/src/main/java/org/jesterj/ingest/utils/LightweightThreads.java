@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates executors that start a new thread for every task, intended for work that spends most of its time
+ * waiting on I/O. Virtual threads are used when the JVM provides them (Java 21 and later). We still compile
+ * for Java 8 so they are located reflectively. On older JVMs daemon platform threads are created as needed and
+ * reused while they remain idle, which is correct but does not scale to thousands of concurrent tasks.
+ */
+public class LightweightThreads {
+  private static final Logger log = LogManager.getLogger();
+
+  /**
+   * Determine if the running JVM supports virtual threads.
+   *
+   * @return true if tasks will run on virtual threads.
+   */
+  public boolean isVirtual() {
+    return VirtualThreadSupport.OF_VIRTUAL != null;
+  }
+
+  /**
+   * Create a new executor that runs each task on its own lightweight thread. Callers are responsible for
+   * limiting the number of tasks they submit.
+   *
+   * @param namePrefix prefix for the names of threads created, a counter will be appended.
+   * @return a new executor which should be shut down when no longer needed.
+   */
+  public ExecutorService newExecutor(String namePrefix) {
+    if (isVirtual()) {
+      try {
+        Object builder = VirtualThreadSupport.OF_VIRTUAL.invoke(null);
+        builder = VirtualThreadSupport.NAME.invoke(builder, namePrefix, 0L);
+        ThreadFactory factory = (ThreadFactory) VirtualThreadSupport.FACTORY.invoke(builder);
+        return (ExecutorService) VirtualThreadSupport.PER_TASK.invoke(null, factory);
+      } catch (ReflectiveOperationException e) {
+        log.warn("Could not create virtual thread executor, falling back to platform threads", e);
+      }
+    }
+    AtomicLong count = new AtomicLong();
+    return Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, namePrefix + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // Holder so that the reflective lookup happens once, and only if needed.
+  private static class VirtualThreadSupport {
+    static final Method OF_VIRTUAL;
+    static final Method NAME;
+    static final Method FACTORY;
+    static final Method PER_TASK;
+
+    static {
+      Method ofVirtual = null;
+      Method name = null;
+      Method factory = null;
+      Method perTask = null;
+      try {
+        // use the public interface, the implementation classes are not accessible
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        name = builderClass.getMethod("name", String.class, long.class);
+        factory = builderClass.getMethod("factory");
+        perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        ofVirtual = Thread.class.getMethod("ofVirtual");
+      } catch (ReflectiveOperationException e) {
+        // not available before Java 21
+      }
+      OF_VIRTUAL = ofVirtual;
+      NAME = name;
+      FACTORY = factory;
+      PER_TASK = perTask;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import com.copyright.easiertest.Mock;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.copyright.easiertest.EasierMocks.prepareMocks;
+import static com.copyright.easiertest.EasierMocks.replay;
+import static com.copyright.easiertest.EasierMocks.reset;
+import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.expect;
+
+public class CassandraLog4JManagerTest {
+
+  @Mock private Session sessionMock;
+  @Mock private ResultSet migrationRsMock;
+  @Mock private ResultSet allRsMock;
+  @Mock private Row rowMock;
+  @Mock private PreparedStatement insertMock;
+  @Mock private BoundStatement processingMock;
+  @Mock private BoundStatement errorMock;
+
+  public CassandraLog4JManagerTest() {
+    prepareMocks(this);
+  }
+
+  @Before
+  public void setUp() {
+    reset();
+  }
+
+  @After
+  public void tearDown() {
+    verify();
+  }
+
+  @Test
+  public void testPopulateFtiStatusIndex() {
+    expect(sessionMock.execute(CassandraLog4JManager.FIND_MIGRATION, CassandraLog4JManager.FTI_STATUS_MIGRATION))
+        .andReturn(migrationRsMock);
+    expect(migrationRsMock.one()).andReturn(null);
+    expect(sessionMock.prepare(CassandraLog4JManager.INSERT_FTI_STATUS)).andReturn(insertMock);
+    expect(sessionMock.execute(EasyMock.isA(SimpleStatement.class))).andReturn(allRsMock);
+    expect(allRsMock.iterator()).andReturn(Arrays.asList(rowMock, rowMock, rowMock).iterator());
+    // docid, scanner, status
+    expect(rowMock.getString(0)).andReturn("doc1").andReturn("doc3");
+    expect(rowMock.getString(1)).andReturn("scanner").times(2);
+    expect(rowMock.getString(2)).andReturn("PROCESSING").andReturn("INDEXED").andReturn("ERROR");
+    // only documents in flight are indexed
+    expect(insertMock.bind("scanner", "PROCESSING", "doc1")).andReturn(processingMock);
+    expect(insertMock.bind("scanner", "ERROR", "doc3")).andReturn(errorMock);
+    expect(sessionMock.execute(processingMock)).andReturn(null);
+    expect(sessionMock.execute(errorMock)).andReturn(null);
+    expect(sessionMock.execute(CassandraLog4JManager.RECORD_MIGRATION, CassandraLog4JManager.FTI_STATUS_MIGRATION))
+        .andReturn(null);
+    replay();
+    CassandraLog4JManager.populateFtiStatusIndex(sessionMock);
+  }
+
+  @Test
+  public void testPopulateFtiStatusIndexOnlyOnce() {
+    expect(sessionMock.execute(CassandraLog4JManager.FIND_MIGRATION, CassandraLog4JManager.FTI_STATUS_MIGRATION))
+        .andReturn(migrationRsMock);
+    expect(migrationRsMock.one()).andReturn(rowMock);
+    replay();
+    CassandraLog4JManager.populateFtiStatusIndex(sessionMock);
+  }
+}
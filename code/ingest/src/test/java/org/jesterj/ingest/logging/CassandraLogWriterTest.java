@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.impl.ContextDataFactory;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.StringMap;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CassandraLogWriterTest {
+
+  private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+  private final List<SettableFuture<Object>> pending = Collections.synchronizedList(new ArrayList<>());
+  private final CountDownLatch gate = new CountDownLatch(1);
+  private volatile boolean completeImmediately = true;
+  private CassandraLogWriter writer;
+
+  @After
+  public void tearDown() throws Exception {
+    gate.countDown();
+    synchronized (pending) {
+      pending.forEach((f) -> f.set(null));
+    }
+    writer.stop(5, TimeUnit.SECONDS);
+  }
+
+  private CassandraLogWriter writer(int bufferSize, int maxOutstanding, CassandraLogWriter.OverflowPolicy policy) {
+    return new CassandraLogWriter("test", bufferSize, 100, maxOutstanding, policy, this::bind, this::execute);
+  }
+
+  private Statement bind(LoggedEvent e) {
+    return new SimpleStatement(e.faultTolerant ? e.docId + "/" + e.scanner + "=" + e.status : e.message);
+  }
+
+  private ListenableFuture<?> execute(Statement statement) {
+    if (statement instanceof BatchStatement) {
+      StringBuilder batch = new StringBuilder("batch:");
+      for (Statement s : ((BatchStatement) statement).getStatements()) {
+        batch.append(" ").append(s);
+      }
+      executed.add(batch.toString());
+    } else {
+      executed.add(statement.toString());
+      if ("gate".equals(statement.toString())) {
+        try {
+          assertTrue(gate.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+    SettableFuture<Object> result = SettableFuture.create();
+    if (completeImmediately) {
+      result.set(null);
+    } else {
+      pending.add(result);
+    }
+    return result;
+  }
+
+  private static LoggedEvent regular(String message) {
+    return regular(message, System.currentTimeMillis());
+  }
+
+  private static LoggedEvent regular(String message, long millis) {
+    return new LoggedEvent(Log4jLogEvent.newBuilder()
+        .setLoggerName("test")
+        .setLevel(Level.INFO)
+        .setTimeMillis(millis)
+        .setMessage(new SimpleMessage(message))
+        .build());
+  }
+
+  private static LoggedEvent fti(String docId, String scanner, Marker status) {
+    StringMap context = ContextDataFactory.createContextData();
+    context.putValue(JesterJAppender.JJ_INGEST_DOCID, docId);
+    context.putValue(JesterJAppender.JJ_INGEST_SOURCE_SCANNER, scanner);
+    return new LoggedEvent(Log4jLogEvent.newBuilder()
+        .setLoggerName("test")
+        .setLevel(Level.INFO)
+        .setMarker(status)
+        .setContextData(context)
+        .setMessage(new SimpleMessage(docId))
+        .build());
+  }
+
+  private static boolean waitFor(List<?> list, int size) throws InterruptedException {
+    for (int i = 0; i < 500 && list.size() < size; i++) {
+      Thread.sleep(10);
+    }
+    return list.size() >= size;
+  }
+
+  @Test
+  public void testEventsForOneDocumentCoalescedAndBatched() throws Exception {
+    writer = writer(64, 8, CassandraLogWriter.OverflowPolicy.BLOCK);
+    writer.enqueue(regular("gate"));
+    assertTrue(waitFor(executed, 1));
+    // these wait in the buffer until the gate opens, and are then taken together
+    writer.enqueue(fti("a", "s1", Markers.SET_PROCESSING));
+    writer.enqueue(regular("hello"));
+    writer.enqueue(fti("a", "s2", Markers.SET_PROCESSING));
+    writer.enqueue(fti("b", "s1", Markers.SET_PROCESSING));
+    writer.enqueue(fti("a", "s1", Markers.SET_INDEXED));
+    gate.countDown();
+    assertTrue(writer.stop(5, TimeUnit.SECONDS));
+
+    assertEquals(4, executed.size());
+    assertEquals("gate", executed.get(0));
+    assertEquals("hello", executed.get(1));
+    assertEquals("batch: a/s1=INDEXED a/s2=PROCESSING", executed.get(2));
+    assertEquals("b/s1=PROCESSING", executed.get(3));
+    CassandraLogMetrics metrics = writer.getMetrics();
+    assertEquals(6, metrics.getEventsQueued());
+    assertEquals(1, metrics.getEventsCoalesced());
+    assertEquals(5, metrics.getEventsWritten());
+    assertEquals(0, metrics.getEventsFailed());
+  }
+
+  @Test
+  public void testRegularEventsBatchedByHour() throws Exception {
+    writer = writer(64, 8, CassandraLogWriter.OverflowPolicy.BLOCK);
+    writer.enqueue(regular("gate"));
+    assertTrue(waitFor(executed, 1));
+    long hour = RegularLogTable.hourOf(System.currentTimeMillis());
+    writer.enqueue(regular("one", hour + 10));
+    writer.enqueue(regular("next", hour + RegularLogTable.HOUR_MILLIS));
+    writer.enqueue(regular("two", hour + RegularLogTable.HOUR_MILLIS - 1));
+    writer.enqueue(fti("a", "s1", Markers.SET_INDEXED));
+    gate.countDown();
+    assertTrue(writer.stop(5, TimeUnit.SECONDS));
+
+    assertEquals(4, executed.size());
+    assertEquals("batch: one two", executed.get(1));
+    assertEquals("next", executed.get(2));
+    assertEquals("a/s1=INDEXED", executed.get(3));
+    assertEquals(5, writer.getMetrics().getEventsWritten());
+  }
+
+  @Test
+  public void testOutstandingWritesLimited() throws Exception {
+    completeImmediately = false;
+    writer = writer(64, 2, CassandraLogWriter.OverflowPolicy.BLOCK);
+    // a partition each, so that they can't be batched together
+    long hour = RegularLogTable.hourOf(System.currentTimeMillis());
+    writer.enqueue(regular("one", hour));
+    writer.enqueue(regular("two", hour + RegularLogTable.HOUR_MILLIS));
+    writer.enqueue(regular("three", hour + 2 * RegularLogTable.HOUR_MILLIS));
+    assertTrue(waitFor(executed, 2));
+    Thread.sleep(100);
+    assertEquals(2, executed.size());
+    assertEquals(2, writer.getMetrics().getOutstandingWrites());
+    pending.get(0).setException(new IllegalStateException("write timeout"));
+    assertTrue(waitFor(executed, 3));
+    assertEquals(1, writer.getMetrics().getEventsFailed());
+    assertFalse(writer.stop(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testDropRegularWhenFull() throws Exception {
+    writer = writer(2, 8, CassandraLogWriter.OverflowPolicy.DROP_REGULAR);
+    writer.enqueue(regular("gate"));
+    assertTrue(waitFor(executed, 1));
+    assertTrue(writer.enqueue(regular("one")));
+    assertTrue(writer.enqueue(regular("two")));
+    assertFalse(writer.enqueue(regular("three")));
+    assertEquals(1, writer.getMetrics().getEventsDropped());
+    // fault tolerance events wait for space instead
+    Thread opener = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException ignored) {
+      }
+      gate.countDown();
+    });
+    opener.start();
+    assertTrue(writer.enqueue(fti("a", "s1", Markers.SET_INDEXED)));
+    assertEquals(1, writer.getMetrics().getAppendsBlocked());
+    assertTrue(writer.stop(5, TimeUnit.SECONDS));
+    assertEquals(4, writer.getMetrics().getEventsWritten());
+  }
+
+  @Test
+  public void testDropAllWhenFull() throws Exception {
+    writer = writer(2, 8, CassandraLogWriter.OverflowPolicy.DROP_ALL);
+    writer.enqueue(regular("gate"));
+    assertTrue(waitFor(executed, 1));
+    writer.enqueue(regular("one"));
+    writer.enqueue(regular("two"));
+    assertFalse(writer.enqueue(fti("a", "s1", Markers.SET_INDEXED)));
+    assertEquals(1, writer.getMetrics().getEventsDropped());
+    assertEquals(0, writer.getMetrics().getAppendsBlocked());
+  }
+}
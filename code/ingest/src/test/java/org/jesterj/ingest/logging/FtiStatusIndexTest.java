@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.logging;
+
+import com.copyright.easiertest.Mock;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.impl.ContextDataFactory;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.StringMap;
+import org.jesterj.ingest.persistence.CassandraSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.copyright.easiertest.EasierMocks.prepareMocks;
+import static com.copyright.easiertest.EasierMocks.replay;
+import static com.copyright.easiertest.EasierMocks.reset;
+import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+
+public class FtiStatusIndexTest {
+
+  @Mock private CassandraSupport supportMock;
+  @Mock private PreparedStatement insertMock;
+  @Mock private PreparedStatement deleteMock;
+  @Mock private BoundStatement insertProcessingMock;
+  @Mock private BoundStatement deleteProcessingMock;
+  @Mock private BoundStatement insertBatchedMock;
+  @Mock private BoundStatement deleteBatchedMock;
+  @Mock private BoundStatement insertErrorMock;
+
+  private FtiStatusIndex index;
+
+  public FtiStatusIndexTest() {
+    prepareMocks(this);
+  }
+
+  @Before
+  public void setUp() {
+    reset();
+    index = new FtiStatusIndex(supportMock);
+  }
+
+  @After
+  public void tearDown() {
+    verify();
+  }
+
+  @Test
+  public void testOnlyTheStatusLeftIsDeleted() {
+    expect(supportMock.getPreparedQuery(JesterJAppender.FTI_STATUS_INSERT_Q)).andReturn(insertMock).times(2);
+    expect(supportMock.getPreparedQuery(JesterJAppender.FTI_STATUS_DELETE_Q)).andReturn(deleteMock).times(2);
+    expect(insertMock.bind("scanner", "PROCESSING", "doc1")).andReturn(insertProcessingMock);
+    expect(deleteMock.bind("scanner", "PROCESSING", "doc1")).andReturn(deleteProcessingMock);
+    expect(insertMock.bind("scanner", "BATCHED", "doc1")).andReturn(insertBatchedMock);
+    expect(deleteMock.bind("scanner", "BATCHED", "doc1")).andReturn(deleteBatchedMock);
+    replay();
+    assertEquals(Collections.singletonList(insertProcessingMock),
+        index.statementsFor(fti("doc1", Markers.SET_PROCESSING)));
+    // already indexed under this status
+    assertEquals(Collections.emptyList(), index.statementsFor(fti("doc1", Markers.SET_PROCESSING)));
+    assertEquals(Arrays.asList(deleteProcessingMock, insertBatchedMock),
+        index.statementsFor(fti("doc1", Markers.SET_READY)));
+    assertEquals(Collections.singletonList(deleteBatchedMock),
+        index.statementsFor(fti("doc1", Markers.SET_INDEXED)));
+    assertEquals(Collections.emptyList(), index.statementsFor(fti("doc1", Markers.SET_INDEXED)));
+  }
+
+  @Test
+  public void testErrorIndexedButNotRemembered() {
+    expect(supportMock.getPreparedQuery(JesterJAppender.FTI_STATUS_INSERT_Q)).andReturn(insertMock).times(4);
+    expect(supportMock.getPreparedQuery(JesterJAppender.FTI_STATUS_DELETE_Q)).andReturn(deleteMock);
+    expect(insertMock.bind("scanner", "PROCESSING", "doc1")).andReturn(insertProcessingMock).times(2);
+    expect(deleteMock.bind("scanner", "PROCESSING", "doc1")).andReturn(deleteProcessingMock);
+    expect(insertMock.bind("scanner", "ERROR", "doc1")).andReturn(insertErrorMock).times(2);
+    replay();
+    index.statementsFor(fti("doc1", Markers.SET_PROCESSING));
+    assertEquals(Arrays.asList(deleteProcessingMock, insertErrorMock),
+        index.statementsFor(fti("doc1", Markers.SET_ERROR)));
+    // not remembered, so written again, and nothing is deleted when the document moves on
+    assertEquals(Collections.singletonList(insertErrorMock),
+        index.statementsFor(fti("doc1", Markers.SET_ERROR)));
+    assertEquals(Collections.singletonList(insertProcessingMock),
+        index.statementsFor(fti("doc1", Markers.SET_PROCESSING)));
+  }
+
+  @Test
+  public void testStatusesNeverInFlightWriteNothing() {
+    replay();
+    assertEquals(Collections.emptyList(), index.statementsFor(fti("doc1", Markers.SET_DIRTY)));
+    assertEquals(Collections.emptyList(), index.statementsFor(fti("doc1", Markers.SET_INDEXED)));
+  }
+
+  @Test
+  public void testDocumentsTrackedPerScanner() {
+    expect(supportMock.getPreparedQuery(JesterJAppender.FTI_STATUS_INSERT_Q)).andReturn(insertMock).times(2);
+    expect(insertMock.bind("scanner", "PROCESSING", "doc1")).andReturn(insertProcessingMock);
+    expect(insertMock.bind("other", "PROCESSING", "doc1")).andReturn(insertBatchedMock);
+    replay();
+    assertEquals(Collections.singletonList(insertProcessingMock),
+        index.statementsFor(fti("doc1", Markers.SET_PROCESSING)));
+    assertEquals(Collections.singletonList(insertBatchedMock),
+        index.statementsFor(fti("doc1", "other", Markers.SET_PROCESSING)));
+  }
+
+  private static LoggedEvent fti(String docId, Marker status) {
+    return fti(docId, "scanner", status);
+  }
+
+  private static LoggedEvent fti(String docId, String scanner, Marker status) {
+    StringMap context = ContextDataFactory.createContextData();
+    context.putValue(JesterJAppender.JJ_INGEST_DOCID, docId);
+    context.putValue(JesterJAppender.JJ_INGEST_SOURCE_SCANNER, scanner);
+    return new LoggedEvent(Log4jLogEvent.newBuilder()
+        .setLoggerName("test")
+        .setLevel(Level.INFO)
+        .setMarker(status)
+        .setContextData(context)
+        .setMessage(new SimpleMessage(docId))
+        .build());
+  }
+}
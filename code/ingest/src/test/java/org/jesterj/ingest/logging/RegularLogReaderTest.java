@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.logging;
+
+import com.copyright.easiertest.Mock;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import org.jesterj.ingest.persistence.CassandraSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static com.copyright.easiertest.EasierMocks.prepareMocks;
+import static com.copyright.easiertest.EasierMocks.replay;
+import static com.copyright.easiertest.EasierMocks.reset;
+import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RegularLogReaderTest {
+
+  private static final long HOUR = RegularLogTable.HOUR_MILLIS;
+  private static final long START = 1_700_000_000_000L / HOUR * HOUR;
+
+  @Mock private CassandraSupport supportMock;
+  @Mock private Session sessionMock;
+  @Mock private PreparedStatement statementMock;
+  @Mock private BoundStatement bsMock;
+  @Mock private ResultSet rsMock;
+  @Mock private Row rowMock;
+  @Mock private ExecutionInfo infoMock;
+
+  private RegularLogReader reader;
+
+  public RegularLogReaderTest() {
+    prepareMocks(this);
+  }
+
+  @Before
+  public void setUp() {
+    reset();
+    supportMock.addStatement("REGULAR_LOG_RANGE_Q", RegularLogTable.SELECT_RANGE);
+    replay();
+    reader = new RegularLogReader(supportMock);
+    verify();
+    reset();
+  }
+
+  @After
+  public void tearDown() {
+    verify();
+  }
+
+  private void expectHour(long hour, Date from, Date to, int fetchSize, int rows) {
+    expect(supportMock.getPreparedQuery("REGULAR_LOG_RANGE_Q")).andReturn(statementMock);
+    expect(statementMock.bind("node1", new Date(hour), from, to)).andReturn(bsMock);
+    expect(bsMock.setFetchSize(fetchSize)).andReturn(bsMock);
+    expect(supportMock.getSession()).andReturn(sessionMock);
+    expect(sessionMock.execute(bsMock)).andReturn(rsMock);
+    expect(rsMock.getAvailableWithoutFetching()).andReturn(rows);
+    for (int i = 0; i < rows; i++) {
+      expect(rsMock.one()).andReturn(rowMock);
+      expect(rowMock.getTimestamp(0)).andReturn(new Date(hour));
+      expect(rowMock.getString(1)).andReturn("logger");
+      expect(rowMock.getString(2)).andReturn("INFO");
+      expect(rowMock.getString(3)).andReturn("main");
+      expect(rowMock.getString(4)).andReturn("message");
+    }
+    expect(rsMock.getExecutionInfo()).andReturn(infoMock);
+    expect(infoMock.getPagingState()).andReturn(null);
+  }
+
+  @Test
+  public void testReadsEachHourInOrder() {
+    Date from = new Date(START + HOUR / 2);
+    Date to = new Date(START + 2 * HOUR + 1);
+    expectHour(START, from, to, 10, 2);
+    expectHour(START + HOUR, from, to, 8, 0);
+    expectHour(START + 2 * HOUR, from, to, 8, 1);
+    replay();
+    RegularLogReader.Page page = reader.read("node1", from, to, 10, null);
+    assertEquals(3, page.getEntries().size());
+    assertEquals(new Date(START), page.getEntries().get(0).getTimestamp());
+    assertEquals(new Date(START + 2 * HOUR), page.getEntries().get(2).getTimestamp());
+    assertEquals("node1", page.getEntries().get(2).getNode());
+    assertNull(page.getNextPageToken());
+  }
+
+  @Test
+  public void testEndIsExclusive() {
+    Date from = new Date(START);
+    Date to = new Date(START + HOUR);
+    expectHour(START, from, to, 5, 1);
+    replay();
+    RegularLogReader.Page page = reader.read("node1", from, to, 5, null);
+    assertEquals(1, page.getEntries().size());
+    assertNull(page.getNextPageToken());
+  }
+
+  @Test
+  public void testFullPageContinuesAtNextHour() {
+    Date from = new Date(START);
+    Date to = new Date(START + 3 * HOUR);
+    expectHour(START, from, to, 2, 2);
+    replay();
+    RegularLogReader.Page page = reader.read("node1", from, to, 2, null);
+    assertEquals(2, page.getEntries().size());
+    assertEquals((START + HOUR) + ":", page.getNextPageToken());
+    verify();
+
+    reset();
+    expectHour(START + HOUR, from, to, 2, 0);
+    expectHour(START + 2 * HOUR, from, to, 2, 1);
+    replay();
+    page = reader.read("node1", from, to, 2, page.getNextPageToken());
+    assertEquals(1, page.getEntries().size());
+    assertNull(page.getNextPageToken());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadToken() {
+    replay();
+    reader.read("node1", new Date(START), new Date(START + HOUR), 2, "garbage");
+  }
+}
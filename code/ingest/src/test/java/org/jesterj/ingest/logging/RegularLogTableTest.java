@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.logging;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RegularLogTableTest {
+
+  private static final long HOUR = RegularLogTable.HOUR_MILLIS;
+
+  @Test
+  public void testHourOf() {
+    long hour = 1_700_000_000_000L / HOUR * HOUR;
+    assertEquals(hour, RegularLogTable.hourOf(hour));
+    assertEquals(hour, RegularLogTable.hourOf(hour + 1));
+    assertEquals(hour, RegularLogTable.hourOf(hour + HOUR - 1));
+    assertEquals(hour + HOUR, RegularLogTable.hourOf(hour + HOUR));
+    assertEquals(-HOUR, RegularLogTable.hourOf(-1));
+  }
+
+  @Test
+  public void testMatches() {
+    RegularLogTable table = new RegularLogTable("node1", 3600, 2);
+    Map<String, String> compaction = new HashMap<>();
+    compaction.put("class", "org.apache.cassandra.db.compaction.TimeWindowCompactionStrategy");
+    compaction.put("compaction_window_unit", "HOURS");
+    compaction.put("compaction_window_size", "2");
+    compaction.put("max_threshold", "32");
+    assertTrue(table.matches(3600, compaction));
+    assertFalse(table.matches(7200, compaction));
+    compaction.put("compaction_window_size", "1");
+    assertFalse(table.matches(3600, compaction));
+    compaction.put("compaction_window_size", "2");
+    compaction.put("class", "org.apache.cassandra.db.compaction.SizeTieredCompactionStrategy");
+    assertFalse(table.matches(3600, compaction));
+  }
+
+  @Test
+  public void testOptions() {
+    RegularLogTable table = new RegularLogTable("node1", 0, 12);
+    assertTrue(table.createCql().contains("PRIMARY KEY ((node, hour), tstamp, id))"));
+    assertTrue(table.createCql().contains("default_time_to_live = 0 "));
+    assertTrue(table.alterCql().contains("'compaction_window_size' : 12 "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTtl() {
+    new RegularLogTable("node1", -1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroWindow() {
+    new RegularLogTable("node1", 3600, 0);
+  }
+}
@@ -38,5 +38,6 @@ public class StatusTest {
     assertEquals(Status.INDEXED.getMarker(), Markers.SET_INDEXED);
     assertEquals(Status.PROCESSING.getMarker(), Markers.SET_PROCESSING);
     assertEquals(Status.SEARCHABLE.getMarker(), Markers.SET_SEARCHABLE);
+    assertEquals(Status.SUPERSEDED.getMarker(), Markers.SET_SUPERSEDED);
   }
 }
@@ -30,6 +30,7 @@ import org.junit.Test;
 
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
 
 import static com.copyright.easiertest.EasierMocks.prepareMocks;
 import static com.copyright.easiertest.EasierMocks.replay;
@@ -37,6 +38,9 @@ import static com.copyright.easiertest.EasierMocks.reset;
 import static com.copyright.easiertest.EasierMocks.verify;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 
 public class DocumentImplTest {
@@ -78,6 +82,39 @@ public class DocumentImplTest {
 
   }
 
+  @Test
+  public void testCopyOnWrite() {
+    expect(scannerMock.getName()).andReturn("my_name").anyTimes();
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    replay();
+    byte[] raw = new byte[]{1, 2, 3};
+    DocumentImpl original = new DocumentImpl(raw, "foo", planMock, Document.Operation.NEW, scannerMock);
+    original.put("string", "one");
+    DocumentImpl copy = original.copyOnWrite();
+    assertTrue(original.isDelegateShared());
+    assertTrue(copy.isDelegateShared());
+    assertSame(raw, copy.getRawData());
+    assertEquals("foo", copy.getId());
+    assertEquals("one", copy.getFirstValue("string"));
+
+    // reading does not copy
+    Iterator<String> values = copy.get("string").iterator();
+    assertEquals("one", values.next());
+    assertTrue(copy.isDelegateShared());
+
+    // writing through the list view copies
+    copy.get("string").add("two");
+    assertFalse(copy.isDelegateShared());
+    assertEquals(2, copy.get("string").size());
+    assertEquals(1, original.get("string").size());
+
+    // the original still thinks it's shared, and copies on its own first write
+    original.put("other", "value");
+    assertFalse(original.isDelegateShared());
+    assertFalse(copy.containsKey("other"));
+    assertEquals(1, original.get("string").size());
+  }
+
   @Test
   public void testHash() throws UnsupportedEncodingException, NoSuchAlgorithmException {
     expect(obj.getDelegateString()).andReturn("CAFE");
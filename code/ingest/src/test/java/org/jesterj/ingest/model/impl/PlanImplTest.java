@@ -24,19 +24,31 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
 import org.apache.logging.log4j.Level;
 import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.DocumentProcessor;
 import org.jesterj.ingest.model.Plan;
 import org.jesterj.ingest.model.Scanner;
+import org.jesterj.ingest.model.Status;
 import org.jesterj.ingest.model.Step;
 import org.jesterj.ingest.processors.LogAndDrop;
+import org.jesterj.ingest.processors.SetStaticValue;
 import org.jesterj.ingest.routers.DuplicateToAll;
 import org.jesterj.ingest.scanners.SimpleFileWatchScanner;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -49,6 +61,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class PlanImplTest {
 
@@ -61,6 +74,8 @@ public class PlanImplTest {
   @Mock private BoundStatement boundMock;
   @Mock private ResultSet rsMock;
   @Mock private Step stepMock;
+  @Mock private Plan planMock;
+  @Mock private Scanner scannerMock;
 
   public PlanImplTest() {
     prepareMocks(this);
@@ -132,6 +147,75 @@ public class PlanImplTest {
 
   }
 
+  @Test
+  public void testFuseLinearSteps() {
+    replay();
+    Plan plan = linearPlan(true);
+    // never fused into a scanner
+    assertFalse(((StepImpl) plan.findStep("first")).isFused());
+    assertTrue(((StepImpl) plan.findStep("second")).isFused());
+    // fork, neither branch may be fused
+    assertFalse(((StepImpl) plan.findStep("branch_a")).isFused());
+    assertFalse(((StepImpl) plan.findStep("branch_b")).isFused());
+    // multiple threads
+    assertFalse(((StepImpl) plan.findStep("threaded")).isFused());
+    // processor not marked cheap
+    assertFalse(((StepImpl) plan.findStep("expensive")).isFused());
+
+    plan = linearPlan(false);
+    for (Step step : plan.getSteps()) {
+      assertFalse(((StepImpl) step).isFused());
+    }
+  }
+
+  @Test
+  public void testMetricsRegisteredWhileActive() throws Exception {
+    replay();
+    StepImpl step = new StepImpl.Builder().named("measured")
+        .withProcessor(new LogAndDrop.Builder().withLogLevel(Level.ERROR)).build();
+    LinkedHashMap<String, Step> steps = new LinkedHashMap<>();
+    steps.put(step.getName(), step);
+    PlanImpl active = new PlanImpl();
+    active.setName("metricsPlan");
+    active.setStepsMap(steps);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.jesterj:type=Step,plan=\"metricsPlan\",step=\"measured\"");
+    assertFalse(server.isRegistered(name));
+    active.activate();
+    try {
+      assertTrue(server.isRegistered(name));
+      assertEquals(0L, server.getAttribute(name, "DocumentsIn"));
+      assertEquals(0, server.getAttribute(name, "QueueDepth"));
+    } finally {
+      active.deactivate();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  private Plan linearPlan(boolean fuse) {
+    PlanImpl.Builder planBuilder = new PlanImpl.Builder();
+    SimpleFileWatchScanner.Builder scannerBuilder = new SimpleFileWatchScanner.Builder();
+    scannerBuilder.withRoot(new File("/Users/gus/foo/bar")).named(SCAN_FOO_BAR);
+    planBuilder
+        .named("testFuseLinearSteps")
+        .addStep(scannerBuilder)
+        .addStep(cheapStep("first"), SCAN_FOO_BAR)
+        .addStep(cheapStep("second"), "first")
+        .addStep(cheapStep("branch_a"), "second")
+        .addStep(cheapStep("branch_b"), "second")
+        .addStep(cheapStep("threaded").withThreads(2), "branch_b")
+        .addStep(new StepImpl.Builder().named("expensive")
+            .withProcessor(new LogAndDrop.Builder().withLogLevel(Level.ERROR)), "branch_a")
+        .fusingLinearSteps(fuse)
+        .withIdField("id");
+    return planBuilder.build();
+  }
+
+  private StepImpl.Builder cheapStep(String name) {
+    return new StepImpl.Builder().named(name).withProcessor(new SetStaticValue.Builder()
+        .named("set_" + name).adding("touched").withValue("true"));
+  }
+
   @Test(expected = RuntimeException.class)
   public void testFailInvalidName() {
     replay();
@@ -274,4 +358,74 @@ public class PlanImplTest {
     plan.deactivate();
   }
 
+  @Test
+  public void testDeactivateFinishesPoolWorkBeforeClosing() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch started = new CountDownLatch(1);
+    StepImpl step = new StepImpl.Builder().named("slow")
+        .withProcessor(new SlowProcessor.Builder(started, events)).build();
+    LinkedHashMap<String, Step> steps = new LinkedHashMap<>();
+    steps.put("slow", step);
+    expect(plan.getStepsMap()).andReturn(steps).anyTimes();
+    replay();
+    plan.setSharedPoolParallelism(1);
+    plan.activate();
+    step.put(new DocumentImpl(new byte[0], "doc", planMock, Document.Operation.NEW, scannerMock));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    plan.deactivate();
+    assertEquals(Arrays.asList("processed", "closed"), events);
+  }
+
+  private static class SlowProcessor implements DocumentProcessor {
+    private final CountDownLatch started;
+    private final List<String> events;
+
+    SlowProcessor(CountDownLatch started, List<String> events) {
+      this.started = started;
+      this.events = events;
+    }
+
+    @Override
+    public Document[] processDocument(Document document) {
+      started.countDown();
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        events.add("interrupted");
+      }
+      events.add("processed");
+      document.setStatus(Status.DROPPED);
+      return new Document[]{document};
+    }
+
+    @Override
+    public void close() {
+      events.add("closed");
+    }
+
+    @Override
+    public String getName() {
+      return "slow";
+    }
+
+    static class Builder extends NamedBuilder<SlowProcessor> {
+      private final SlowProcessor processor;
+
+      Builder(CountDownLatch started, List<String> events) {
+        processor = new SlowProcessor(started, events);
+      }
+
+      @Override
+      public NamedBuilder<SlowProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public SlowProcessor build() {
+        return processor;
+      }
+    }
+  }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScannedIdIndexTest {
+
+  private static final String MD5 = "0123456789abcdeffedcba9876543210";
+
+  @Test
+  public void testPutAndGet() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    assertNull(index.get("foo"));
+    index.put("foo", "INDEXED", MD5);
+    index.put("bar", "DIRTY", null);
+    assertEquals(2, index.size());
+    assertEquals("INDEXED", index.get("foo").status);
+    assertEquals(MD5, index.get("foo").md5);
+    assertEquals("DIRTY", index.get("bar").status);
+    assertNull(index.get("bar").md5);
+    assertNull(index.get("baz"));
+  }
+
+  @Test
+  public void testOverwrite() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    index.put("foo", "ERROR", null);
+    index.put("foo", "PROCESSING", "00000000000000000000000000000001");
+    assertEquals(1, index.size());
+    assertEquals("PROCESSING", index.get("foo").status);
+    assertEquals("00000000000000000000000000000001", index.get("foo").md5);
+  }
+
+  @Test
+  public void testMd5CasePreserved() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    index.put("foo", "INDEXED", MD5.toUpperCase());
+    index.put("bar", "INDEXED", "0123456789ABCDEFfedcba9876543210");
+    assertEquals(MD5.toUpperCase(), index.get("foo").md5);
+    assertNull(index.get("bar").md5);
+  }
+
+  @Test
+  public void testUnrecognizedValues() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    index.put("foo", "NOT_A_STATUS", "CAFEBABE");
+    assertNull(index.get("foo").status);
+    assertNull(index.get("foo").md5);
+  }
+
+  @Test
+  public void testHashesNotKept() {
+    ScannedIdIndex index = new ScannedIdIndex(false, 10);
+    index.put("foo", "INDEXED", MD5);
+    assertEquals("INDEXED", index.get("foo").status);
+    assertNull(index.get("foo").md5);
+  }
+
+  @Test
+  public void testGrowth() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    for (int i = 0; i < 10000; i++) {
+      index.put("doc" + i, i % 2 == 0 ? "INDEXED" : "DIRTY", String.format("%032x", i));
+    }
+    assertEquals(10000, index.size());
+    for (int i = 0; i < 10000; i++) {
+      ScannedIdIndex.Known known = index.get("doc" + i);
+      assertEquals(i % 2 == 0 ? "INDEXED" : "DIRTY", known.status);
+      assertEquals(String.format("%032x", i), known.md5);
+    }
+  }
+
+  @Test
+  public void testQueuedWrites() {
+    ScannedIdIndex index = new ScannedIdIndex(false, 3);
+    Statement write = QueryBuilder.select().from("foo");
+    assertNull(index.queueWrite(write));
+    assertNull(index.queueWrite(write));
+    List<Statement> writes = index.queueWrite(write);
+    assertEquals(3, writes.size());
+    assertNull(index.queueWrite(write));
+    assertEquals(1, index.drainWrites().size());
+    assertEquals(0, index.drainWrites().size());
+  }
+}
@@ -20,24 +20,43 @@ import com.copyright.easiertest.Mock;
 import com.copyright.easiertest.ObjectUnderTest;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import org.apache.lucene.util.IOUtils;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.jesterj.ingest.logging.CassandraLog4JManager;
 import org.jesterj.ingest.persistence.CassandraSupport;
+import org.jesterj.ingest.persistence.EphemeralStatusStore;
 import org.jesterj.ingest.model.Document;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.copyright.easiertest.EasierMocks.prepareMocks;
 import static com.copyright.easiertest.EasierMocks.replay;
 import static com.copyright.easiertest.EasierMocks.reset;
 import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.expect;
 import static org.jesterj.ingest.model.impl.ScannerImpl.UPDATE_HASH_U;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /*
  * Created with IntelliJ IDEA.
@@ -54,6 +73,15 @@ public class ScannerImplTest {
   @Mock private Row rowMock;
   @Mock private CassandraSupport supportMock;
   @Mock private PreparedStatement statementMock;
+  @Mock private PreparedStatement checkMock;
+  @Mock private PreparedStatement resetMock;
+  @Mock private PreparedStatement unindexMock;
+  @Mock private BoundStatement checkBsMock;
+  @Mock private BoundStatement resetBsMock;
+  @Mock private BoundStatement unindexBsMock;
+  @Mock private ResultSet emptyRsMock;
+  @Mock private ResultSet currentRsMock;
+  @Mock private Row currentRowMock;
 
   public ScannerImplTest() {
     prepareMocks(this);
@@ -334,4 +362,192 @@ public class ScannerImplTest {
     replay();
     scanner.sendToNext(docMock);
   }
+
+  @Test
+  public void testDocFoundPreloaded() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    index.put("42", "INDEXED", "0123456789abcdeffedcba9876543210");
+    scanner.scannedIds = index;
+    expect(scanner.getName()).andReturn("Dent, Aurthur Dent").anyTimes();
+    expect(scanner.isRemembering()).andReturn(true).anyTimes();
+    expect(scanner.isHashing()).andReturn(true).anyTimes();
+    expect(docMock.getId()).andReturn("42").anyTimes();
+    expect(scanner.getIdFunction()).andReturn((foo) -> foo);
+    expect(docMock.getIdField()).andReturn("id");
+    expect(docMock.removeAll("id")).andReturn(null);
+    expect(docMock.put("id", "42")).andReturn(true);
+    expect(scanner.heuristicDirty(docMock)).andReturn(false);
+    expect(docMock.getHash()).andReturn("0123456789abcdeffedcba9876543210");
+    replay();
+    scanner.docFound(docMock);
+  }
+
+  @Test
+  public void testDocFoundPreloadedUnknown() {
+    scanner.scannedIds = new ScannedIdIndex(true, 10);
+    expect(scanner.getName()).andReturn("Dent, Aurthur Dent").anyTimes();
+    expect(scanner.isRemembering()).andReturn(true).anyTimes();
+    expect(docMock.getId()).andReturn("42").anyTimes();
+    expect(scanner.getIdFunction()).andReturn((foo) -> foo);
+    expect(docMock.getIdField()).andReturn("id");
+    expect(docMock.removeAll("id")).andReturn(null);
+    expect(docMock.put("id", "42")).andReturn(true);
+    scanner.sendToNext(docMock);
+    replay();
+    scanner.docFound(docMock);
+  }
+
+  @Test
+  public void testSendToNextPreloaded() {
+    ScannedIdIndex index = new ScannedIdIndex(true, 10);
+    scanner.scannedIds = index;
+    expect(scanner.isRemembering()).andReturn(true);
+    expect(scanner.getCassandra()).andReturn(supportMock).anyTimes();
+    expect(supportMock.getPreparedQuery(UPDATE_HASH_U)).andReturn(statementMock);
+    expect(docMock.getHash()).andReturn("DEADBEEF");
+    expect(docMock.getId()).andReturn("42").anyTimes();
+    expect(docMock.getSourceScannerName()).andReturn("Arthur Dent");
+    expect(statementMock.bind("DEADBEEF", "42", "Arthur Dent")).andReturn(bsMock);
+    scanner.superSendToNext(docMock);
+    replay();
+    scanner.sendToNext(docMock);
+    assertEquals("PROCESSING", index.get("42").status);
+    assertEquals(1, index.drainWrites().size());
+  }
+
+  @Test
+  public void testDocFoundNeverSent() throws Exception {
+    Path dir = Files.createTempDirectory("jj-seen-ids");
+    try {
+      SeenIdFilter filter = new SeenIdFilter(dir.resolve("scanner.bloom"), 100, 0.01);
+      filter.put("7");
+      scanner.seenIds = filter;
+      expect(scanner.getName()).andReturn("Dent, Aurthur Dent").anyTimes();
+      expect(scanner.isRemembering()).andReturn(true).anyTimes();
+      expect(docMock.getId()).andReturn("42").anyTimes();
+      expect(scanner.getIdFunction()).andReturn((foo) -> foo);
+      expect(docMock.getIdField()).andReturn("id");
+      expect(docMock.removeAll("id")).andReturn(null);
+      expect(docMock.put("id", "42")).andReturn(true);
+      scanner.sendToNext(docMock);
+      replay();
+      scanner.docFound(docMock);
+    } finally {
+      IOUtils.rm(dir);
+    }
+  }
+
+  @Test
+  public void testDocFoundLocalStore() {
+    EphemeralStatusStore store = new EphemeralStatusStore();
+    store.setStatus("Dent, Aurthur Dent", "42", "INDEXED");
+    store.setHash("Dent, Aurthur Dent", "42", "CAFEBABE");
+    scanner.statusStore = store;
+    expect(scanner.getName()).andReturn("Dent, Aurthur Dent").anyTimes();
+    expect(scanner.isRemembering()).andReturn(true).anyTimes();
+    expect(scanner.isHashing()).andReturn(true).anyTimes();
+    expect(docMock.getId()).andReturn("42").anyTimes();
+    expect(scanner.getIdFunction()).andReturn((foo) -> foo);
+    expect(docMock.getIdField()).andReturn("id");
+    expect(docMock.removeAll("id")).andReturn(null);
+    expect(docMock.put("id", "42")).andReturn(true);
+    expect(scanner.heuristicDirty(docMock)).andReturn(false);
+    expect(docMock.getHash()).andReturn("DEADBEEF");
+    scanner.sendToNext(docMock);
+    replay();
+    scanner.docFound(docMock);
+  }
+
+  @Test
+  public void testSendToNextLocalStore() {
+    EphemeralStatusStore store = new EphemeralStatusStore();
+    scanner.statusStore = store;
+    expect(scanner.isRemembering()).andReturn(true);
+    expect(docMock.getHash()).andReturn("DEADBEEF");
+    expect(docMock.getId()).andReturn("42").anyTimes();
+    expect(docMock.getSourceScannerName()).andReturn("Arthur Dent");
+    scanner.superSendToNext(docMock);
+    replay();
+    scanner.sendToNext(docMock);
+    assertEquals("DEADBEEF", store.find("Arthur Dent", "42").getMd5());
+  }
+
+  @Test
+  public void testResetStrandedDocsChecksCurrentStatus() {
+    expectStrandedQueries();
+    // doc1 is still processing, doc2 moved on without its index entry being removed
+    expect(rowMock.getString(0)).andReturn("doc1").andReturn("doc2");
+    expect(checkMock.bind("doc1", "scanner")).andReturn(checkBsMock);
+    expect(checkMock.bind("doc2", "scanner")).andReturn(checkBsMock);
+    expect(sessionMock.executeAsync(checkBsMock)).andReturn(new DoneFuture(currentRsMock, null)).times(2);
+    expect(currentRsMock.one()).andReturn(currentRowMock).times(2);
+    expect(currentRowMock.getString(0)).andReturn("PROCESSING").andReturn("INDEXED");
+    expect(resetMock.bind("doc1", "scanner")).andReturn(resetBsMock);
+    expect(unindexMock.bind("scanner", "PROCESSING", "doc1")).andReturn(unindexBsMock);
+    expect(unindexMock.bind("scanner", "PROCESSING", "doc2")).andReturn(unindexBsMock);
+    Capture<Statement> updates = Capture.newInstance(CaptureType.ALL);
+    expect(sessionMock.executeAsync(capture(updates))).andReturn(new DoneFuture(null, null)).times(2);
+    replay();
+    scanner.resetStrandedDocs();
+    assertEquals(2, updates.getValues().size());
+    assertEquals(Arrays.asList(resetBsMock, unindexBsMock),
+        new ArrayList<>(((BatchStatement) updates.getValues().get(0)).getStatements()));
+    assertEquals(Collections.singletonList(unindexBsMock),
+        new ArrayList<>(((BatchStatement) updates.getValues().get(1)).getStatements()));
+  }
+
+  @Test
+  public void testResetStrandedDocsReleasesOnFailure() throws InterruptedException {
+    expectStrandedQueries();
+    expect(rowMock.getString(0)).andReturn("doc1").andReturn("doc2");
+    expect(checkMock.bind(EasyMock.anyString(), EasyMock.eq("scanner"))).andReturn(checkBsMock).times(2);
+    expect(sessionMock.executeAsync(checkBsMock))
+        .andReturn(new DoneFuture(null, new IllegalStateException("unavailable"))).times(2);
+    replay();
+    Thread reset = new Thread(scanner::resetStrandedDocs);
+    reset.start();
+    reset.join(10000);
+    // would wait forever for the permits of the failed checks
+    assertFalse(reset.isAlive());
+  }
+
+  // two documents stranded while processing, none batched or in error
+  private void expectStrandedQueries() {
+    expect(scanner.getName()).andReturn("scanner").anyTimes();
+    expect(scanner.getCassandra()).andReturn(supportMock).anyTimes();
+    expect(supportMock.getSession()).andReturn(sessionMock);
+    expect(supportMock.getPreparedQuery(ScannerImpl.FTI_CHECK_Q)).andReturn(checkMock);
+    expect(supportMock.getPreparedQuery(ScannerImpl.RESET_DOCS_U)).andReturn(resetMock);
+    expect(supportMock.getPreparedQuery(ScannerImpl.UNINDEX_STATUS_U)).andReturn(unindexMock);
+    expect(supportMock.getPreparedQuery(ScannerImpl.FIND_STRANDED_Q)).andReturn(statementMock).times(3);
+    expect(scanner.createBoundStatement(statementMock)).andReturn(bsMock).times(3);
+    for (String status : CassandraLog4JManager.IN_FLIGHT_STATUSES) {
+      expect(bsMock.bind("scanner", status)).andReturn(bsMock);
+    }
+    expect(bsMock.setFetchSize(1000)).andReturn(bsMock).times(3);
+    expect(sessionMock.execute(bsMock)).andReturn(rsMock).andReturn(emptyRsMock).times(2);
+    expect(rsMock.iterator()).andReturn(Arrays.asList(rowMock, rowMock).iterator());
+    expect(rsMock.getAvailableWithoutFetching()).andReturn(0).anyTimes();
+    expect(emptyRsMock.iterator()).andReturn(Collections.<Row>emptyList().iterator()).times(2);
+  }
+
+  private static class DoneFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+    DoneFuture(ResultSet result, Throwable failure) {
+      if (failure == null) {
+        set(result);
+      } else {
+        setException(failure);
+      }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+      return Futures.getUnchecked(this);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+      return getUninterruptibly();
+    }
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.model.impl;
+
+import org.apache.lucene.util.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SeenIdFilterTest {
+
+  private Path dir;
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("jj-seen-ids");
+    file = dir.resolve("filters").resolve("scanner.bloom");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    IOUtils.rm(dir);
+  }
+
+  @Test
+  public void testPutAndCheck() throws IOException {
+    SeenIdFilter filter = new SeenIdFilter(file, 100, 0.01);
+    assertFalse(filter.mightContain("foo"));
+    filter.put("foo");
+    filter.put("foo");
+    assertTrue(filter.mightContain("foo"));
+    assertEquals(1, filter.size());
+  }
+
+  @Test
+  public void testGrowth() throws IOException {
+    SeenIdFilter filter = new SeenIdFilter(file, 100, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put("doc" + i);
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.mightContain("doc" + i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (filter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    // at most twice the rate of the first stage, with room for chance
+    assertTrue("false positives: " + falsePositives, falsePositives < 300);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    assertNull(SeenIdFilter.load(file));
+    SeenIdFilter filter = new SeenIdFilter(file, 100, 0.01);
+    for (int i = 0; i < 500; i++) {
+      filter.put("doc" + i);
+    }
+    filter.save();
+    SeenIdFilter loaded = SeenIdFilter.load(file);
+    assertEquals(filter.size(), loaded.size());
+    for (int i = 0; i < 500; i++) {
+      assertTrue(loaded.mightContain("doc" + i));
+    }
+    loaded.put("doc1");
+    assertTrue(Files.exists(file));
+    loaded.put("new");
+    assertFalse(Files.exists(file));
+    loaded.save();
+    assertTrue(SeenIdFilter.load(file).mightContain("new"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptFile() throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, "not a filter".getBytes(StandardCharsets.UTF_8));
+    SeenIdFilter.load(file);
+  }
+}
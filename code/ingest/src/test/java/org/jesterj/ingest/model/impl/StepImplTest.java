@@ -23,15 +23,20 @@ package org.jesterj.ingest.model.impl;
 
 import com.copyright.easiertest.Mock;
 import com.copyright.easiertest.ObjectUnderTest;
+import org.jesterj.ingest.forkjoin.JesterJForkJoinThreadFactory;
 import org.jesterj.ingest.model.ConfiguredBuildable;
+import org.jesterj.ingest.model.Document;
 import org.jesterj.ingest.model.DocumentProcessor;
 import org.jesterj.ingest.model.Plan;
+import org.jesterj.ingest.model.Scanner;
+import org.jesterj.ingest.model.Status;
 import org.jesterj.ingest.model.Step;
 import org.jesterj.ingest.processors.CopyField;
 import org.jesterj.ingest.processors.LogAndDrop;
 import org.jesterj.ingest.processors.SendToSolrCloudProcessor;
 import org.jesterj.ingest.processors.SimpleDateTimeReformatter;
 import org.jesterj.ingest.processors.TikaProcessor;
+import org.jesterj.ingest.queue.MpscRingBufferQueue;
 import org.jesterj.ingest.routers.DuplicateToAll;
 import org.jesterj.ingest.scanners.SimpleFileScanner;
 import org.jesterj.ingest.scanners.SimpleFileWatchScanner;
@@ -40,8 +45,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.copyright.easiertest.EasierMocks.*;
+import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.*;
 
 public class StepImplTest {
@@ -58,6 +75,8 @@ public class StepImplTest {
   private Step testStep;
   @Mock private ConfiguredBuildable<? extends DocumentProcessor> mockProcessorBuilder;
   @Mock private DocumentProcessor mockProcessor;
+  @Mock private Plan planMock;
+  @Mock private Scanner scannerMock;
 
   public StepImplTest() {
     prepareMocks(this);
@@ -114,6 +133,363 @@ public class StepImplTest {
     }
   }
 
+  @Test
+  public void testHandoffIsMeasured() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int docs = 200;
+    CountDownLatch latch = new CountDownLatch(docs);
+    StepImpl last = new StepImpl.Builder().named("last").withProcessor(new CountingProcessor.Builder(latch)).build();
+    StepImpl.Builder firstBuilder = new StepImpl.Builder().named("first").withProcessor(new CountingProcessor.Builder(null));
+    firstBuilder.addNextStep(last);
+    StepImpl first = firstBuilder.build();
+    try {
+      first.activate();
+      last.activate();
+      for (int i = 0; i < docs; i++) {
+        first.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+        if (i % 10 == 0) {
+          // give the workers a chance to go idle so that we measure waking them up too
+          Thread.sleep(1);
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(docs, first.getHandoffCount());
+      assertEquals(docs, last.getHandoffCount());
+      assertTrue(last.getMeanHandoffNanos() > 0);
+    } finally {
+      first.deactivate();
+      last.deactivate();
+    }
+  }
+
+  @Test
+  public void testMultipleThreads() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int docs = 100;
+    CountDownLatch latch = new CountDownLatch(docs);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    StepImpl step = new StepImpl.Builder().named("multi").withThreads(4)
+        .withProcessor(new RecordingProcessor.Builder(latch, threadNames, null)).build();
+    try {
+      step.activate();
+      for (int i = 0; i < docs; i++) {
+        step.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertTrue("expected more than one worker, saw " + threadNames, threadNames.size() > 1);
+    } finally {
+      step.deactivate();
+    }
+  }
+
+  @Test
+  public void testSharedPool() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int ids = 5;
+    int versions = 40;
+    CountDownLatch latch = new CountDownLatch(ids * versions);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    Map<String, List<String>> seen = new ConcurrentHashMap<>();
+    ForkJoinPool pool = new ForkJoinPool(2, new JesterJForkJoinThreadFactory(), null, true);
+    StepImpl step = new StepImpl.Builder().named("pooled").withThreads(3).orderedById(true)
+        .withProcessor(new RecordingProcessor.Builder(latch, threadNames, seen)).build();
+    step.setSharedPool(pool);
+    try {
+      step.activate();
+      for (int v = 0; v < versions; v++) {
+        for (int i = 0; i < ids; i++) {
+          DocumentImpl doc = new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.UPDATE, scannerMock);
+          doc.put("version", String.valueOf(v));
+          step.put(doc);
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      for (String threadName : threadNames) {
+        assertTrue("work done outside the pool on " + threadName, threadName.startsWith("ForkJoinPool"));
+      }
+      for (List<String> order : seen.values()) {
+        for (int v = 0; v < versions; v++) {
+          assertEquals(String.valueOf(v), order.get(v));
+        }
+      }
+    } finally {
+      step.deactivate();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testInFlightLightweightDocumentFinishesAfterDeactivate() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch started = new CountDownLatch(1);
+    // longer than the time deactivation allows worker threads
+    StepImpl step = new StepImpl.Builder().named("slowFetch").withLightweightThreads(4)
+        .withProcessor(new SlowProcessor.Builder(started, events, 1500)).build();
+    step.activate();
+    step.put(new DocumentImpl(new byte[0], "doc", planMock, Document.Operation.NEW, scannerMock));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    step.deactivate();
+    assertEquals(Arrays.asList("processed", "closed"), events);
+  }
+
+  @Test
+  public void testLightweightThreads() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int ids = 50;
+    int versions = 10;
+    CountDownLatch latch = new CountDownLatch(ids * versions);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    Map<String, List<String>> seen = new ConcurrentHashMap<>();
+    RecordingProcessor.Builder processor = new RecordingProcessor.Builder(latch, threadNames, seen);
+    StepImpl step = new StepImpl.Builder().named("light").withLightweightThreads(20).orderedById(true)
+        .withProcessor(processor).build();
+    try {
+      step.activate();
+      for (int v = 0; v < versions; v++) {
+        for (int i = 0; i < ids; i++) {
+          DocumentImpl doc = new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.UPDATE, scannerMock);
+          doc.put("version", String.valueOf(v));
+          step.put(doc);
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      for (String threadName : threadNames) {
+        assertTrue("unexpected thread " + threadName, threadName.startsWith("jj-lightweight-light-"));
+      }
+      int peak = processor.processor.peak.get();
+      assertTrue("expected concurrent processing, peak was " + peak, peak > 1);
+      assertTrue("ceiling exceeded, peak was " + peak, peak <= 20);
+      for (List<String> order : seen.values()) {
+        for (int v = 0; v < versions; v++) {
+          assertEquals(String.valueOf(v), order.get(v));
+        }
+      }
+    } finally {
+      step.deactivate();
+    }
+  }
+
+  @Test
+  public void testFusedStep() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int docs = 20;
+    CountDownLatch latch = new CountDownLatch(docs);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    StepImpl last = new StepImpl.Builder().named("last")
+        .withProcessor(new RecordingProcessor.Builder(latch, threadNames, null)).build();
+    StepImpl.Builder firstBuilder = new StepImpl.Builder().named("first").withProcessor(new CopyField.Builder()
+        .named("copy").from("id").into("copied"));
+    firstBuilder.addNextStep(last);
+    StepImpl first = firstBuilder.build();
+    assertTrue(last.canFuseInto(first));
+    StepImpl.Builder expensiveBuilder = new StepImpl.Builder().named("expensive")
+        .withProcessor(new LogAndDrop.Builder());
+    StepImpl expensive = expensiveBuilder.build();
+    firstBuilder = new StepImpl.Builder().named("before_expensive").withProcessor(new LogAndDrop.Builder());
+    firstBuilder.addNextStep(expensive);
+    // not marked cheap, keeps its own thread
+    assertFalse(expensive.canFuseInto(firstBuilder.build()));
+    last.fuse();
+    try {
+      last.activate();
+      first.activate();
+      for (int i = 0; i < docs; i++) {
+        first.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(Collections.singleton("jj-worker-first"), threadNames);
+    } finally {
+      first.deactivate();
+      last.deactivate();
+    }
+  }
+
+  @Test
+  public void testRemainingCredit() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    StepImpl last = new StepImpl.Builder().named("last").batchSize(2).withProcessor(new LogAndDrop.Builder()).build();
+    StepImpl.Builder firstBuilder = new StepImpl.Builder().named("first").batchSize(5)
+        .withProcessor(new LogAndDrop.Builder());
+    firstBuilder.addNextStep(last);
+    StepImpl first = firstBuilder.build();
+    assertEquals(2, first.getRemainingCredit());
+    assertEquals(2, last.getRemainingCredit());
+    // neither step is active, so nothing is consumed
+    last.put(new DocumentImpl(new byte[0], "doc1", planMock, Document.Operation.NEW, scannerMock));
+    assertEquals(1, first.getRemainingCredit());
+    last.put(new DocumentImpl(new byte[0], "doc2", planMock, Document.Operation.NEW, scannerMock));
+    assertEquals(0, first.getRemainingCredit());
+    last.take();
+    assertEquals(1, first.getRemainingCredit());
+    for (int i = 0; i < 5; i++) {
+      first.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+    }
+    assertEquals(0, first.getRemainingCredit());
+    assertEquals(1, last.getRemainingCredit());
+  }
+
+  @Test
+  public void testRingBufferInbox() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int docs = 200;
+    CountDownLatch latch = new CountDownLatch(docs);
+    StepImpl step = new StepImpl.Builder().named("ring").withInbox(MpscRingBufferQueue::new)
+        .withProcessor(new RecordingProcessor.Builder(latch, ConcurrentHashMap.newKeySet(), null)).build();
+    try {
+      step.activate();
+      for (int i = 0; i < docs; i++) {
+        step.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      step.deactivate();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRingBufferInboxRejectsConcurrentConsumers() {
+    replay();
+    new StepImpl.Builder().named("ring").withInbox(MpscRingBufferQueue::new).withThreads(2)
+        .withProcessor(new LogAndDrop.Builder()).build();
+  }
+
+  @Test
+  public void testProcessBatch() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    CountDownLatch latch = new CountDownLatch(25);
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    StepImpl step = new StepImpl.Builder().named("batching").processingBatchesOf(10)
+        .withProcessor(new BatchSizeProcessor.Builder(latch, batchSizes)).build();
+    try {
+      // queue everything before activating so that it's all available to the first take
+      for (int i = 0; i < 25; i++) {
+        step.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+      }
+      step.activate();
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+    } finally {
+      step.deactivate();
+    }
+  }
+
+  @Test
+  public void testProcessBatchFailsOnlyTheDocumentThatThrows() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    CountDownLatch latch = new CountDownLatch(2);
+    StepImpl step = new StepImpl.Builder().named("batching").processingBatchesOf(3)
+        .withProcessor(new FailingProcessor.Builder(latch, "doc1")).build();
+    List<Document> docs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      docs.add(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+    }
+    try {
+      // queue everything before activating so that all three are handed over in one batch
+      for (Document doc : docs) {
+        step.put(doc);
+      }
+      step.activate();
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      step.deactivate();
+    }
+    assertEquals(Status.DROPPED, docs.get(0).getStatus());
+    assertEquals(Status.ERROR, docs.get(1).getStatus());
+    assertEquals(Status.DROPPED, docs.get(2).getStatus());
+  }
+
+  @Test
+  public void testMetrics() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int docs = 10;
+    CountDownLatch latch = new CountDownLatch(docs);
+    StepImpl last = new StepImpl.Builder().named("last")
+        .withProcessor(new RecordingProcessor.Builder(latch, ConcurrentHashMap.newKeySet(), null)).build();
+    StepImpl.Builder firstBuilder = new StepImpl.Builder().named("first").withProcessor(new CountingProcessor.Builder(null));
+    firstBuilder.addNextStep(last);
+    StepImpl first = firstBuilder.build();
+    try {
+      last.activate();
+      first.activate();
+      for (int i = 0; i < docs; i++) {
+        first.put(new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.NEW, scannerMock));
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      first.deactivate();
+      last.deactivate();
+    }
+    StepMetrics firstMetrics = first.getMetrics();
+    assertEquals(docs, firstMetrics.getDocumentsIn());
+    assertEquals(docs, firstMetrics.getDocumentsOut());
+    assertEquals(0, firstMetrics.getQueueDepth());
+    assertEquals(0, firstMetrics.getDrops());
+    StepMetrics lastMetrics = last.getMetrics();
+    assertEquals(docs, lastMetrics.getDocumentsIn());
+    assertEquals(docs, lastMetrics.getDrops());
+    assertEquals(0, lastMetrics.getErrors());
+    // the recording processor sleeps for a millisecond per document
+    assertTrue(lastMetrics.getServiceTimeP50Micros() >= 1000);
+    assertTrue(lastMetrics.getServiceTimeP99Micros() >= lastMetrics.getServiceTimeP50Micros());
+    assertTrue(lastMetrics.getQueuedTimeMeanMicros() > 0);
+  }
+
+  @Test
+  public void testOrderedById() throws InterruptedException {
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    int ids = 5;
+    int versions = 40;
+    CountDownLatch latch = new CountDownLatch(ids * versions);
+    Map<String, List<String>> seen = new ConcurrentHashMap<>();
+    StepImpl step = new StepImpl.Builder().named("ordered").withThreads(4).orderedById(true)
+        .withProcessor(new RecordingProcessor.Builder(latch, ConcurrentHashMap.newKeySet(), seen)).build();
+    try {
+      step.activate();
+      for (int v = 0; v < versions; v++) {
+        for (int i = 0; i < ids; i++) {
+          DocumentImpl doc = new DocumentImpl(new byte[0], "doc" + i, planMock, Document.Operation.UPDATE, scannerMock);
+          doc.put("version", String.valueOf(v));
+          step.put(doc);
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(ids, seen.size());
+      for (List<String> order : seen.values()) {
+        assertEquals(versions, order.size());
+        for (int v = 0; v < versions; v++) {
+          assertEquals(String.valueOf(v), order.get(v));
+        }
+      }
+    } finally {
+      step.deactivate();
+    }
+  }
+
   @Test
   public void testShakespearePlan() {
     replay();
@@ -205,4 +581,234 @@ public class StepImplTest {
 
   }
 
+  private static class CountingProcessor implements DocumentProcessor {
+    private final CountDownLatch latch;
+
+    CountingProcessor(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public Document[] processDocument(Document document) {
+      if (latch != null) {
+        latch.countDown();
+      }
+      return new Document[]{document};
+    }
+
+    @Override
+    public String getName() {
+      return "counting";
+    }
+
+    static class Builder extends NamedBuilder<CountingProcessor> {
+      private final CountDownLatch latch;
+
+      Builder(CountDownLatch latch) {
+        this.latch = latch;
+      }
+
+      @Override
+      public NamedBuilder<CountingProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public CountingProcessor build() {
+        return new CountingProcessor(latch);
+      }
+    }
+  }
+
+  private static class BatchSizeProcessor extends CountingProcessor {
+    private final List<Integer> batchSizes;
+
+    BatchSizeProcessor(CountDownLatch latch, List<Integer> batchSizes) {
+      super(latch);
+      this.batchSizes = batchSizes;
+    }
+
+    @Override
+    public Document[] processBatch(List<Document> documents) {
+      batchSizes.add(documents.size());
+      return super.processBatch(documents);
+    }
+
+    static class Builder extends NamedBuilder<BatchSizeProcessor> {
+      private final CountDownLatch latch;
+      private final List<Integer> batchSizes;
+
+      Builder(CountDownLatch latch, List<Integer> batchSizes) {
+        this.latch = latch;
+        this.batchSizes = batchSizes;
+      }
+
+      @Override
+      public NamedBuilder<BatchSizeProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public BatchSizeProcessor build() {
+        return new BatchSizeProcessor(latch, batchSizes);
+      }
+    }
+  }
+
+  private static class FailingProcessor extends CountingProcessor {
+    private final String failingId;
+
+    FailingProcessor(CountDownLatch latch, String failingId) {
+      super(latch);
+      this.failingId = failingId;
+    }
+
+    @Override
+    public Document[] processDocument(Document document) {
+      if (failingId.equals(document.getId())) {
+        throw new IllegalStateException("failed " + document.getId());
+      }
+      return super.processDocument(document);
+    }
+
+    static class Builder extends NamedBuilder<FailingProcessor> {
+      private final CountDownLatch latch;
+      private final String failingId;
+
+      Builder(CountDownLatch latch, String failingId) {
+        this.latch = latch;
+        this.failingId = failingId;
+      }
+
+      @Override
+      public NamedBuilder<FailingProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public FailingProcessor build() {
+        return new FailingProcessor(latch, failingId);
+      }
+    }
+  }
+
+  private static class RecordingProcessor implements DocumentProcessor {
+    private final CountDownLatch latch;
+    private final Set<String> threadNames;
+    private final Map<String, List<String>> versionsById;
+    private final Set<String> inProcess = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    RecordingProcessor(CountDownLatch latch, Set<String> threadNames, Map<String, List<String>> versionsById) {
+      this.latch = latch;
+      this.threadNames = threadNames;
+      this.versionsById = versionsById;
+    }
+
+    @Override
+    public Document[] processDocument(Document document) {
+      threadNames.add(Thread.currentThread().getName());
+      if (!inProcess.add(document.getId())) {
+        throw new IllegalStateException("concurrent processing of " + document.getId());
+      }
+      peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        // ignore
+      }
+      concurrent.decrementAndGet();
+      if (versionsById != null) {
+        versionsById.computeIfAbsent(document.getId(), (id) -> Collections.synchronizedList(new ArrayList<>()))
+            .add(document.getFirstValue("version"));
+      }
+      inProcess.remove(document.getId());
+      latch.countDown();
+      document.setStatus(Status.DROPPED);
+      return new Document[]{document};
+    }
+
+    @Override
+    public boolean isCheap() {
+      return true;
+    }
+
+    @Override
+    public String getName() {
+      return "recording";
+    }
+
+    static class Builder extends NamedBuilder<RecordingProcessor> {
+      private final RecordingProcessor processor;
+
+      Builder(CountDownLatch latch, Set<String> threadNames, Map<String, List<String>> versionsById) {
+        processor = new RecordingProcessor(latch, threadNames, versionsById);
+      }
+
+      @Override
+      public NamedBuilder<RecordingProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public RecordingProcessor build() {
+        return processor;
+      }
+    }
+  }
+
+
+  private static class SlowProcessor implements DocumentProcessor {
+    private final CountDownLatch started;
+    private final List<String> events;
+    private final long millis;
+
+    SlowProcessor(CountDownLatch started, List<String> events, long millis) {
+      this.started = started;
+      this.events = events;
+      this.millis = millis;
+    }
+
+    @Override
+    public Document[] processDocument(Document document) {
+      started.countDown();
+      try {
+        Thread.sleep(millis);
+        events.add("processed");
+      } catch (InterruptedException e) {
+        events.add("interrupted");
+      }
+      document.setStatus(Status.DROPPED);
+      return new Document[]{document};
+    }
+
+    @Override
+    public void close() {
+      events.add("closed");
+    }
+
+    @Override
+    public String getName() {
+      return "slow";
+    }
+
+    static class Builder extends NamedBuilder<SlowProcessor> {
+      private final SlowProcessor processor;
+
+      Builder(CountDownLatch started, List<String> events, long millis) {
+        processor = new SlowProcessor(started, events, millis);
+      }
+
+      @Override
+      public NamedBuilder<SlowProcessor> named(String name) {
+        return this;
+      }
+
+      @Override
+      public SlowProcessor build() {
+        return processor;
+      }
+    }
+  }
 }
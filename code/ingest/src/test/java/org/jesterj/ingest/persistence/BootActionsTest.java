@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BootActionsTest {
+
+  @Test
+  public void testPrepareRetriedAfterSchema() throws Exception {
+    BootActions actions = new BootActions(4);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch prepareFailed = new CountDownLatch(1);
+    boolean[] tableExists = new boolean[1];
+    actions.updateSchema(() -> {
+      // hold the schema back until the statement has failed against it
+      assertTrue(prepareFailed.await(10, TimeUnit.SECONDS));
+      events.add("keyspace");
+      return null;
+    });
+    actions.updateSchema(() -> {
+      events.add("table");
+      tableExists[0] = true;
+      return null;
+    });
+    // as CassandraSupport.addStatement prepares a statement
+    Future<Object> prepared = actions.add(() -> {
+      if (!tableExists[0]) {
+        events.add("prepare failed");
+        prepareFailed.countDown();
+        actions.awaitSchema();
+      }
+      events.add("prepared");
+      return "statement";
+    });
+    assertFalse(prepared.isDone());
+    actions.run();
+    assertEquals("statement", prepared.get());
+    assertEquals(Arrays.asList("prepare failed", "keyspace", "table", "prepared"), events);
+    assertFalse(actions.isBooting());
+  }
+
+  @Test
+  public void testSchemaChangesAfterTheQueueDrainsRunImmediately() throws Exception {
+    BootActions actions = new BootActions(4);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    Future<Object> queued = actions.updateSchema(() -> events.add("queued"));
+    assertFalse(queued.isDone());
+    Future<Object> late = actions.add(() -> {
+      actions.awaitSchema();
+      // the schema thread has handed over, so this is made here and now
+      Future<Object> change = actions.updateSchema(() -> events.add("late"));
+      assertTrue(change.isDone());
+      return change.get();
+    });
+    actions.run();
+    assertEquals(true, late.get());
+    assertEquals(Arrays.asList("queued", "late"), events);
+  }
+
+  @Test
+  public void testBootingUntilAddedActionsComplete() throws Exception {
+    BootActions actions = new BootActions(4);
+    CountDownLatch addedStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?>[] added = new Future<?>[1];
+    actions.add(() -> {
+      // added while boot actions run, so must also finish before boot completes
+      added[0] = actions.add(() -> {
+        addedStarted.countDown();
+        assertTrue(release.await(10, TimeUnit.SECONDS));
+        return null;
+      });
+      return null;
+    });
+    Thread boot = new Thread(actions::run);
+    boot.start();
+    assertTrue(addedStarted.await(10, TimeUnit.SECONDS));
+    boot.join(200);
+    assertTrue(boot.isAlive());
+    assertTrue(actions.isBooting());
+    release.countDown();
+    boot.join(10000);
+    assertFalse(boot.isAlive());
+    assertTrue(added[0].isDone());
+    assertFalse(actions.isBooting());
+
+    // once booted actions run on the calling thread
+    Future<Object> after = actions.add(() -> Thread.currentThread().getName());
+    assertEquals(Thread.currentThread().getName(), after.get(0, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jesterj.ingest.persistence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DocumentStateTableTest {
+
+  private static final String MD5 = "0123456789abcdeffedcba9876543210";
+
+  @Test
+  public void testStatusAndHashKeptTogether() {
+    DocumentStateTable table = new DocumentStateTable();
+    assertNull(table.get("foo"));
+    table.setHash("foo", MD5);
+    table.setStatus("foo", "PROCESSING");
+    table.setStatus("foo", "INDEXED");
+    table.setStatus("bar", "DIRTY");
+    assertEquals(2, table.size());
+    assertEquals("foo", table.get("foo").getDocId());
+    assertEquals("INDEXED", table.get("foo").getStatus());
+    assertEquals(MD5, table.get("foo").getMd5());
+    assertEquals("DIRTY", table.get("bar").getStatus());
+    assertNull(table.get("bar").getMd5());
+    assertNull(table.get("baz"));
+  }
+
+  @Test
+  public void testHashesKeptAsGiven() {
+    DocumentStateTable table = new DocumentStateTable();
+    table.setHash("lower", MD5);
+    table.setHash("upper", MD5.toUpperCase());
+    table.setHash("mixed", "0123456789ABCDEFfedcba9876543210");
+    table.setHash("short", "CAFEBABE");
+    table.setHash("cleared", "CAFEBABE");
+    table.setHash("cleared", MD5);
+    assertEquals(MD5, table.get("lower").getMd5());
+    assertEquals(MD5.toUpperCase(), table.get("upper").getMd5());
+    assertEquals("0123456789ABCDEFfedcba9876543210", table.get("mixed").getMd5());
+    assertEquals("CAFEBABE", table.get("short").getMd5());
+    assertEquals(MD5, table.get("cleared").getMd5());
+    assertNull(table.get("lower").getStatus());
+  }
+
+  @Test
+  public void testGrowth() {
+    DocumentStateTable table = new DocumentStateTable();
+    for (int i = 0; i < 20_000; i++) {
+      table.setStatus("döc" + i, i % 2 == 0 ? "INDEXED" : "ERROR");
+    }
+    assertEquals(20_000, table.size());
+    for (int i = 0; i < 20_000; i++) {
+      assertEquals(i % 2 == 0 ? "INDEXED" : "ERROR", table.get("döc" + i).getStatus());
+    }
+    assertNull(table.get("döc20000"));
+  }
+
+  @Test
+  public void testForEachInOrderAdded() {
+    DocumentStateTable table = new DocumentStateTable();
+    table.setStatus("b", "INDEXED");
+    table.setStatus("a", "PROCESSING");
+    table.setStatus("b", "DIRTY");
+    List<String> seen = new ArrayList<>();
+    table.forEach((state) -> {
+      seen.add(state.getDocId() + "=" + state.getStatus());
+      // not locked while visiting, so updates may be made from the action
+      table.setStatus(state.getDocId(), "DROPPED");
+    });
+    assertEquals("[b=DIRTY, a=PROCESSING]", seen.toString());
+    assertEquals("DROPPED", table.get("a").getStatus());
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.persistence;
+
+import org.apache.lucene.util.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalStatusStoreTest {
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("jj-status");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    IOUtils.rm(dir);
+  }
+
+  private List<String> files() throws IOException {
+    List<String> names = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path file : files) {
+        names.add(file.getFileName().toString());
+      }
+    }
+    return names;
+  }
+
+  @Test
+  public void testStateSurvivesReopen() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 4096);
+    store.setHash("scanner", "doc1", "CAFEBABE");
+    store.setStatus("scanner", "doc1", "PROCESSING");
+    store.setStatus("scanner", "doc1", "INDEXED");
+    store.setStatus("scanner", "doc2", "ERROR");
+    store.setStatus("other", "doc1", "DROPPED");
+    store.close();
+
+    store = new LocalStatusStore(dir, 4096);
+    assertEquals("INDEXED", store.find("scanner", "doc1").getStatus());
+    assertEquals("CAFEBABE", store.find("scanner", "doc1").getMd5());
+    assertEquals("ERROR", store.find("scanner", "doc2").getStatus());
+    assertNull(store.find("scanner", "doc2").getMd5());
+    assertEquals("DROPPED", store.find("other", "doc1").getStatus());
+    assertNull(store.find("scanner", "doc3"));
+    List<String> ids = new ArrayList<>();
+    store.forEach("scanner", (state) -> ids.add(state.getDocId()));
+    ids.sort(null);
+    assertEquals(Arrays.asList("doc1", "doc2"), ids);
+    store.close();
+  }
+
+  @Test
+  public void testReset() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 4096);
+    store.setStatus("scanner", "doc1", "PROCESSING");
+    store.setStatus("scanner", "doc2", "INDEXED");
+    store.setStatus("scanner", "doc3", "BATCHED");
+    store.setStatus("other", "doc4", "PROCESSING");
+    assertEquals(2, store.reset("scanner", Arrays.asList("PROCESSING", "BATCHED")));
+    store.close();
+
+    store = new LocalStatusStore(dir, 4096);
+    assertEquals("DIRTY", store.find("scanner", "doc1").getStatus());
+    assertEquals("INDEXED", store.find("scanner", "doc2").getStatus());
+    assertEquals("DIRTY", store.find("scanner", "doc3").getStatus());
+    assertEquals("PROCESSING", store.find("other", "doc4").getStatus());
+    store.close();
+  }
+
+  @Test
+  public void testSegmentsRoll() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 256);
+    for (int i = 0; i < 100; i++) {
+      store.setStatus("scanner", "doc" + i, "PROCESSING");
+    }
+    store.close();
+    assertTrue(files().size() > 10);
+
+    store = new LocalStatusStore(dir, 256);
+    for (int i = 0; i < 100; i++) {
+      assertEquals("PROCESSING", store.find("scanner", "doc" + i).getStatus());
+    }
+    store.close();
+  }
+
+  @Test
+  public void testTornRecordEndsLog() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 4096);
+    store.setStatus("scanner", "doc1", "PROCESSING");
+    store.setStatus("scanner", "doc2", "PROCESSING");
+    store.close();
+    // corrupt the last byte of the second record
+    Path segment = dir.resolve("g0-0.seg");
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      int end = 0;
+      for (int i = 0; i < 2; i++) {
+        file.seek(end);
+        end += 8 + file.readInt();
+      }
+      file.seek(end - 1);
+      byte last = file.readByte();
+      file.seek(end - 1);
+      file.writeByte(last + 1);
+    }
+
+    store = new LocalStatusStore(dir, 4096);
+    assertEquals("PROCESSING", store.find("scanner", "doc1").getStatus());
+    assertNull(store.find("scanner", "doc2"));
+    store.setStatus("scanner", "doc3", "INDEXED");
+    store.close();
+
+    store = new LocalStatusStore(dir, 4096);
+    assertEquals("PROCESSING", store.find("scanner", "doc1").getStatus());
+    assertNull(store.find("scanner", "doc2"));
+    assertEquals("INDEXED", store.find("scanner", "doc3").getStatus());
+    store.close();
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 1024);
+    for (int i = 0; i < 50; i++) {
+      store.setStatus("scanner", "doc" + (i % 5), "PROCESSING");
+      store.setStatus("scanner", "doc" + (i % 5), "INDEXED");
+    }
+    store.setHash("scanner", "doc1", "CAFEBABE");
+    store.compact();
+    List<String> files = files();
+    assertTrue(files.contains("g1.ok"));
+    assertFalse(files.contains("g0.ok"));
+    assertFalse(files.contains("g0-0.seg"));
+    store.setStatus("scanner", "doc2", "ERROR");
+    store.close();
+
+    store = new LocalStatusStore(dir, 1024);
+    assertEquals("INDEXED", store.find("scanner", "doc1").getStatus());
+    assertEquals("CAFEBABE", store.find("scanner", "doc1").getMd5());
+    assertEquals("ERROR", store.find("scanner", "doc2").getStatus());
+    store.close();
+  }
+
+  @Test
+  public void testIncompleteCompactionDiscarded() throws IOException {
+    LocalStatusStore store = new LocalStatusStore(dir, 1024);
+    store.setStatus("scanner", "doc1", "INDEXED");
+    store.close();
+    // as if we stopped while writing a new generation, before it was marked complete
+    Files.write(dir.resolve("g1-0.seg"), new byte[1024]);
+
+    store = new LocalStatusStore(dir, 1024);
+    assertEquals("INDEXED", store.find("scanner", "doc1").getStatus());
+    assertFalse(files().contains("g1-0.seg"));
+    store.close();
+  }
+}
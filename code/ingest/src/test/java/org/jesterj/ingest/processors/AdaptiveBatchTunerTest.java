@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchTunerTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(4000);
+
+  @Test
+  public void testGrowsWhileFullBatchesAreFast() {
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(100, 5000);
+    tuner.setBatchSizeBounds(10, 200);
+    tuner.batchCompleted(100, 100, FAST, false);
+    assertEquals(125, tuner.getBatchSize());
+    for (int i = 0; i < 10; i++) {
+      tuner.batchCompleted(tuner.getBatchSize(), 100, FAST, false);
+    }
+    assertEquals(200, tuner.getBatchSize());
+  }
+
+  @Test
+  public void testPartialBatchesDoNotGrow() {
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(100, 5000);
+    tuner.batchCompleted(3, 100, FAST, false);
+    assertEquals(100, tuner.getBatchSize());
+  }
+
+  @Test
+  public void testShrinksInProportionToSlowness() {
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(100, 5000);
+    tuner.setTargetLatencyMs(1000);
+    tuner.batchCompleted(100, 100, SLOW, false);
+    assertEquals(25, tuner.getBatchSize());
+  }
+
+  @Test
+  public void testHalvesOnFailureAndStopsGrowing() {
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(100, 5000);
+    tuner.setBatchSizeBounds(10, 1000);
+    tuner.batchCompleted(100, 100, FAST, true);
+    assertEquals(50, tuner.getBatchSize());
+    assertTrue(tuner.getErrorRate() > 0.05);
+    // while the recent error rate is high, fast full batches do not grow
+    tuner.batchCompleted(50, 100, FAST, false);
+    assertEquals(50, tuner.getBatchSize());
+    tuner.batchCompleted(10, 100, FAST, true);
+    tuner.batchCompleted(10, 100, FAST, true);
+    tuner.batchCompleted(10, 100, FAST, true);
+    assertEquals(10, tuner.getBatchSize());
+  }
+
+  @Test
+  public void testLimitsBytes() {
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(100, 5000);
+    tuner.setMaxBatchBytes(10 * 1024 * 1024);
+    tuner.batchCompleted(100, 100L * 1024 * 1024, FAST, false);
+    assertEquals(10, tuner.getBatchSize());
+  }
+
+  @Test
+  public void testDelay() {
+    AtomicLong nanos = new AtomicLong();
+    AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(200, 5000, nanos::get);
+    // not adapting yet
+    tuner.batchCompleted(1, 100, FAST, false);
+    assertEquals(5000, tuner.getDelayMs());
+
+    tuner.setDelayBounds(20, 2000);
+    // nothing arriving, send partial batches promptly
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    tuner.batchCompleted(1, 100, FAST, false);
+    assertEquals(20, tuner.getDelayMs());
+
+    // a document per millisecond, a batch fills in 200ms
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    tuner.documentsArrived(100);
+    tuner.batchCompleted(1, 100, FAST, false);
+    assertEquals(200, tuner.getDelayMs());
+
+    // a trickle that would take longer than the maximum to fill a batch
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    tuner.documentsArrived(1);
+    tuner.batchCompleted(1, 100, FAST, false);
+    assertEquals(20, tuner.getDelayMs());
+  }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jesterj.ingest.processors;
+
+import com.copyright.easiertest.Mock;
+import org.apache.cassandra.utils.ConcurrentBiMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.jesterj.ingest.logging.JesterJAppender;
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.Plan;
+import org.jesterj.ingest.model.Scanner;
+import org.jesterj.ingest.model.Status;
+import org.jesterj.ingest.model.impl.DocumentImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.copyright.easiertest.EasierMocks.prepareMocks;
+import static com.copyright.easiertest.EasierMocks.replay;
+import static com.copyright.easiertest.EasierMocks.reset;
+import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchProcessorTest {
+  @Mock private Plan planMock;
+  @Mock private Scanner scannerMock;
+
+  public BatchProcessorTest() {
+    prepareMocks(this);
+  }
+
+  @Before
+  public void setUp() {
+    reset();
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+  }
+
+  @After
+  public void tearDown() {
+    verify();
+  }
+
+  private Document doc(String id, Document.Operation op) {
+    return new DocumentImpl(new byte[0], id, planMock, op, scannerMock);
+  }
+
+  private static boolean waitFor(List<String> list, int size) throws InterruptedException {
+    for (int i = 0; i < 500 && list.size() < size; i++) {
+      Thread.sleep(10);
+    }
+    return list.size() >= size;
+  }
+
+  @Test
+  public void testInFlightBatchesAreBounded() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("pipelined")
+        .sendingBatchesOf(1)
+        .sendingBatchesConcurrently(3)
+        .build();
+    CountDownLatch gate = new CountDownLatch(1);
+    proc.gates.put("d1:NEW", gate);
+    proc.gates.put("d2:NEW", gate);
+    proc.gates.put("d3:NEW", gate);
+    // each document after the first causes the previous one to be sent as a batch of one
+    for (int i = 1; i <= 4; i++) {
+      proc.processDocument(doc("d" + i, Document.Operation.NEW));
+    }
+    assertTrue(waitFor(proc.started, 3));
+    assertEquals(3, proc.concurrent.get());
+
+    // a fourth batch must wait for one of the three in flight to complete
+    Thread blocked = new Thread(() -> proc.processDocument(doc("d5", Document.Operation.NEW)));
+    blocked.start();
+    blocked.join(200);
+    assertTrue(blocked.isAlive());
+    assertEquals(3, proc.started.size());
+
+    gate.countDown();
+    blocked.join(5000);
+    assertFalse(blocked.isAlive());
+    assertTrue(proc.awaitInFlight(5, TimeUnit.SECONDS));
+    assertEquals(4, proc.started.size());
+    assertEquals(3, proc.peak.get());
+    assertEquals(0, proc.concurrent.get());
+  }
+
+  @Test
+  public void testSameIdIsNotSentConcurrently() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("ordered")
+        .sendingBatchesOf(1)
+        .sendingBatchesConcurrently(3)
+        .build();
+    CountDownLatch gate = new CountDownLatch(1);
+    proc.gates.put("a:NEW", gate);
+    proc.processDocument(doc("a", Document.Operation.NEW));
+    proc.processDocument(doc("b", Document.Operation.NEW));
+    proc.processDocument(doc("a", Document.Operation.DELETE));
+    proc.processDocument(doc("c", Document.Operation.NEW)); // sends the delete
+    assertTrue(waitFor(proc.started, 2));
+    Thread.sleep(100);
+    // the delete may not overtake the update that is still in flight
+    assertEquals(2, proc.started.size());
+    assertFalse(proc.started.contains("a:DELETE"));
+
+    gate.countDown();
+    assertTrue(waitFor(proc.started, 3));
+    assertTrue(proc.awaitInFlight(5, TimeUnit.SECONDS));
+    assertTrue(proc.started.indexOf("a:NEW") < proc.started.indexOf("a:DELETE"));
+  }
+
+  @Test
+  public void testFailuresReportedForInFlightBatches() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("failing")
+        .sendingBatchesOf(2)
+        .sendingBatchesConcurrently(2)
+        .build();
+    proc.failing.add("bad:NEW");
+    proc.processDocument(doc("bad", Document.Operation.NEW));
+    proc.processDocument(doc("x", Document.Operation.NEW));
+    proc.processDocument(doc("y", Document.Operation.NEW)); // sends bad and x
+    assertTrue(waitFor(proc.failed, 2));
+    assertTrue(proc.awaitInFlight(5, TimeUnit.SECONDS));
+    assertTrue(proc.failed.contains("bad"));
+    assertTrue(proc.failed.contains("x"));
+    assertEquals(2, proc.failed.size());
+  }
+
+  @Test
+  public void testSingleBatchInFlightSendsOnCallingThread() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("synchronous")
+        .sendingBatchesOf(1)
+        .build();
+    proc.processDocument(doc("a", Document.Operation.NEW));
+    proc.processDocument(doc("b", Document.Operation.NEW));
+    assertEquals(Collections.singletonList("a:NEW"), proc.started);
+    assertEquals(Thread.currentThread().getName(), proc.threads.get(0));
+    assertTrue(proc.awaitInFlight(0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAdaptiveBatchSizeAndMetrics() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("adaptive")
+        .sendingBatchesOf(8)
+        .adaptingBatchSize(2, 16)
+        .build();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.jesterj:type=BatchProcessor,name=\"adaptive\"");
+    proc.failing.add("d0:NEW");
+    for (int i = 0; i <= 8; i++) {
+      proc.processDocument(doc("d" + i, Document.Operation.NEW));
+    }
+    try {
+      assertEquals(8, proc.failed.size());
+      assertEquals(4, proc.getMetrics().getBatchSize());
+      assertEquals(1L, server.getAttribute(name, "BatchesFailed"));
+      assertEquals(8L, server.getAttribute(name, "DocumentsSent"));
+      assertEquals(4, server.getAttribute(name, "BatchSize"));
+    } finally {
+      proc.close();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testDocumentIssuesAreNotBatchFailures() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("fallback")
+        .sendingBatchesOf(2)
+        .adaptingBatchSize(2, 16)
+        .build();
+    proc.documentIssues = true;
+    proc.fallbackMillis = 500;
+    proc.failing.add("d0:NEW");
+    try {
+      for (int i = 0; i < 3; i++) {
+        proc.processDocument(doc("d" + i, Document.Operation.NEW));
+      }
+      assertEquals(Collections.singletonList("d0"), proc.failed);
+      assertEquals(1L, proc.getMetrics().getBatchesSent());
+      assertEquals(0L, proc.getMetrics().getBatchesFailed());
+      assertEquals(0.0, proc.getErrorRate(), 0.0);
+      // retrying documents one at a time is not counted as time spent sending the batch
+      assertTrue(proc.getMetrics().getSendTimeMeanMillis() < proc.fallbackMillis / 2);
+    } finally {
+      proc.close();
+    }
+  }
+
+  @Test
+  public void testCloseSendsWaitingAndInFlightBatches() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("closing")
+        .sendingBatchesOf(2)
+        .sendingBatchesConcurrently(2)
+        .sendingPartialBatchesAfterMs(60000)
+        .build();
+    CountDownLatch gate = new CountDownLatch(1);
+    proc.gates.put("a:NEW", gate);
+    proc.processDocument(doc("a", Document.Operation.NEW));
+    proc.processDocument(doc("b", Document.Operation.NEW));
+    proc.processDocument(doc("c", Document.Operation.NEW)); // sends a and b, c waits for the timer
+    assertTrue(waitFor(proc.started, 1));
+    new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        // ignore
+      }
+      gate.countDown();
+    }).start();
+    proc.close();
+    assertEquals(new HashSet<>(Arrays.asList("a:NEW", "b:NEW", "c:NEW")), new HashSet<>(proc.started));
+    assertEquals(0, proc.concurrent.get());
+  }
+
+  @Test
+  public void testPartitionsFillIndependently() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("partitioned")
+        .sendingBatchesOf(2)
+        .build();
+    // partition on the first letter of the id
+    proc.partitioned = true;
+    proc.processDocument(doc("a1", Document.Operation.NEW));
+    proc.processDocument(doc("b1", Document.Operation.NEW));
+    proc.processDocument(doc("a2", Document.Operation.NEW));
+    assertTrue(proc.started.isEmpty());
+    proc.processDocument(doc("a3", Document.Operation.NEW)); // partition a is full
+    assertEquals(2, proc.started.size());
+    assertTrue(proc.started.contains("a1:NEW"));
+    assertTrue(proc.started.contains("a2:NEW"));
+    proc.processBatch(Arrays.asList(doc("b2", Document.Operation.NEW), doc("b3", Document.Operation.NEW)));
+    assertEquals(4, proc.started.size());
+    assertTrue(proc.started.contains("b1:NEW"));
+    assertTrue(proc.started.contains("b2:NEW"));
+  }
+
+  @Test
+  public void testBatchedLoggedBeforeSend() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("logging")
+        .sendingBatchesOf(2)
+        .build();
+    Logger logger = (Logger) LogManager.getLogger(BatchProcessor.class);
+    StatusRecorder recorder = new StatusRecorder(proc.events);
+    recorder.start();
+    logger.addAppender(recorder);
+    try {
+      // the third document sends the first two
+      proc.processBatch(Arrays.asList(doc("a", Document.Operation.NEW), doc("b", Document.Operation.NEW),
+          doc("c", Document.Operation.NEW)));
+    } finally {
+      logger.removeAppender(recorder);
+      recorder.stop();
+    }
+    assertEquals(Arrays.asList("BATCHED a", "BATCHED b", "sent a:NEW", "sent b:NEW", "BATCHED c"), proc.events);
+  }
+
+  @Test
+  public void testPartialBatchSentWhenIdle() {
+    AtomicLong nanos = new AtomicLong();
+    ManualTimer timer = new ManualTimer();
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder(timer, nanos::get)
+        .named("idle")
+        .sendingBatchesOf(100)
+        .sendingPartialBatchesAfterMs(150)
+        .build();
+    // each document postpones the partial send, but a single timer serves them all
+    for (int i = 0; i < 5; i++) {
+      proc.processDocument(doc("d" + i, Document.Operation.NEW));
+      nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+    assertEquals(Collections.singletonList(150L), timer.delaysMs);
+    timer.runNext();
+    assertTrue(proc.started.isEmpty());
+    // due 150ms after the last document, which was added 50ms ago
+    assertEquals(Collections.singletonList(101L), timer.delaysMs);
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    timer.runNext();
+    assertEquals(5, proc.started.size());
+    assertEquals(1, proc.threads.size());
+
+    // the timer stops when nothing is waiting and starts again for the next document
+    assertTrue(timer.delaysMs.isEmpty());
+    proc.processDocument(doc("late", Document.Operation.NEW));
+    assertEquals(Collections.singletonList(150L), timer.delaysMs);
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+    timer.runNext();
+    assertEquals(6, proc.started.size());
+    assertEquals(2, proc.threads.size());
+  }
+
+  @Test
+  public void testConcurrentAddsAreSentOnce() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("concurrent")
+        .sendingBatchesOf(7)
+        .sendingPartialBatchesAfterMs(50)
+        .build();
+    int threads = 4;
+    int perThread = 500;
+    List<Thread> adders = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      String prefix = "t" + t + "-";
+      adders.add(new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          proc.processDocument(doc(prefix + i, Document.Operation.NEW));
+        }
+      }));
+    }
+    for (Thread adder : adders) {
+      adder.start();
+    }
+    for (Thread adder : adders) {
+      adder.join();
+    }
+    assertTrue(waitFor(proc.started, threads * perThread));
+    Thread.sleep(100);
+    assertEquals(threads * perThread, proc.started.size());
+    assertEquals(threads * perThread, new HashSet<>(proc.started).size());
+  }
+
+  @Test
+  public void testRepeatedIdsCoalesced() throws Exception {
+    RecordingBatchProcessor proc = new RecordingBatchProcessor.Builder()
+        .named("coalescing")
+        .sendingBatchesOf(3)
+        .coalescingById()
+        .build();
+    proc.processDocument(doc("a", Document.Operation.NEW));
+    proc.processDocument(doc("b", Document.Operation.NEW));
+    proc.processDocument(doc("a", Document.Operation.DELETE)); // replaces the add, takes no room
+    proc.processDocument(doc("c", Document.Operation.NEW));
+    assertTrue(proc.started.isEmpty());
+    proc.processDocument(doc("d", Document.Operation.NEW)); // the batch is full
+    assertEquals(new HashSet<>(Arrays.asList("b:NEW", "a:DELETE", "c:NEW")), new HashSet<>(proc.started));
+    assertEquals(3, proc.started.size());
+  }
+
+  private static class StatusRecorder extends AbstractAppender {
+    private final List<String> events;
+
+    StatusRecorder(List<String> events) {
+      super("statusRecorder", null, null);
+      this.events = events;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+      if (event.getMarker() == Status.BATCHED.getMarker()) {
+        events.add("BATCHED " + event.getContextData().getValue(JesterJAppender.JJ_INGEST_DOCID));
+      }
+    }
+  }
+
+  /**
+   * Holds scheduled tasks until the test runs them, ignoring their delays.
+   */
+  static class ManualTimer extends ScheduledThreadPoolExecutor {
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<Long> delaysMs = new ArrayList<>();
+
+    ManualTimer() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      tasks.add(command);
+      delaysMs.add(unit.toMillis(delay));
+      return null;
+    }
+
+    void runNext() {
+      delaysMs.remove(0);
+      tasks.remove(0).run();
+    }
+  }
+
+  static class RecordingBatchProcessor extends BatchProcessor<String> {
+    final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    final List<String> failing = Collections.synchronizedList(new ArrayList<>());
+    final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+    final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+    final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger peak = new AtomicInteger();
+    volatile boolean partitioned;
+    volatile boolean documentIssues;
+    volatile long fallbackMillis;
+    private String name;
+
+    RecordingBatchProcessor() {
+    }
+
+    RecordingBatchProcessor(ScheduledThreadPoolExecutor timer, LongSupplier nanoClock) {
+      super(timer, nanoClock);
+    }
+
+    @Override
+    protected Object partitionFor(Document document, String converted) {
+      return partitioned ? converted.substring(0, 1) : super.partitionFor(document, converted);
+    }
+
+    @Override
+    protected void perDocFailLogging(Exception e, Document doc) {
+      failed.add(doc.getId());
+    }
+
+    @Override
+    protected void individualFallbackOperation(ConcurrentBiMap<Document, String> oldBatch, Exception e) {
+      try {
+        Thread.sleep(fallbackMillis);
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+      for (Map.Entry<Document, String> entry : oldBatch.entrySet()) {
+        if (failing.contains(entry.getValue())) {
+          failed.add(entry.getKey().getId());
+        }
+      }
+    }
+
+    @Override
+    protected void batchOperation(ConcurrentBiMap<Document, String> batch) throws Exception {
+      peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+      try {
+        threads.add(Thread.currentThread().getName());
+        for (String value : batch.values()) {
+          started.add(value);
+          events.add("sent " + value);
+          CountDownLatch gate = gates.get(value);
+          if (gate != null) {
+            assertTrue(gate.await(5, TimeUnit.SECONDS));
+          }
+          if (failing.contains(value)) {
+            throw new IllegalStateException("failed " + value);
+          }
+        }
+      } finally {
+        concurrent.decrementAndGet();
+      }
+    }
+
+    @Override
+    protected boolean exceptionIndicatesDocumentIssue(Exception e) {
+      return documentIssues;
+    }
+
+    @Override
+    protected String convertDoc(Document document) {
+      return document.getId() + ":" + document.getOperation();
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    static class Builder extends BatchProcessor.Builder {
+      private RecordingBatchProcessor obj;
+
+      Builder() {
+        obj = new RecordingBatchProcessor();
+      }
+
+      Builder(ScheduledThreadPoolExecutor timer, LongSupplier nanoClock) {
+        obj = new RecordingBatchProcessor(timer, nanoClock);
+      }
+
+      @Override
+      public Builder named(String name) {
+        getObj().name = name;
+        return this;
+      }
+
+      @Override
+      public Builder sendingBatchesOf(int batchSize) {
+        super.sendingBatchesOf(batchSize);
+        return this;
+      }
+
+      @Override
+      public Builder sendingBatchesConcurrently(int batches) {
+        super.sendingBatchesConcurrently(batches);
+        return this;
+      }
+
+      @Override
+      public Builder sendingPartialBatchesAfterMs(int ms) {
+        super.sendingPartialBatchesAfterMs(ms);
+        return this;
+      }
+
+      @Override
+      public Builder adaptingBatchSize(int min, int max) {
+        super.adaptingBatchSize(min, max);
+        return this;
+      }
+
+      @Override
+      public Builder coalescingById() {
+        super.coalescingById();
+        return this;
+      }
+
+      @Override
+      protected RecordingBatchProcessor getObj() {
+        return obj;
+      }
+
+      @Override
+      public RecordingBatchProcessor build() {
+        RecordingBatchProcessor tmp = obj;
+        obj = new RecordingBatchProcessor();
+        return tmp;
+      }
+    }
+  }
+}
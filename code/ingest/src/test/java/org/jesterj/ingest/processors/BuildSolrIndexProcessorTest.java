@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.processors;
+
+import com.copyright.easiertest.Mock;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.jesterj.ingest.model.Document;
+import org.jesterj.ingest.model.Plan;
+import org.jesterj.ingest.model.Scanner;
+import org.jesterj.ingest.model.impl.DocumentImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.copyright.easiertest.EasierMocks.prepareMocks;
+import static com.copyright.easiertest.EasierMocks.replay;
+import static com.copyright.easiertest.EasierMocks.reset;
+import static com.copyright.easiertest.EasierMocks.verify;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildSolrIndexProcessorTest {
+
+  @Mock private Plan planMock;
+  @Mock private Scanner scannerMock;
+
+  private Path output;
+
+  public BuildSolrIndexProcessorTest() {
+    prepareMocks(this);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    reset();
+    expect(planMock.getDocIdField()).andReturn("id").anyTimes();
+    expect(scannerMock.getName()).andReturn("scanner").anyTimes();
+    replay();
+    output = Files.createTempDirectory("jj-offline-index");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    verify();
+    IOUtils.rm(output);
+  }
+
+  private Document doc(String id, Document.Operation op, String title) {
+    DocumentImpl doc = new DocumentImpl(title.getBytes(StandardCharsets.UTF_8), id, planMock, op, scannerMock);
+    doc.put("title", title);
+    return doc;
+  }
+
+  @Test
+  public void testIndexesWrittenPerShard() throws Exception {
+    Path configSet = Paths.get(getClass().getResource("/solr/configsets/offline").toURI());
+    BuildSolrIndexProcessor proc = new BuildSolrIndexProcessor.Builder()
+        .named("offline")
+        .usingConfigSet(configSet.toString())
+        .writingIndexesTo(output.toString())
+        .withShards(2)
+        .mergingToSegments(1)
+        .sendingBatchesOf(10)
+        .sendingBatchesConcurrently(2)
+        .build();
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      ids.add("doc" + i);
+      proc.processDocument(doc("doc" + i, Document.Operation.NEW, "Title number " + i));
+    }
+    proc.processDocument(doc("doc7", Document.Operation.DELETE, ""));
+    proc.processDocument(doc("doc8", Document.Operation.UPDATE, "Replaced title"));
+    proc.close();
+
+    int total = 0;
+    for (int shard = 1; shard <= 2; shard++) {
+      Path index = proc.getShardDirectory(shard).resolve("data").resolve("index");
+      try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(index))) {
+        assertEquals(1, reader.leaves().size());
+        assertTrue(reader.numDocs() > 0);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        String shardName = "shard" + shard;
+        for (String id : ids) {
+          boolean here = shardName.equals(proc.shardFor(id, new SolrInputDocument())) && !"doc7".equals(id);
+          assertEquals(id + " in " + shardName, here ? 1 : 0, searcher.count(new TermQuery(new Term("id", id))));
+        }
+        boolean doc8Here = shardName.equals(proc.shardFor("doc8", new SolrInputDocument()));
+        assertEquals(doc8Here ? 1 : 0, searcher.count(new TermQuery(new Term("title", "replaced"))));
+        total += reader.numDocs();
+      }
+    }
+    assertEquals(49, total);
+  }
+}
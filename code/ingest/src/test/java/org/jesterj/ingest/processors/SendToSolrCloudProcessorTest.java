@@ -22,12 +22,19 @@ import org.apache.cassandra.utils.ConcurrentBiMap;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.ClusterStateProvider;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.CompositeIdRouter;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.easymock.Capture;
+import org.easymock.EasyMock;
 import org.jesterj.ingest.model.Document;
 import org.jesterj.ingest.model.Status;
 import org.junit.After;
@@ -35,8 +42,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -66,10 +78,13 @@ public class SendToSolrCloudProcessorTest {
   @Mock private Document docMock2;
   @Mock private SolrInputDocument inputDocMock3;
   @Mock private Document docMock3;
+  @Mock private SolrInputDocument inputDocMock4;
+  @Mock private Document docMock4;
   @Mock private CloudSolrClient solrClientMock;
   @Mock private UpdateResponse updateResponseMock;
   @Mock private UpdateResponse deleteResponseMock;
   @Mock private NamedList<Object> namedListMock;
+  @Mock private ClusterStateProvider stateProviderMock;
 
   public SendToSolrCloudProcessorTest() {
     prepareMocks(this);
@@ -167,6 +182,89 @@ public class SendToSolrCloudProcessorTest {
     assertEquals("myCustomChain", reqParams.get("update.chain"));
   }
 
+  @Test
+  public void testBisectingFallbackIsolatesBadDocument() throws IOException, SolrServerException {
+    ConcurrentBiMap<Document, SolrInputDocument> biMap = new ConcurrentBiMap<>();
+    Document[] docs = {docMock, docMock2, docMock3, docMock4};
+    SolrInputDocument[] inputDocs = {inputDocMock, inputDocMock2, inputDocMock3, inputDocMock4};
+    for (int i = 0; i < docs.length; i++) {
+      biMap.put(docs[i], inputDocs[i]);
+      expect(docs[i].getOperation()).andReturn(Document.Operation.NEW).anyTimes();
+      expect(docs[i].getId()).andReturn(String.valueOf(41 + i)).anyTimes();
+    }
+    expect(proc.getParams()).andReturn(null).anyTimes();
+    expect(proc.getSolrClient()).andReturn(solrClientMock).anyTimes();
+    expect(proc.getMaxBisectionDepth()).andReturn(10).anyTimes();
+    expect(proc.exceptionIndicatesDocumentIssue(anyObject(Exception.class))).andReturn(true).anyTimes();
+    proc.putIdInThreadContext(anyObject(Document.class));
+    expectLastCall().anyTimes();
+    List<Integer> requestSizes = new ArrayList<>();
+    expect(solrClientMock.add(EasyMock.<Collection<SolrInputDocument>>anyObject())).andAnswer(() -> {
+      Collection<?> sent = (Collection<?>) getCurrentArguments()[0];
+      requestSizes.add(sent.size());
+      if (sent.contains(inputDocMock3)) {
+        throw new SolrServerException("bad document");
+      }
+      return updateResponseMock;
+    }).anyTimes();
+    expect(proc.log()).andReturn(logMock).anyTimes();
+    logMock.info(eq(Status.INDEXED.getMarker()), anyString(), eq("41"));
+    logMock.info(eq(Status.INDEXED.getMarker()), anyString(), eq("42"));
+    logMock.info(eq(Status.ERROR.getMarker()), anyString(), eq("43"), eq("bad document"));
+    logMock.error(anyString(), anyObject(SolrServerException.class));
+    logMock.info(eq(Status.INDEXED.getMarker()), anyString(), eq("44"));
+    replay();
+    proc.individualFallbackOperation(biMap, new SolrServerException("bad document"));
+    // each half of the batch, then each half of the half that failed, in whichever order the batch iterates
+    Collections.sort(requestSizes);
+    assertEquals(Arrays.asList(1, 1, 2, 2), requestSizes);
+  }
+
+  @Test
+  public void testFallbackWithoutBisection() throws IOException, SolrServerException {
+    ConcurrentBiMap<Document, SolrInputDocument> biMap = expect3Docs();
+    expect(proc.getSolrClient()).andReturn(solrClientMock).anyTimes();
+    expect(proc.getMaxBisectionDepth()).andReturn(0).anyTimes();
+    expectLogging();
+    expect(solrClientMock.add(inputDocMock)).andReturn(updateResponseMock);
+    expect(solrClientMock.add(inputDocMock3)).andReturn(updateResponseMock);
+    // not a Delete, so sent as an add
+    expect(solrClientMock.add(inputDocMock2)).andReturn(updateResponseMock);
+    replay();
+    proc.individualFallbackOperation(biMap, new SolrServerException("bad document"));
+  }
+
+  @Test
+  public void testPartitionByShard() {
+    DocRouter router = DocRouter.getDocRouter(CompositeIdRouter.NAME);
+    Map<String, Slice> slices = new LinkedHashMap<>();
+    List<DocRouter.Range> ranges = router.partitionRange(2, router.fullRange());
+    for (int i = 0; i < ranges.size(); i++) {
+      Map<String, Object> props = new HashMap<>();
+      props.put(Slice.RANGE, ranges.get(i));
+      slices.put("shard" + (i + 1), new Slice("shard" + (i + 1), new HashMap<>(), props));
+    }
+    DocCollection collection = new DocCollection("test", slices, new HashMap<>(), router);
+
+    expect(proc.isPartitioningByShard()).andReturn(true).anyTimes();
+    expect(proc.getSolrClient()).andReturn(solrClientMock).anyTimes();
+    // the layout is looked up once and then cached
+    expect(solrClientMock.getClusterStateProvider()).andReturn(stateProviderMock);
+    stateProviderMock.connect();
+    expect(stateProviderMock.getState(anyObject())).andReturn(new ClusterState.CollectionRef(collection));
+    Set<Object> shards = new HashSet<>();
+    for (int i = 0; i < 20; i++) {
+      expect(docMock.getId()).andReturn("doc" + i);
+    }
+    replay();
+    for (int i = 0; i < 20; i++) {
+      Object partition = proc.partitionFor(docMock, inputDocMock);
+      assertEquals(router.getTargetSlice("doc" + i, null, null, null, collection).getName(), partition);
+      shards.add(partition);
+    }
+    assertEquals(new HashSet<>(Arrays.asList("shard1", "shard2")), shards);
+  }
+
   private ConcurrentBiMap<Document, SolrInputDocument> expect3Docs() {
     ConcurrentBiMap<Document, SolrInputDocument> biMap = new ConcurrentBiMap<>();
     biMap.put(docMock, inputDocMock);
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2026 Needham Software LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jesterj.ingest.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRingBufferQueueTest {
+
+  @Test
+  public void testCapacityRoundsUp() {
+    assertEquals(1, new MpscRingBufferQueue<String>(1).capacity());
+    assertEquals(64, new MpscRingBufferQueue<String>(50).capacity());
+    assertEquals(64, new MpscRingBufferQueue<String>(64).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroCapacity() {
+    new MpscRingBufferQueue<String>(0);
+  }
+
+  @Test
+  public void testFifoAndFull() {
+    MpscRingBufferQueue<String> queue = new MpscRingBufferQueue<>(4);
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(queue.offer("e" + i));
+    }
+    assertFalse(queue.offer("full"));
+    assertEquals(4, queue.size());
+    assertEquals(0, queue.remainingCapacity());
+    assertEquals("e0", queue.peek());
+    assertEquals("e0", queue.poll());
+    assertTrue(queue.offer("e4"));
+    List<String> drained = new ArrayList<>();
+    assertEquals(2, queue.drainTo(drained, 2));
+    assertEquals(Arrays.asList("e1", "e2"), drained);
+    Iterator<String> snapshot = queue.iterator();
+    assertEquals("e3", snapshot.next());
+    assertEquals("e4", snapshot.next());
+    assertFalse(snapshot.hasNext());
+    assertEquals(2, queue.drainTo(drained));
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testOfferAllIsAllOrNothing() {
+    MpscRingBufferQueue<String> queue = new MpscRingBufferQueue<>(4);
+    assertTrue(queue.offer("a"));
+    assertFalse(queue.offerAll(Arrays.asList("b", "c", "d", "e")));
+    assertEquals(1, queue.size());
+    assertTrue(queue.offerAll(Arrays.asList("b", "c", "d")));
+    List<String> drained = new ArrayList<>();
+    queue.drainTo(drained);
+    assertEquals(Arrays.asList("a", "b", "c", "d"), drained);
+    // wraps around the end of the ring
+    assertTrue(queue.offerAll(Arrays.asList("e", "f", "g")));
+    assertEquals("e", queue.poll());
+    assertEquals("f", queue.poll());
+    assertEquals("g", queue.poll());
+  }
+
+  @Test
+  public void testPollTimesOut() throws InterruptedException {
+    MpscRingBufferQueue<String> queue = new MpscRingBufferQueue<>(4);
+    long start = System.nanoTime();
+    assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void testManyProducers() throws InterruptedException {
+    int producers = 4;
+    int perProducer = 100_000;
+    MpscRingBufferQueue<long[]> queue = new MpscRingBufferQueue<>(64);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < perProducer; ) {
+            if (i % 10 == 0 && i + 3 <= perProducer) {
+              List<long[]> batch = Arrays.asList(new long[]{producer, i}, new long[]{producer, i + 1},
+                  new long[]{producer, i + 2});
+              while (!queue.offerAll(batch)) {
+                Thread.yield();
+              }
+              i += 3;
+            } else {
+              queue.put(new long[]{producer, i++});
+            }
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    long[] next = new long[producers];
+    start.countDown();
+    List<long[]> drained = new ArrayList<>();
+    for (int received = 0; received < producers * perProducer; ) {
+      if (received % 2 == 0) {
+        long[] e = queue.poll(5, TimeUnit.SECONDS);
+        assertTrue("timed out after " + received, e != null);
+        drained.add(e);
+      } else {
+        queue.drainTo(drained, 7);
+      }
+      for (long[] e : drained) {
+        // each producer's elements arrive in the order they were produced
+        assertEquals(next[(int) e[0]]++, e[1]);
+        received++;
+      }
+      drained.clear();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(queue.isEmpty());
+  }
+}